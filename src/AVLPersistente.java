@@ -0,0 +1,258 @@
+// AVLPersistente.java
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * Variante persistente de AVLTree: los nodos son inmutables y cada
+ * inserción o eliminación copia sólo el camino desde la raíz hasta el
+ * nodo tocado (O(log n) nodos nuevos); el resto se comparte con las
+ * versiones anteriores. Por eso {@link #instantanea()} cuesta O(1) y la
+ * vista obtenida no cambia aunque el índice siga modificándose.
+ * Las listas de IDs también se copian al modificarse, de modo que una
+ * clave con muchos IDs encarece sus actualizaciones.
+ */
+public class AVLPersistente implements EstructuraIndice {
+    // Bytes aproximados de un nodo (cabecera + campos) en una JVM de 64 bits
+    private static final int BYTES_NODO = 40;
+
+    // Nodo inmutable: clave, lista de IDs (no se modifica tras publicarse), hijos y altura
+    private static final class Node {
+        final String key;
+        final ListaPostings ids;
+        final Node left, right;
+        final int height;
+
+        Node(String key, ListaPostings ids, Node left, Node right) {
+            this.key = key;
+            this.ids = ids;
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max(height(left), height(right));
+        }
+    }
+
+    // Versión actual; volatile para que otros hilos vean la última raíz publicada
+    private volatile Node root;
+    // Las instantáneas son de sólo lectura
+    private final boolean soloLectura;
+
+    public AVLPersistente() {
+        this(null, false);
+    }
+
+    private AVLPersistente(Node root, boolean soloLectura) {
+        this.root = root;
+        this.soloLectura = soloLectura;
+    }
+
+    /**
+     * Construye en O(n) un árbol equilibrado a partir de claves ordenadas
+     * y sin repetir (la mediana de cada rango es su raíz).
+     * @param claves  claves en orden ascendente
+     * @param ids     IDs de cada clave (misma posición)
+     * @param n       número de claves a usar
+     */
+    public static AVLPersistente desdeOrdenado(String[] claves, ListaPostings[] ids, int n) {
+        return new AVLPersistente(construir(claves, ids, 0, n - 1), false);
+    }
+
+    private static Node construir(String[] claves, ListaPostings[] ids, int lo, int hi) {
+        if (lo > hi) return null;
+        int mid = (lo + hi) >>> 1;
+        return new Node(claves[mid], ids[mid],
+                construir(claves, ids, lo, mid - 1), construir(claves, ids, mid + 1, hi));
+    }
+
+    /**
+     * Vista inmutable de la versión actual, en O(1). Sus métodos de
+     * modificación lanzan UnsupportedOperationException.
+     */
+    public AVLPersistente instantanea() {
+        return new AVLPersistente(root, true);
+    }
+
+    @Override
+    public void insert(String key, int id) {
+        comprobarEscritura();
+        root = insert(root, key, id);
+    }
+
+    // Devuelve la nueva raíz del subárbol; el nodo original no se toca
+    private static Node insert(Node node, String key, int id) {
+        if (node == null) return new Node(key, new ListaPostings(id), null, null);
+        int cmp = key.compareTo(node.key);
+        if (cmp == 0) {
+            if (node.ids.contiene(id)) return node;
+            ListaPostings ids = node.ids.copia();
+            ids.agregar(id);
+            return new Node(node.key, ids, node.left, node.right);
+        }
+        Node res = cmp < 0
+                ? new Node(node.key, node.ids, insert(node.left, key, id), node.right)
+                : new Node(node.key, node.ids, node.left, insert(node.right, key, id));
+        return rebalancear(res);
+    }
+
+    @Override
+    public void remove(String key, int id) {
+        comprobarEscritura();
+        root = remove(root, key, id);
+    }
+
+    private static Node remove(Node node, String key, int id) {
+        if (node == null) return null;
+        int cmp = key.compareTo(node.key);
+        if (cmp < 0) {
+            Node izq = remove(node.left, key, id);
+            return izq == node.left ? node : rebalancear(new Node(node.key, node.ids, izq, node.right));
+        }
+        if (cmp > 0) {
+            Node der = remove(node.right, key, id);
+            return der == node.right ? node : rebalancear(new Node(node.key, node.ids, node.left, der));
+        }
+        if (!node.ids.contiene(id)) return node;
+        if (node.ids.tamano() > 1) {
+            ListaPostings ids = node.ids.copia();
+            ids.eliminar(id);
+            return new Node(node.key, ids, node.left, node.right);
+        }
+        if (node.left == null)  return node.right;
+        if (node.right == null) return node.left;
+        // Dos hijos: el sucesor ocupa su lugar en un nodo nuevo
+        Node suc = node.right;
+        while (suc.left != null) suc = suc.left;
+        return rebalancear(new Node(suc.key, suc.ids, node.left, removeMin(node.right)));
+    }
+
+    private static Node removeMin(Node node) {
+        if (node.left == null) return node.right;
+        return rebalancear(new Node(node.key, node.ids, removeMin(node.left), node.right));
+    }
+
+    // Aplica la rotación que corresponda; las rotaciones crean nodos nuevos
+    private static Node rebalancear(Node node) {
+        int bf = balance(node);
+        if (bf > 1) {
+            Node izq = balance(node.left) < 0 ? rotarIzquierda(node.left) : node.left;   // LR
+            return rotarDerecha(new Node(node.key, node.ids, izq, node.right));         // LL
+        }
+        if (bf < -1) {
+            Node der = balance(node.right) > 0 ? rotarDerecha(node.right) : node.right;  // RL
+            return rotarIzquierda(new Node(node.key, node.ids, node.left, der));        // RR
+        }
+        return node;
+    }
+
+    private static Node rotarDerecha(Node y) {
+        Node x = y.left;
+        return new Node(x.key, x.ids, x.left, new Node(y.key, y.ids, x.right, y.right));
+    }
+
+    private static Node rotarIzquierda(Node x) {
+        Node y = x.right;
+        return new Node(y.key, y.ids, new Node(x.key, x.ids, x.left, y.left), y.right);
+    }
+
+    private static int height(Node n) {
+        return n == null ? 0 : n.height;
+    }
+
+    private static int balance(Node n) {
+        return n == null ? 0 : height(n.left) - height(n.right);
+    }
+
+    private void comprobarEscritura() {
+        if (soloLectura) throw new UnsupportedOperationException("Instantánea de sólo lectura");
+    }
+
+    /** IDs asociados a la clave, o null si no existe. No deben modificarse. */
+    @Override
+    public ListaPostings get(String key) {
+        Node node = root;
+        while (node != null) {
+            int cmp = key.compareTo(node.key);
+            if (cmp == 0) return node.ids;
+            node = cmp < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    @Override
+    public ListaPostings getAllIds() {
+        Node r = root;
+        List<int[]> partes = new ArrayList<>();
+        int[] total = {0};
+        recorrer(r, (k, ids) -> {
+            int[] parte = ids.toArray();
+            partes.add(parte);
+            total[0] += parte.length;
+        });
+        int[] buffer = new int[total[0]];
+        int n = 0;
+        for (int[] parte : partes) {
+            System.arraycopy(parte, 0, buffer, n, parte.length);
+            n += parte.length;
+        }
+        return ListaPostings.desdeArreglo(buffer, n);
+    }
+
+    /** Recorrido en orden (claves ascendentes) de la versión actual. */
+    @Override
+    public void recorrer(BiConsumer<String, ListaPostings> accion) {
+        recorrer(root, accion);
+    }
+
+    private static void recorrer(Node node, BiConsumer<String, ListaPostings> accion) {
+        if (node == null) return;
+        recorrer(node.left, accion);
+        accion.accept(node.key, node.ids);
+        recorrer(node.right, accion);
+    }
+
+    @Override
+    public int cantidadNodos() {
+        return contarNodos(root);
+    }
+
+    private static int contarNodos(Node n) {
+        return n == null ? 0 : 1 + contarNodos(n.left) + contarNodos(n.right);
+    }
+
+    @Override
+    public int altura() {
+        return height(root);
+    }
+
+    @Override
+    public long bytesEstimados() {
+        long[] total = {0};
+        recorrer((k, ids) -> total[0] += BYTES_NODO + 2L * k.length() + ids.bytesEstimados());
+        return total[0];
+    }
+
+    /** Mismo formato por niveles con marcadores null que AVLTree. */
+    @Override
+    public String serializar() {
+        Node r = root;
+        int h = height(r);
+        List<String> entries = new ArrayList<>();
+        Queue<AbstractMap.SimpleEntry<Node, Integer>> q = new LinkedList<>();
+        q.add(new AbstractMap.SimpleEntry<>(r, 1));
+        while (!q.isEmpty()) {
+            AbstractMap.SimpleEntry<Node, Integer> en = q.poll();
+            Node cur = en.getKey();
+            int lvl = en.getValue();
+            entries.add(cur == null ? "null" : String.valueOf(cur.ids.primero()));
+            if (lvl < h) {
+                q.add(new AbstractMap.SimpleEntry<>(cur == null ? null : cur.left,  lvl + 1));
+                q.add(new AbstractMap.SimpleEntry<>(cur == null ? null : cur.right, lvl + 1));
+            }
+        }
+        int lastReal = -1;
+        for (int i = 0; i < entries.size(); i++) {
+            if (!entries.get(i).equals("null")) lastReal = i;
+        }
+        int limit = Math.min(entries.size(), lastReal + 2);
+        return String.join(",", entries.subList(0, Math.max(limit, 0)));
+    }
+}
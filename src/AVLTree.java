@@ -2,40 +2,84 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.*;
+import java.util.function.BiConsumer;
 
 /**
  * Árbol AVL que indexa por clave String y almacena listas de IDs.
- * Mantiene equilibrio tras cada inserción para garantizar
+ * Mantiene equilibrio tras cada inserción y eliminación para garantizar
  * alturas O(log n) y soporta serialización con marcadores null.
+ * Cada nodo guarda además cuántos IDs hay en su subárbol, lo que permite
+ * estadísticas de orden en O(log n): posición de una clave (rank), ID en
+ * una posición (select) y conteo de rangos, contando IDs en orden
+ * (clave, ID).
  */
-public class AVLTree {
+public class AVLTree implements EstructuraIndice {
+    // Bytes aproximados de un nodo (cabecera + campos) en una JVM de 64 bits
+    private static final int BYTES_NODO = 40;
+
     // Nodo interno: guarda clave, lista de IDs, referencias a hijos y altura
     private static class Node {
         String key;
-        List<Integer> ids;
+        ListaPostings ids;  // IDs de la clave, ordenados y sin duplicados
         Node left, right;
         int height;
+        int size;  // IDs en el subárbol (este nodo incluido)
 
         // Crea un nodo con clave inicial y un ID en la lista
         Node(String key, int id) {
             this.key = key;
-            this.ids = new ArrayList<>();
-            this.ids.add(id);
+            this.ids = new ListaPostings(id);
             this.height = 1;  // altura inicial de un nodo hoja
+            this.size = 1;
+        }
+
+        // Crea un nodo con una lista de IDs ya construida
+        Node(String key, ListaPostings ids) {
+            this.key = key;
+            this.ids = ids;
+            this.height = 1;
+            this.size = ids.tamano();
         }
     }
 
     private Node root;  // raíz del árbol AVL
+    private long rotaciones;  // rotaciones realizadas (métrica de reequilibrio)
 
     // Constructor: árbol vacío al inicio
     public AVLTree() {
         this.root = null;
     }
 
+    /**
+     * Construye en O(n) un árbol equilibrado a partir de claves ordenadas
+     * y sin repetir: la mediana de cada rango es la raíz de su subárbol,
+     * por lo que no hace falta ninguna rotación.
+     * @param claves  claves en orden ascendente
+     * @param ids     IDs de cada clave (misma posición)
+     * @param n       número de claves a usar
+     */
+    public static AVLTree desdeOrdenado(String[] claves, ListaPostings[] ids, int n) {
+        AVLTree t = new AVLTree();
+        t.root = construir(claves, ids, 0, n - 1);
+        return t;
+    }
+
+    // Construye el subárbol del rango [lo, hi] de abajo hacia arriba
+    private static Node construir(String[] claves, ListaPostings[] ids, int lo, int hi) {
+        if (lo > hi) return null;
+        int mid = (lo + hi) >>> 1;
+        Node node = new Node(claves[mid], ids[mid]);
+        node.left  = construir(claves, ids, lo, mid - 1);
+        node.right = construir(claves, ids, mid + 1, hi);
+        actualizar(node);
+        return node;
+    }
+
     /**
      * Inserta la pareja (key, id) en el árbol.
      * Tras la inserción, recalcula alturas y aplica rotaciones si es necesario.
      */
+    @Override
     public void insert(String key, int id) {
         root = insert(root, key, id);
     }
@@ -51,13 +95,13 @@ public class AVLTree {
         } else if (cmp > 0) {
             node.right = insert(node.right, key, id);
         } else {
-            // Mismo nodo: agregamos ID si no existe
-            if (!node.ids.contains(id)) node.ids.add(id);
+            // Mismo nodo: agregamos ID (la lista ignora duplicados)
+            if (node.ids.agregar(id)) node.size++;
             return node;  // no cambiamos estructura
         }
 
-        // Actualizar altura después de la inserción
-        node.height = 1 + Math.max(height(node.left), height(node.right));
+        // Actualizar altura y tamaño después de la inserción
+        actualizar(node);
         int bf = getBalance(node);  // factor de balance
 
         // Rotaciones según el caso de desbalance
@@ -76,11 +120,104 @@ public class AVLTree {
         return node;  // ya equilibrado
     }
 
+    /**
+     * Quita el ID de la clave. Si la clave se queda sin IDs elimina el
+     * nodo y reequilibra el camino de vuelta a la raíz.
+     */
+    @Override
+    public void remove(String key, int id) {
+        root = remove(root, key, id);
+    }
+
+    // Recursión de eliminación con reequilibrado
+    private Node remove(Node node, String key, int id) {
+        if (node == null) return null;
+        int cmp = key.compareTo(node.key);
+        if (cmp < 0) {
+            node.left = remove(node.left, key, id);
+        } else if (cmp > 0) {
+            node.right = remove(node.right, key, id);
+        } else {
+            if (!node.ids.eliminar(id)) return node;
+            if (!node.ids.estaVacia()) {
+                node.size--;
+                return node;
+            }
+            if (node.left == null)  return node.right;
+            if (node.right == null) return node.left;
+            // Dos hijos: ocupar el lugar del sucesor y quitarlo del subárbol derecho
+            Node suc = node.right;
+            while (suc.left != null) suc = suc.left;
+            node.key = suc.key;
+            node.ids = suc.ids;
+            node.right = removeMin(node.right);
+        }
+        return rebalancear(node);
+    }
+
+    // Quita el nodo mínimo de un subárbol, reequilibrando al volver
+    private Node removeMin(Node node) {
+        if (node.left == null) return node.right;
+        node.left = removeMin(node.left);
+        return rebalancear(node);
+    }
+
+    // Recalcula altura y tamaño y aplica la rotación que corresponda según el balance
+    private Node rebalancear(Node node) {
+        actualizar(node);
+        int bf = getBalance(node);
+        if (bf > 1) {
+            if (getBalance(node.left) < 0) node.left = leftRotate(node.left);    // LR
+            return rightRotate(node);                                             // LL
+        }
+        if (bf < -1) {
+            if (getBalance(node.right) > 0) node.right = rightRotate(node.right); // RL
+            return leftRotate(node);                                              // RR
+        }
+        return node;
+    }
+
+    /** IDs asociados a la clave, o null si no existe. */
+    @Override
+    public ListaPostings get(String key) {
+        Node node = root;
+        while (node != null) {
+            int cmp = key.compareTo(node.key);
+            if (cmp == 0) return node.ids;
+            node = cmp < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    /** Recorrido en orden (claves ascendentes). */
+    @Override
+    public void recorrer(BiConsumer<String, ListaPostings> accion) {
+        recorrer(root, accion);
+    }
+
+    private void recorrer(Node node, BiConsumer<String, ListaPostings> accion) {
+        if (node == null) return;
+        recorrer(node.left, accion);
+        accion.accept(node.key, node.ids);
+        recorrer(node.right, accion);
+    }
+
     // Altura de un nodo, 0 si es null
-    private int height(Node n) {
+    private static int height(Node n) {
         return (n == null) ? 0 : n.height;
     }
 
+    // IDs del subárbol, 0 si es null
+    private static int size(Node n) {
+        return (n == null) ? 0 : n.size;
+    }
+
+    // Recalcula altura y tamaño a partir de los hijos
+    private static void actualizar(Node n) {
+        n.height = 1 + Math.max(height(n.left), height(n.right));
+        n.size = n.ids.tamano() + size(n.left) + size(n.right);
+    }
+
     // Balance = altura(izq) - altura(der)
     private int getBalance(Node n) {
         return (n == null) ? 0 : height(n.left) - height(n.right);
@@ -88,51 +225,176 @@ public class AVLTree {
 
     // Rotación a la derecha (LL)
     private Node rightRotate(Node y) {
+        rotaciones++;
         Node x = y.left, T2 = x.right;
         x.right = y;  // pivote
         y.left = T2;
-        // Actualizar alturas
-        y.height = 1 + Math.max(height(y.left), height(y.right));
-        x.height = 1 + Math.max(height(x.left), height(x.right));
+        // Actualizar alturas y tamaños, primero el nodo que baja
+        actualizar(y);
+        actualizar(x);
         return x;  // nueva raíz de subárbol
     }
 
     // Rotación a la izquierda (RR)
     private Node leftRotate(Node x) {
+        rotaciones++;
         Node y = x.right, T2 = y.left;
         y.left = x;
         x.right = T2;
-        // Actualizar alturas
-        x.height = 1 + Math.max(height(x.left), height(x.right));
-        y.height = 1 + Math.max(height(y.left), height(y.right));
+        // Actualizar alturas y tamaños, primero el nodo que baja
+        actualizar(x);
+        actualizar(y);
         return y;  // nueva raíz de subárbol
     }
 
+    /** IDs en todo el árbol, en O(1). */
+    public int cantidadIds() {
+        return size(root);
+    }
+
+    /** Número de IDs cuya clave es menor que 'key' (posición de su primer ID), en O(log n). */
+    public int rank(String key) {
+        int menores = 0;
+        Node node = root;
+        while (node != null) {
+            int cmp = key.compareTo(node.key);
+            if (cmp <= 0) {
+                if (cmp == 0) return menores + size(node.left);
+                node = node.left;
+            } else {
+                menores += size(node.left) + node.ids.tamano();
+                node = node.right;
+            }
+        }
+        return menores;
+    }
+
+    /** Número de IDs cuya clave es menor o igual que 'key', en O(log n). */
+    private int rankHasta(String key) {
+        int hasta = 0;
+        Node node = root;
+        while (node != null) {
+            if (key.compareTo(node.key) < 0) {
+                node = node.left;
+            } else {
+                hasta += size(node.left) + node.ids.tamano();
+                node = node.right;
+            }
+        }
+        return hasta;
+    }
+
     /**
-     * Recorre todo el árbol por niveles (BFS) y devuelve la lista
-     * de IDs en el orden encontrado (cada nodo puede aportar varios IDs).
+     * Clave del ID que ocupa la posición dada (desde 0) en orden
+     * (clave, ID), en O(log n).
+     * @throws IndexOutOfBoundsException si la posición no existe
      */
-    public List<Integer> getAllIds() {
-        List<Integer> result = new ArrayList<>();
-        if (root == null) return result;
+    public String select(int posicion) {
+        return nodoEn(posicion).key;
+    }
+
+    // Nodo que contiene la posición dada
+    private Node nodoEn(int posicion) {
+        if (posicion < 0 || posicion >= size(root)) {
+            throw new IndexOutOfBoundsException("Posición " + posicion + " de " + size(root));
+        }
+        Node node = root;
+        while (true) {
+            int izquierda = size(node.left);
+            if (posicion < izquierda) {
+                node = node.left;
+            } else if (posicion < izquierda + node.ids.tamano()) {
+                return node;
+            } else {
+                posicion -= izquierda + node.ids.tamano();
+                node = node.right;
+            }
+        }
+    }
 
-        Queue<Node> q = new LinkedList<>();
+    /**
+     * Número de IDs con clave entre desde y hasta (ambas incluidas; null =
+     * sin límite), en O(log n) y sin recorrer el rango.
+     */
+    public int countRange(String desde, String hasta) {
+        int fin = hasta == null ? size(root) : rankHasta(hasta);
+        int inicio = desde == null ? 0 : rank(desde);
+        return Math.max(0, fin - inicio);
+    }
+
+    /**
+     * Hasta 'limite' IDs en orden (clave, ID) a partir de la posición dada:
+     * baja hasta ella en O(log n) y sigue en orden con una pila, sin
+     * visitar lo anterior.
+     */
+    public int[] idsDesdePosicion(int posicion, int limite) {
+        int total = size(root);
+        if (posicion < 0 || limite <= 0 || posicion >= total) return new int[0];
+        int[] res = new int[Math.min(limite, total - posicion)];
+        int n = 0;
+        // Pila con los ancestros que quedan a la derecha del camino
+        Deque<Node> pila = new ArrayDeque<>();
+        Node node = root;
+        int saltar = posicion;
+        while (true) {
+            int izquierda = size(node.left);
+            if (saltar < izquierda) {
+                pila.push(node);
+                node = node.left;
+            } else if (saltar < izquierda + node.ids.tamano()) {
+                saltar -= izquierda;
+                break;
+            } else {
+                saltar -= izquierda + node.ids.tamano();
+                node = node.right;
+            }
+        }
+        while (node != null && n < res.length) {
+            PrimitiveIterator.OfInt it = node.ids.iterator();
+            for (int k = 0; k < saltar; k++) it.nextInt();
+            saltar = 0;
+            while (it.hasNext() && n < res.length) res[n++] = it.nextInt();
+            // Siguiente en orden: mínimo del subárbol derecho o el ancestro pendiente
+            Node sig = node.right;
+            while (sig != null) {
+                pila.push(sig);
+                sig = sig.left;
+            }
+            node = pila.poll();
+        }
+        return res;
+    }
+
+    /**
+     * Recorre todo el árbol por niveles (BFS) y devuelve el conjunto
+     * de IDs encontrados (cada nodo puede aportar varios IDs).
+     */
+    @Override
+    public ListaPostings getAllIds() {
+        int[] buffer = new int[16];
+        int n = 0;
+        if (root == null) return new ListaPostings();
+
+        Queue<Node> q = new ArrayDeque<>();
         q.add(root);
         while (!q.isEmpty()) {
             Node cur = q.poll();
-            result.addAll(cur.ids);   // añadir todos los IDs del nodo actual
+            for (int id : cur.ids.toArray()) {   // añadir todos los IDs del nodo actual
+                if (n == buffer.length) buffer = Arrays.copyOf(buffer, n * 2);
+                buffer[n++] = id;
+            }
             if (cur.left != null)  q.add(cur.left);
             if (cur.right != null) q.add(cur.right);
         }
-        return result;
+        return ListaPostings.desdeArreglo(buffer, n);
     }
 
     /**
-     * Serializa el árbol a un archivo usando recorrido por niveles:
+     * Serializa el árbol usando recorrido por niveles:
      * - Incluye "null" para representar hijos ausentes.
      * - Recorta nulls sobrantes y deja un único marcador al final.
      */
-    public void saveToFileWithNulls(String filename) {
+    public String serializarConNulls() {
         int h = treeHeight(root);  // altura total del árbol
         List<String> entries = new ArrayList<>();
         Queue<AbstractMap.SimpleEntry<Node,Integer>> q = new LinkedList<>();
@@ -143,7 +405,7 @@ public class AVLTree {
             AbstractMap.SimpleEntry<Node,Integer> en = q.poll();
             Node cur = en.getKey();
             int lvl = en.getValue();
-            entries.add(cur == null ? "null" : String.valueOf(cur.ids.get(0)));
+            entries.add(cur == null ? "null" : String.valueOf(cur.ids.primero()));
             if (lvl < h) {
                 // Encolar hijos solo si el nodo existe
                 if (cur != null) {
@@ -164,17 +426,57 @@ public class AVLTree {
         }
         int limit = Math.min(entries.size(), lastReal + 2);  // +1 para un null de marcador
 
-        // Escritura en el archivo hasta el límite calculado
+        // Unir las entradas hasta el límite calculado
+        return String.join(",", entries.subList(0, Math.max(limit, 0)));
+    }
+
+    /**
+     * Serializa el árbol por niveles y lo escribe en un archivo
+     * (ver {@link #serializarConNulls()}).
+     */
+    public void saveToFileWithNulls(String filename) {
         try (PrintWriter pw = new PrintWriter(new FileWriter(filename))) {
-            for (int i = 0; i < limit; i++) {
-                pw.print(entries.get(i));
-                if (i < limit - 1) pw.print(",");
-            }
+            pw.print(serializarConNulls());
         } catch (IOException e) {
             System.err.println("Error guardando AVL con nulls: " + e.getMessage());
         }
     }
 
+    @Override
+    public String serializar() {
+        return serializarConNulls();
+    }
+
+    /** Altura del árbol (número de niveles, 0 si está vacío). */
+    @Override
+    public int altura() {
+        return treeHeight(root);
+    }
+
+    /** Rotaciones realizadas desde la creación del árbol. */
+    public long getRotaciones() {
+        return rotaciones;
+    }
+
+    /** Número de nodos (claves distintas) del árbol. */
+    @Override
+    public int cantidadNodos() {
+        return contarNodos(root);
+    }
+
+    @Override
+    public long bytesEstimados() {
+        long[] total = {0};
+        recorrer((k, ids) -> total[0] += BYTES_NODO + 2L * k.length() + ids.bytesEstimados());
+        return total[0];
+    }
+
+    // Cuenta recursivamente los nodos de un subárbol
+    private int contarNodos(Node node) {
+        if (node == null) return 0;
+        return 1 + contarNodos(node.left) + contarNodos(node.right);
+    }
+
     // Calcula la altura (niveles) de un subárbol dado
     private int treeHeight(Node node) {
         if (node == null) return 0;
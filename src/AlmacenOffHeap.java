@@ -0,0 +1,415 @@
+// AlmacenOffHeap.java
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+/**
+ * Almacén de contactos fuera del heap de Java: los campos se guardan
+ * codificados en UTF-8 en segmentos de memoria directa y una tabla de
+ * desplazamientos indexada por ID (también fuera del heap) localiza cada
+ * registro. El recolector de basura sólo ve unos pocos objetos
+ * ByteBuffer, no millones de Contacto y String.
+ *
+ * Registro: 7 longitudes de 2 bytes (una por campo) seguidas de los bytes
+ * de cada campo, así que leer un campo no decodifica los demás.
+ * Una actualización escribe un registro nuevo; el espacio de los
+ * registros sustituidos o eliminados se recupera al compactar, lo que
+ * ocurre automáticamente cuando supera la mitad de lo usado.
+ * La tabla crece hasta el mayor ID, por lo que conviene usar IDs densos
+ * (como los que asigna GestorContactos).
+ *
+ * Es el almacenamiento de GestorContactos en modo fuera del heap: el
+ * gestor entrega vistas (ver {@link #vista}) que decodifican cada campo
+ * al leerlo, y publica sus versiones con {@link #congelar}.
+ */
+public class AlmacenOffHeap {
+
+    /** Campos almacenados, en el orden del registro. */
+    public enum Campo { NOMBRE, APELLIDO, APODO, TELEFONO, EMAIL, DIRECCION, FECHA_NACIMIENTO }
+
+    private static final int CAMPOS = Campo.values().length;
+    private static final int CABECERA = 2 * CAMPOS;
+    private static final int TAMANO_SEGMENTO_DEFECTO = 16 << 20;
+    private static final int MAX_CAMPO = 0xFFFF;
+
+    private final int tamanoSegmento;
+    // Segmentos de memoria directa con los registros, llenados en orden
+    private List<ByteBuffer> segmentos = new ArrayList<>();
+    // Posición de escritura en el último segmento
+    private int posicion;
+    // Tabla ID → (segmento << 32 | desplazamiento) + 1; 0 = ausente
+    private ByteBuffer tabla = ByteBuffer.allocateDirect(8 * 1024);
+    private int tamano;
+    private long bytesVivos;
+    private long bytesMuertos;
+    // Copia de sólo lectura hecha con congelar()
+    private boolean congelado;
+
+    public AlmacenOffHeap() {
+        this(TAMANO_SEGMENTO_DEFECTO);
+    }
+
+    /** @param tamanoSegmento  bytes de cada bloque de memoria directa */
+    public AlmacenOffHeap(int tamanoSegmento) {
+        this.tamanoSegmento = tamanoSegmento;
+    }
+
+    /** Almacén con los contactos dados. */
+    public static AlmacenOffHeap desde(Collection<Contacto> contactos) {
+        AlmacenOffHeap a = new AlmacenOffHeap();
+        for (Contacto c : contactos) a.guardar(c);
+        return a;
+    }
+
+    /** Inserta o sustituye el contacto con su ID. */
+    public synchronized void guardar(Contacto c) {
+        comprobarEscritura();
+        int id = c.getId();
+        if (id < 0) throw new IllegalArgumentException("ID negativo: " + id);
+        byte[][] campos = new byte[CAMPOS][];
+        int largo = CABECERA;
+        for (Campo campo : Campo.values()) {
+            byte[] b = valor(c, campo).getBytes(StandardCharsets.UTF_8);
+            if (b.length > MAX_CAMPO) throw new IllegalArgumentException("Campo demasiado largo: " + campo);
+            campos[campo.ordinal()] = b;
+            largo += b.length;
+        }
+        ByteBuffer seg = reservar(largo);
+        int inicio = posicion;
+        for (int i = 0; i < CAMPOS; i++) {
+            seg.putShort(inicio + 2 * i, (short) campos[i].length);
+        }
+        int p = inicio + CABECERA;
+        for (byte[] b : campos) {
+            seg.put(p, b);
+            p += b.length;
+        }
+        posicion = p;
+
+        asegurarTabla(id);
+        long anterior = tabla.getLong(8 * id);
+        if (anterior != 0) {
+            long muerto = largoRegistro(anterior - 1);
+            bytesMuertos += muerto;
+            bytesVivos -= muerto;
+        } else {
+            tamano++;
+        }
+        tabla.putLong(8 * id, (((long) (segmentos.size() - 1) << 32) | inicio) + 1);
+        bytesVivos += largo;
+        compactarSiConviene();
+    }
+
+    /** Elimina el contacto; devuelve false si no estaba. */
+    public synchronized boolean eliminar(int id) {
+        comprobarEscritura();
+        long ref = referencia(id);
+        if (ref == 0) return false;
+        long largo = largoRegistro(ref - 1);
+        bytesMuertos += largo;
+        bytesVivos -= largo;
+        tabla.putLong(8 * id, 0);
+        tamano--;
+        compactarSiConviene();
+        return true;
+    }
+
+    // Compacta cuando lo muerto supera a lo vivo y ocupa al menos un segmento
+    private void compactarSiConviene() {
+        if (bytesMuertos > bytesVivos && bytesMuertos > tamanoSegmento) compactar();
+    }
+
+    public synchronized boolean contiene(int id) {
+        return referencia(id) != 0;
+    }
+
+    /**
+     * Contacto que lee cada campo de este almacén al pedirlo, así que un
+     * filtro o un índice sobre un campo no decodifica los demás; null si
+     * el ID no existe. Modificar la vista la separa del almacén (ver Vista).
+     */
+    public synchronized Contacto vista(int id) {
+        return referencia(id) == 0 ? null : new Vista(this, id);
+    }
+
+    /** Decodifica sólo el campo pedido, o null si el ID no existe. */
+    public synchronized String obtenerCampo(int id, Campo campo) {
+        long ref = referencia(id);
+        if (ref == 0) return null;
+        ByteBuffer seg = segmentos.get((int) ((ref - 1) >>> 32));
+        int inicio = (int) (ref - 1);
+        int p = inicio + CABECERA;
+        for (int i = 0; i < campo.ordinal(); i++) p += seg.getShort(inicio + 2 * i) & 0xFFFF;
+        byte[] b = new byte[seg.getShort(inicio + 2 * campo.ordinal()) & 0xFFFF];
+        seg.get(p, b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    /** Contacto completo (objeto nuevo en el heap), o null si el ID no existe. */
+    public synchronized Contacto obtener(int id) {
+        long ref = referencia(id);
+        if (ref == 0) return null;
+        ByteBuffer seg = segmentos.get((int) ((ref - 1) >>> 32));
+        int inicio = (int) (ref - 1);
+        String[] v = new String[CAMPOS];
+        int p = inicio + CABECERA;
+        for (int i = 0; i < CAMPOS; i++) {
+            byte[] b = new byte[seg.getShort(inicio + 2 * i) & 0xFFFF];
+            seg.get(p, b);
+            p += b.length;
+            v[i] = new String(b, StandardCharsets.UTF_8);
+        }
+        Contacto c = new Contacto(v[0], v[1], v[2], v[3], v[4], v[5], v[6]);
+        c.setId(id);
+        return c;
+    }
+
+    /**
+     * IDs cuyo campo es exactamente 'valor', comparando los bytes
+     * codificados sin crear ningún String por registro.
+     */
+    public synchronized ListaPostings buscar(Campo campo, String valor) {
+        byte[] buscado = valor.getBytes(StandardCharsets.UTF_8);
+        ListaPostings res = new ListaPostings();
+        forEachId(id -> {
+            long ref = tabla.getLong(8 * id) - 1;
+            ByteBuffer seg = segmentos.get((int) (ref >>> 32));
+            int inicio = (int) ref;
+            if ((seg.getShort(inicio + 2 * campo.ordinal()) & 0xFFFF) != buscado.length) return;
+            int p = inicio + CABECERA;
+            for (int i = 0; i < campo.ordinal(); i++) p += seg.getShort(inicio + 2 * i) & 0xFFFF;
+            for (int k = 0; k < buscado.length; k++) {
+                if (seg.get(p + k) != buscado[k]) return;
+            }
+            res.agregar(id);
+        });
+        return res;
+    }
+
+    /** Iterador de los IDs mayores que despuesDe, en orden ascendente. */
+    public PrimitiveIterator.OfInt iteradorIds(int despuesDe) {
+        return new PrimitiveIterator.OfInt() {
+            private int siguiente = siguienteId(despuesDe);
+
+            public boolean hasNext() {
+                return siguiente >= 0;
+            }
+
+            public int nextInt() {
+                if (siguiente < 0) throw new NoSuchElementException();
+                int id = siguiente;
+                siguiente = siguienteId(id);
+                return id;
+            }
+        };
+    }
+
+    // Primer ID almacenado mayor que despuesDe, o -1
+    private synchronized int siguienteId(int despuesDe) {
+        int capacidad = tabla.capacity() / 8;
+        for (int id = Math.max(0, despuesDe + 1); id < capacidad; id++) {
+            if (tabla.getLong(8 * id) != 0) return id;
+        }
+        return -1;
+    }
+
+    /** Recorre los IDs almacenados en orden ascendente. */
+    public synchronized void forEachId(IntConsumer accion) {
+        int capacidad = tabla.capacity() / 8;
+        for (int id = 0; id < capacidad; id++) {
+            if (tabla.getLong(8 * id) != 0) accion.accept(id);
+        }
+    }
+
+    public synchronized int tamano() {
+        return tamano;
+    }
+
+    /** Memoria directa reservada (segmentos + tabla). */
+    public synchronized long bytesReservados() {
+        return (long) segmentos.size() * tamanoSegmento + tabla.capacity();
+    }
+
+    public synchronized long getBytesVivos() {
+        return bytesVivos;
+    }
+
+    public synchronized long getBytesMuertos() {
+        return bytesMuertos;
+    }
+
+    /**
+     * Copia de sólo lectura del estado actual. Comparte los segmentos, que
+     * no cambian porque las escrituras siempre añaden detrás y compactar
+     * copia a segmentos nuevos; sólo se duplica la tabla de
+     * desplazamientos (8 bytes por ID). Los segmentos que ya no use el
+     * original se liberan cuando también se descarta la copia.
+     */
+    public synchronized AlmacenOffHeap congelar() {
+        AlmacenOffHeap copia = new AlmacenOffHeap(tamanoSegmento);
+        copia.segmentos = new ArrayList<>(segmentos);
+        copia.posicion = posicion;
+        copia.tabla = ByteBuffer.allocateDirect(tabla.capacity());
+        copia.tabla.put(0, tabla, 0, tabla.capacity());
+        copia.tamano = tamano;
+        copia.bytesVivos = bytesVivos;
+        copia.bytesMuertos = bytesMuertos;
+        copia.congelado = true;
+        return copia;
+    }
+
+    /** Elimina todos los contactos y suelta los segmentos. */
+    public synchronized void vaciar() {
+        comprobarEscritura();
+        segmentos = new ArrayList<>();
+        posicion = 0;
+        tabla = ByteBuffer.allocateDirect(8 * 1024);
+        tamano = 0;
+        bytesVivos = 0;
+        bytesMuertos = 0;
+    }
+
+    /**
+     * Copia los registros vivos a segmentos nuevos y libera los antiguos
+     * (su memoria se devuelve cuando el GC recoge los ByteBuffer).
+     */
+    public synchronized void compactar() {
+        comprobarEscritura();
+        List<ByteBuffer> viejos = segmentos;
+        segmentos = new ArrayList<>();
+        posicion = 0;
+        int capacidad = tabla.capacity() / 8;
+        for (int id = 0; id < capacidad; id++) {
+            long ref = tabla.getLong(8 * id);
+            if (ref == 0) continue;
+            ByteBuffer origen = viejos.get((int) ((ref - 1) >>> 32));
+            int inicio = (int) (ref - 1);
+            int largo = largoRegistro(origen, inicio);
+            ByteBuffer destino = reservar(largo);
+            destino.put(posicion, origen, inicio, largo);
+            tabla.putLong(8 * id, (((long) (segmentos.size() - 1) << 32) | posicion) + 1);
+            posicion += largo;
+        }
+        bytesMuertos = 0;
+    }
+
+    private void comprobarEscritura() {
+        if (congelado) throw new IllegalStateException("Almacén congelado: es de sólo lectura");
+    }
+
+    // Segmento con al menos 'largo' bytes libres desde 'posicion'
+    private ByteBuffer reservar(int largo) {
+        if (segmentos.isEmpty() || posicion + largo > tamanoSegmento) {
+            segmentos.add(ByteBuffer.allocateDirect(Math.max(tamanoSegmento, largo)));
+            posicion = 0;
+        }
+        return segmentos.get(segmentos.size() - 1);
+    }
+
+    // Duplica la tabla hasta que quepa el ID (la memoria nueva llega a cero)
+    private void asegurarTabla(int id) {
+        long necesario = 8L * id + 8;
+        if (necesario <= tabla.capacity()) return;
+        long nueva = tabla.capacity();
+        while (nueva < necesario) nueva *= 2;
+        if (nueva > Integer.MAX_VALUE - 8) nueva = Integer.MAX_VALUE - 8;
+        ByteBuffer t = ByteBuffer.allocateDirect((int) nueva);
+        t.put(0, tabla, 0, tabla.capacity());
+        tabla = t;
+    }
+
+    private long referencia(int id) {
+        if (id < 0 || 8L * id + 8 > tabla.capacity()) return 0;
+        return tabla.getLong(8 * id);
+    }
+
+    private int largoRegistro(long ref) {
+        return largoRegistro(segmentos.get((int) (ref >>> 32)), (int) ref);
+    }
+
+    private static int largoRegistro(ByteBuffer seg, int inicio) {
+        int largo = CABECERA;
+        for (int i = 0; i < CAMPOS; i++) largo += seg.getShort(inicio + 2 * i) & 0xFFFF;
+        return largo;
+    }
+
+    private static String valor(Contacto c, Campo campo) {
+        String v = switch (campo) {
+            case NOMBRE           -> c.getNombre();
+            case APELLIDO         -> c.getApellido();
+            case APODO            -> c.getApodo();
+            case TELEFONO         -> c.getTelefono();
+            case EMAIL            -> c.getEmail();
+            case DIRECCION        -> c.getDireccion();
+            case FECHA_NACIMIENTO -> c.getFechaNacimiento();
+        };
+        return v == null ? "" : v;
+    }
+
+    /**
+     * Contacto respaldado por el almacén: cada getter decodifica sólo su
+     * campo (null si el contacto ya no existe). El primer setter copia
+     * todos los campos y separa la vista, que desde entonces es un Contacto
+     * normal; los cambios se guardan al pasarlo al gestor (p. ej. con
+     * actualizarContacto), nunca directamente en el almacén.
+     */
+    private static final class Vista extends Contacto {
+        // null una vez separada
+        private AlmacenOffHeap almacen;
+
+        Vista(AlmacenOffHeap almacen, int id) {
+            super(null, null, null, null, null, null, null);
+            super.setId(id);
+            this.almacen = almacen;
+        }
+
+        private String campo(Campo campo, String propio) {
+            AlmacenOffHeap a = almacen;
+            return a == null ? propio : a.obtenerCampo(getId(), campo);
+        }
+
+        // Copia los campos actuales antes de la primera modificación
+        private void separar() {
+            if (almacen == null) return;
+            Contacto c = almacen.obtener(getId());
+            almacen = null;
+            if (c == null) return;
+            super.setNombre(c.getNombre());
+            super.setApellido(c.getApellido());
+            super.setApodo(c.getApodo());
+            super.setTelefono(c.getTelefono());
+            super.setEmail(c.getEmail());
+            super.setDireccion(c.getDireccion());
+            super.setFechaNacimiento(c.getFechaNacimiento());
+        }
+
+        @Override public String getNombre()          { return campo(Campo.NOMBRE, super.getNombre()); }
+        @Override public String getApellido()        { return campo(Campo.APELLIDO, super.getApellido()); }
+        @Override public String getApodo()           { return campo(Campo.APODO, super.getApodo()); }
+        @Override public String getTelefono()        { return campo(Campo.TELEFONO, super.getTelefono()); }
+        @Override public String getEmail()           { return campo(Campo.EMAIL, super.getEmail()); }
+        @Override public String getDireccion()       { return campo(Campo.DIRECCION, super.getDireccion()); }
+        @Override public String getFechaNacimiento() { return campo(Campo.FECHA_NACIMIENTO, super.getFechaNacimiento()); }
+
+        @Override public void setId(int id)                { separar(); super.setId(id); }
+        @Override public void setNombre(String v)          { separar(); super.setNombre(v); }
+        @Override public void setApellido(String v)        { separar(); super.setApellido(v); }
+        @Override public void setApodo(String v)           { separar(); super.setApodo(v); }
+        @Override public void setTelefono(String v)        { separar(); super.setTelefono(v); }
+        @Override public void setEmail(String v)           { separar(); super.setEmail(v); }
+        @Override public void setDireccion(String v)       { separar(); super.setDireccion(v); }
+        @Override public void setFechaNacimiento(String v) { separar(); super.setFechaNacimiento(v); }
+
+        @Override
+        public String toString() {
+            AlmacenOffHeap a = almacen;
+            Contacto c = a == null ? null : a.obtener(getId());
+            return c != null ? c.toString() : super.toString();
+        }
+    }
+}
@@ -0,0 +1,787 @@
+// BPlusTree.java
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * Árbol B+ guardado en un archivo de páginas de tamaño fijo, para índices
+ * más grandes que la memoria. Sólo un número acotado de páginas está en
+ * el heap a la vez (caché LRU); las modificadas se escriben al salir de
+ * la caché y en sincronizar().
+ *
+ * Cada entrada es un par (clave, id), ordenado por los bytes UTF-8 de la
+ * clave y luego por id: una clave con muchos IDs ocupa hojas consecutivas
+ * en lugar de una lista que tenga que caber en una página. Las hojas
+ * están enlazadas para recorrer rangos. El mismo archivo guarda la
+ * relación inversa id → clave (entradas con otro prefijo), que Indice
+ * necesita para quitar el valor anterior de un contacto sin tenerla en
+ * memoria.
+ *
+ * Al borrar no se fusionan páginas: una hoja puede quedarse vacía y se
+ * vuelve a llenar con inserciones de su rango. Reconstruir el índice
+ * (carga masiva) compacta el archivo.
+ *
+ * Formato de página:
+ *   0 (cabecera): mágico, tamaño de página, raíz, páginas, altura,
+ *                 entradas, claves, IDs, huella, limpio
+ *   hoja:    [0][n:short][siguiente:int] n × [largo:short][clave][id:int]
+ *   interna: [1][n:short][hijo0:int]     n × [largo:short][clave][id:int][hijo:int]
+ *
+ * La huella es la suma de huellaDe(id, clave) de la relación inversa: no
+ * depende del orden y se actualiza en O(1) con cada cambio, así que quien
+ * reabre el árbol puede comprobar que sigue correspondiendo a sus datos
+ * sin recorrerlo.
+ */
+public class BPlusTree implements EstructuraIndice, Closeable {
+
+    static final int TAMANO_PAGINA = 4096;
+    /** Bytes UTF-8 máximos de una clave. */
+    static final int MAX_CLAVE = 512;
+    /** Páginas en la caché por defecto (4 MB). */
+    static final int PAGINAS_EN_MEMORIA = 1024;
+
+    private static final int MAGICO = 0x42504C32;  // "BPL2" (con huella)
+    private static final int CABECERA_NODO = 7;
+    private static final byte VALOR = 'v';
+    private static final byte INVERSO = 'r';
+    // Ocupación de las páginas en la carga masiva: deja hueco para insertar sin dividir
+    private static final double LLENADO = 0.9;
+
+    private static final class Nodo {
+        final int pagina;
+        final boolean hoja;
+        final List<byte[]> claves = new ArrayList<>();
+        final List<Integer> ids = new ArrayList<>();
+        // Sólo en nodos internos: claves.size() + 1 hijos
+        final List<Integer> hijos = new ArrayList<>();
+        // Sólo en hojas: página de la hoja siguiente o -1
+        int siguiente = -1;
+        boolean sucio;
+
+        Nodo(int pagina, boolean hoja) {
+            this.pagina = pagina;
+            this.hoja = hoja;
+        }
+
+        int tam() {
+            return claves.size();
+        }
+
+        int bytes() {
+            int b = CABECERA_NODO;
+            for (int i = 0; i < claves.size(); i++) b += largoEntrada(i);
+            return b;
+        }
+
+        int largoEntrada(int i) {
+            return 2 + claves.get(i).length + (hoja ? 4 : 8);
+        }
+    }
+
+    // Resultado de dividir un nodo: entrada separadora y página del nuevo nodo derecho
+    private record Division(byte[] clave, int id, int pagina) {}
+
+    // Primera entrada de cada nodo de un nivel, para levantar el nivel superior
+    private record Hijo(byte[] clave, int id, int pagina) {}
+
+    @FunctionalInterface
+    private interface Visitante {
+        /** @return false para detener el recorrido */
+        boolean visitar(byte[] clave, int id);
+    }
+
+    private final Path ruta;
+    private final FileChannel canal;
+    private final int capacidad;
+    // Caché de páginas en orden de acceso: la primera es la menos usada
+    private final LinkedHashMap<Integer, Nodo> cache;
+    private int raiz;
+    private int numPaginas;
+    private int altura;
+    private long entradas;
+    private int claves;
+    private int ids;
+    // Suma de huellaDe(id, clave) de todos los IDs registrados
+    private long huella;
+    // false desde el primer cambio hasta el siguiente sincronizar()
+    private boolean limpio = true;
+    private boolean cerrado;
+    private long lecturas;
+    private long escrituras;
+
+    private BPlusTree(Path ruta, boolean nuevo, int capacidad) throws IOException {
+        this.ruta = ruta;
+        this.capacidad = Math.max(8, capacidad);
+        if (nuevo) Files.deleteIfExists(ruta);
+        this.canal = FileChannel.open(ruta, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Nodo> e) {
+                if (size() <= BPlusTree.this.capacidad) return false;
+                if (e.getValue().sucio) escribirPagina(e.getValue());
+                return true;
+            }
+        };
+        if (nuevo) {
+            numPaginas = 1;  // la 0 es la cabecera
+        } else {
+            leerCabecera();
+        }
+    }
+
+    /** Árbol vacío en un archivo nuevo (sustituye al que hubiera). */
+    public static BPlusTree crear(Path ruta) {
+        return crear(ruta, PAGINAS_EN_MEMORIA);
+    }
+
+    /** Como {@link #crear(Path)}, con una caché de 'paginas' páginas. */
+    public static BPlusTree crear(Path ruta, int paginas) {
+        try {
+            BPlusTree a = new BPlusTree(ruta, true, paginas);
+            a.raiz = a.nuevoNodo(true).pagina;
+            a.altura = 1;
+            a.sincronizar();
+            return a;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Abre un árbol existente leyendo sólo su cabecera; las páginas se
+     * cargan según se usan.
+     * @throws IOException si el archivo no es un árbol válido o no se
+     *         cerró limpiamente (cambios sin sincronizar)
+     */
+    public static BPlusTree abrir(Path ruta) throws IOException {
+        return abrir(ruta, PAGINAS_EN_MEMORIA);
+    }
+
+    /** Como {@link #abrir(Path)}, con una caché de 'paginas' páginas. */
+    public static BPlusTree abrir(Path ruta, int paginas) throws IOException {
+        if (!Files.exists(ruta)) throw new IOException("No existe " + ruta);
+        return new BPlusTree(ruta, false, paginas);
+    }
+
+    /**
+     * Escribe en 'ruta' un árbol nuevo con las claves y sus IDs y la
+     * relación inversa id → clave, llenando las hojas de izquierda a
+     * derecha y levantando después los niveles internos: escritura
+     * secuencial, sin búsquedas ni divisiones.
+     * @param claves     claves distintas (en cualquier orden)
+     * @param ids        IDs de cada clave
+     * @param n          número de claves
+     * @param valorPorId clave de cada ID
+     */
+    static void construir(Path ruta, String[] claves, ListaPostings[] ids, int n,
+                          Map<Integer, String> valorPorId) throws IOException {
+        try (BPlusTree a = new BPlusTree(ruta, true, PAGINAS_EN_MEMORIA)) {
+            CargaMasiva carga = a.new CargaMasiva();
+            // Entradas inversas ('r') antes que las directas ('v'), en orden de ID
+            int[] orden = new int[valorPorId.size()];
+            int k = 0;
+            for (int id : valorPorId.keySet()) orden[k++] = id;
+            Arrays.sort(orden);
+            for (int id : orden) {
+                String valor = valorPorId.get(id);
+                carga.agregar(claveInversa(id, valor), id);
+                a.huella += huellaDe(id, valor);
+            }
+            // Directas en orden de bytes, que puede diferir del de String
+            byte[][] codificadas = new byte[n][];
+            Integer[] pos = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                codificadas[i] = clave(VALOR, claves[i]);
+                pos[i] = i;
+            }
+            Arrays.sort(pos, (x, y) -> Arrays.compareUnsigned(codificadas[x], codificadas[y]));
+            for (int i : pos) {
+                ids[i].forEach(id -> carga.agregar(codificadas[i], id));
+                a.entradas += ids[i].tamano();
+            }
+            carga.terminar();
+            a.claves = n;
+            a.ids = orden.length;
+        }
+    }
+
+    // Llena hojas en orden y crea los niveles internos al terminar
+    private final class CargaMasiva {
+        private final List<Hijo> hojas = new ArrayList<>();
+        private Nodo hoja;
+        private int bytes;
+
+        void agregar(byte[] clave, int id) {
+            int largo = 2 + clave.length + 4;
+            if (hoja == null || bytes + largo > LLENADO * TAMANO_PAGINA) {
+                Nodo nueva = nuevoNodo(true);
+                if (hoja != null) {
+                    hoja.siguiente = nueva.pagina;
+                    marcarSucio(hoja);
+                }
+                hoja = nueva;
+                bytes = CABECERA_NODO;
+                hojas.add(new Hijo(clave, id, nueva.pagina));
+            }
+            hoja.claves.add(clave);
+            hoja.ids.add(id);
+            bytes += largo;
+        }
+
+        void terminar() {
+            if (hoja == null) hoja = nuevoNodo(true);
+            marcarSucio(hoja);
+            List<Hijo> nivel = hojas;
+            altura = 1;
+            while (nivel.size() > 1) {
+                List<Hijo> superior = new ArrayList<>();
+                Nodo nodo = null;
+                int usados = 0;
+                for (Hijo h : nivel) {
+                    int largo = 2 + h.clave().length + 8;
+                    if (nodo == null || usados + largo > LLENADO * TAMANO_PAGINA) {
+                        if (nodo != null) marcarSucio(nodo);
+                        nodo = nuevoNodo(false);
+                        nodo.hijos.add(h.pagina());
+                        usados = CABECERA_NODO;
+                        superior.add(new Hijo(h.clave(), h.id(), nodo.pagina));
+                    } else {
+                        nodo.claves.add(h.clave());
+                        nodo.ids.add(h.id());
+                        nodo.hijos.add(h.pagina());
+                        usados += largo;
+                    }
+                }
+                marcarSucio(nodo);
+                nivel = superior;
+                altura++;
+            }
+            raiz = nivel.isEmpty() ? hoja.pagina : nivel.get(0).pagina();
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Operaciones de EstructuraIndice
+
+    @Override
+    public synchronized void insert(String key, int id) {
+        byte[] k = clave(VALOR, key);
+        boolean nueva = !existe(k);
+        if (insertarEntrada(k, id)) {
+            entradas++;
+            if (nueva) claves++;
+        }
+    }
+
+    @Override
+    public synchronized void remove(String key, int id) {
+        byte[] k = clave(VALOR, key);
+        if (quitarEntrada(k, id)) {
+            entradas--;
+            if (!existe(k)) claves--;
+        }
+    }
+
+    @Override
+    public synchronized ListaPostings get(String key) {
+        byte[] k = clave(VALOR, key);
+        ListaPostings res = new ListaPostings();
+        escanear(k, Integer.MIN_VALUE, (c, id) -> {
+            if (!Arrays.equals(c, k)) return false;
+            res.agregar(id);
+            return true;
+        });
+        return res.estaVacia() ? null : res;
+    }
+
+    @Override
+    public synchronized ListaPostings getAllIds() {
+        int[][] buf = {new int[Math.max(16, ids)]};
+        int[] n = {0};
+        escanear(new byte[] {VALOR}, Integer.MIN_VALUE, (c, id) -> {
+            if (c[0] != VALOR) return false;
+            if (n[0] == buf[0].length) buf[0] = Arrays.copyOf(buf[0], n[0] * 2);
+            buf[0][n[0]++] = id;
+            return true;
+        });
+        return ListaPostings.desdeArreglo(buf[0], n[0]);
+    }
+
+    @Override
+    public void recorrer(BiConsumer<String, ListaPostings> accion) {
+        rango(null, null, accion);
+    }
+
+    /**
+     * Recorre en orden las claves entre desde y hasta (ambas incluidas;
+     * null = sin límite) leyendo sólo las hojas del rango.
+     */
+    @Override
+    public synchronized void rango(String desde, String hasta, BiConsumer<String, ListaPostings> accion) {
+        byte[] inicio = desde == null ? new byte[] {VALOR} : clave(VALOR, desde);
+        byte[] fin = hasta == null ? null : clave(VALOR, hasta);
+        byte[][] actual = {null};
+        ListaPostings[] idsActual = {null};
+        escanear(inicio, Integer.MIN_VALUE, (c, id) -> {
+            if (c[0] != VALOR || (fin != null && Arrays.compareUnsigned(c, fin) > 0)) return false;
+            if (actual[0] == null || !Arrays.equals(actual[0], c)) {
+                if (actual[0] != null) accion.accept(texto(actual[0], 1), idsActual[0]);
+                actual[0] = c;
+                idsActual[0] = new ListaPostings();
+            }
+            idsActual[0].agregar(id);
+            return true;
+        });
+        if (actual[0] != null) accion.accept(texto(actual[0], 1), idsActual[0]);
+    }
+
+    @Override
+    public synchronized int cantidadNodos() {
+        return claves;
+    }
+
+    @Override
+    public synchronized int altura() {
+        return altura;
+    }
+
+    /** Memoria ocupada: sólo las páginas en caché. */
+    @Override
+    public synchronized long bytesEstimados() {
+        return (long) cache.size() * TAMANO_PAGINA;
+    }
+
+    /** El árbol ya está en su archivo; el texto sólo describe su forma. */
+    @Override
+    public synchronized String serializar() {
+        return "BPlusTree{archivo=" + ruta + ", paginas=" + numPaginas + ", altura=" + altura
+                + ", entradas=" + entradas + ", claves=" + claves + "}";
+    }
+
+    // ------------------------------------------------------------------
+    // Relación inversa id → clave
+
+    /** Clave registrada para el ID, o null. */
+    public synchronized String valorDe(int id) {
+        byte[] prefijo = claveInversa(id, "");
+        String[] res = {null};
+        escanear(prefijo, Integer.MIN_VALUE, (c, i) -> {
+            if (i == id && empiezaPor(c, prefijo)) res[0] = texto(c, prefijo.length);
+            return false;
+        });
+        return res[0];
+    }
+
+    /** Registra la clave del ID y devuelve la anterior (o null). */
+    public synchronized String cambiarValor(int id, String valor) {
+        String anterior = valorDe(id);
+        if (valor.equals(anterior)) return anterior;
+        if (anterior != null) {
+            quitarEntrada(claveInversa(id, anterior), id);
+            huella -= huellaDe(id, anterior);
+        } else {
+            ids++;
+        }
+        insertarEntrada(claveInversa(id, valor), id);
+        huella += huellaDe(id, valor);
+        return anterior;
+    }
+
+    /** Olvida la clave del ID y la devuelve (o null si no tenía). */
+    public synchronized String quitarValor(int id) {
+        String anterior = valorDe(id);
+        if (anterior != null) {
+            quitarEntrada(claveInversa(id, anterior), id);
+            ids--;
+            huella -= huellaDe(id, anterior);
+        }
+        return anterior;
+    }
+
+    /** Huella de la relación id → clave (ver huellaDe). */
+    public synchronized long getHuella() {
+        return huella;
+    }
+
+    /**
+     * Aporte de un par (id, clave) a la huella. Usa String.hashCode, que
+     * está especificado, para que la huella valga entre ejecuciones.
+     */
+    static long huellaDe(int id, String valor) {
+        long h = valor.hashCode() * 0x9E3779B97F4A7C15L + id;
+        h = (h ^ (h >>> 31)) * 0xBF58476D1CE4E5B9L;
+        return h ^ (h >>> 29);
+    }
+
+    /** IDs con una clave registrada. */
+    public synchronized int cantidadIds() {
+        return ids;
+    }
+
+    // ------------------------------------------------------------------
+    // Páginas y caché
+
+    /**
+     * Escribe las páginas modificadas y la cabecera y fuerza los datos a
+     * disco; a partir de aquí el archivo puede reabrirse sin reconstruir.
+     */
+    public synchronized void sincronizar() throws IOException {
+        if (cerrado) return;
+        try {
+            for (Nodo n : cache.values()) {
+                if (n.sucio) escribirPagina(n);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        limpio = true;
+        escribirCabecera();
+        canal.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (cerrado) return;
+        try {
+            sincronizar();
+        } finally {
+            cerrado = true;
+            cache.clear();
+            canal.close();
+        }
+    }
+
+    public Path getRuta() {
+        return ruta;
+    }
+
+    public synchronized int getPaginas() {
+        return numPaginas;
+    }
+
+    /** Páginas leídas del archivo (fallos de caché). */
+    public synchronized long getLecturas() {
+        return lecturas;
+    }
+
+    /** Páginas escritas en el archivo. */
+    public synchronized long getEscrituras() {
+        return escrituras;
+    }
+
+    private Nodo leer(int pagina) {
+        Nodo n = cache.get(pagina);
+        if (n != null) return n;
+        ByteBuffer buf = ByteBuffer.allocate(TAMANO_PAGINA);
+        try {
+            leerPagina(pagina, buf);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        n = decodificar(pagina, buf);
+        lecturas++;
+        cache.put(pagina, n);
+        return n;
+    }
+
+    private Nodo nuevoNodo(boolean hoja) {
+        Nodo n = new Nodo(numPaginas++, hoja);
+        marcarSucio(n);
+        return n;
+    }
+
+    /**
+     * Marca el nodo como modificado y lo (re)pone en la caché: si se
+     * desalojó mientras se usaba, vuelve a ella y se escribirá más tarde.
+     */
+    private void marcarSucio(Nodo n) {
+        if (limpio) {
+            limpio = false;
+            try {
+                escribirCabecera();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        n.sucio = true;
+        cache.put(n.pagina, n);
+    }
+
+    private void escribirPagina(Nodo n) {
+        ByteBuffer buf = ByteBuffer.allocate(TAMANO_PAGINA);
+        buf.put((byte) (n.hoja ? 0 : 1));
+        buf.putShort((short) n.tam());
+        buf.putInt(n.hoja ? n.siguiente : n.hijos.get(0));
+        for (int i = 0; i < n.tam(); i++) {
+            byte[] k = n.claves.get(i);
+            buf.putShort((short) k.length);
+            buf.put(k);
+            buf.putInt(n.ids.get(i));
+            if (!n.hoja) buf.putInt(n.hijos.get(i + 1));
+        }
+        buf.clear();
+        try {
+            escribirCompleto(buf, (long) n.pagina * TAMANO_PAGINA);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        n.sucio = false;
+        escrituras++;
+    }
+
+    private static Nodo decodificar(int pagina, ByteBuffer buf) {
+        boolean hoja = buf.get() == 0;
+        int n = buf.getShort() & 0xFFFF;
+        Nodo nodo = new Nodo(pagina, hoja);
+        if (hoja) nodo.siguiente = buf.getInt();
+        else nodo.hijos.add(buf.getInt());
+        for (int i = 0; i < n; i++) {
+            byte[] k = new byte[buf.getShort() & 0xFFFF];
+            buf.get(k);
+            nodo.claves.add(k);
+            nodo.ids.add(buf.getInt());
+            if (!hoja) nodo.hijos.add(buf.getInt());
+        }
+        return nodo;
+    }
+
+    private void escribirCabecera() throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(TAMANO_PAGINA);
+        buf.putInt(MAGICO).putInt(TAMANO_PAGINA).putInt(raiz).putInt(numPaginas).putInt(altura)
+           .putLong(entradas).putInt(claves).putInt(ids).putLong(huella).put((byte) (limpio ? 1 : 0));
+        buf.clear();
+        escribirCompleto(buf, 0);
+    }
+
+    private void leerCabecera() throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(TAMANO_PAGINA);
+        leerPagina(0, buf);
+        if (buf.getInt() != MAGICO || buf.getInt() != TAMANO_PAGINA) {
+            canal.close();
+            throw new IOException(ruta + " no es un árbol B+ válido");
+        }
+        raiz = buf.getInt();
+        numPaginas = buf.getInt();
+        altura = buf.getInt();
+        entradas = buf.getLong();
+        claves = buf.getInt();
+        ids = buf.getInt();
+        huella = buf.getLong();
+        if (buf.get() != 1) {
+            canal.close();
+            throw new IOException(ruta + " no se cerró correctamente");
+        }
+    }
+
+    private void leerPagina(int pagina, ByteBuffer buf) throws IOException {
+        long pos = (long) pagina * TAMANO_PAGINA;
+        while (buf.hasRemaining()) {
+            if (canal.read(buf, pos + buf.position()) < 0) {
+                throw new IOException("Página " + pagina + " incompleta en " + ruta);
+            }
+        }
+        buf.flip();
+    }
+
+    private void escribirCompleto(ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) canal.write(buf, pos + buf.position());
+    }
+
+    // ------------------------------------------------------------------
+    // Búsqueda, inserción y borrado de entradas
+
+    private static int comparar(byte[] a, int idA, byte[] b, int idB) {
+        int c = Arrays.compareUnsigned(a, b);
+        return c != 0 ? c : Integer.compare(idA, idB);
+    }
+
+    // Primera posición con entrada >= (k, id)
+    private static int cotaInferior(Nodo n, byte[] k, int id) {
+        int lo = 0, hi = n.tam();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (comparar(n.claves.get(mid), n.ids.get(mid), k, id) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // Primera posición con entrada > (k, id): en un nodo interno, el hijo que la contiene
+    private static int cotaSuperior(Nodo n, byte[] k, int id) {
+        int lo = 0, hi = n.tam();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (comparar(n.claves.get(mid), n.ids.get(mid), k, id) <= 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // Hoja cuyo rango contiene (k, id); apila el camino si se pide
+    private Nodo descender(byte[] k, int id, Deque<Nodo> camino) {
+        Nodo n = leer(raiz);
+        while (!n.hoja) {
+            if (camino != null) camino.push(n);
+            n = leer(n.hijos.get(cotaSuperior(n, k, id)));
+        }
+        return n;
+    }
+
+    // Visita en orden las entradas >= (k, id) hasta que el visitante diga basta
+    private void escanear(byte[] k, int id, Visitante v) {
+        comprobarAbierto();
+        Nodo n = descender(k, id, null);
+        int pos = cotaInferior(n, k, id);
+        while (true) {
+            for (; pos < n.tam(); pos++) {
+                if (!v.visitar(n.claves.get(pos), n.ids.get(pos))) return;
+            }
+            if (n.siguiente < 0) return;
+            n = leer(n.siguiente);
+            pos = 0;
+        }
+    }
+
+    // Hay alguna entrada con la clave k
+    private boolean existe(byte[] k) {
+        boolean[] res = {false};
+        escanear(k, Integer.MIN_VALUE, (c, id) -> {
+            res[0] = Arrays.equals(c, k);
+            return false;
+        });
+        return res[0];
+    }
+
+    /**
+     * Inserta la entrada en su hoja y, si la página se desborda, la divide
+     * y sube la separadora al padre, repitiendo hacia la raíz.
+     * @return false si la entrada ya estaba
+     */
+    private boolean insertarEntrada(byte[] k, int id) {
+        comprobarAbierto();
+        Deque<Nodo> camino = new ArrayDeque<>();
+        Nodo hoja = descender(k, id, camino);
+        int pos = cotaInferior(hoja, k, id);
+        if (pos < hoja.tam() && comparar(hoja.claves.get(pos), hoja.ids.get(pos), k, id) == 0) return false;
+        hoja.claves.add(pos, k);
+        hoja.ids.add(pos, id);
+        marcarSucio(hoja);
+        Nodo actual = hoja;
+        while (actual.bytes() > TAMANO_PAGINA) {
+            Division d = dividir(actual);
+            if (camino.isEmpty()) {
+                Nodo r = nuevoNodo(false);
+                r.hijos.add(actual.pagina);
+                r.claves.add(d.clave());
+                r.ids.add(d.id());
+                r.hijos.add(d.pagina());
+                marcarSucio(r);
+                raiz = r.pagina;
+                altura++;
+                break;
+            }
+            Nodo padre = camino.pop();
+            int i = cotaSuperior(padre, d.clave(), d.id());
+            padre.claves.add(i, d.clave());
+            padre.ids.add(i, d.id());
+            padre.hijos.add(i + 1, d.pagina());
+            marcarSucio(padre);
+            actual = padre;
+        }
+        return true;
+    }
+
+    /**
+     * Pasa la mitad derecha (en bytes) del nodo a una página nueva. En una
+     * hoja la separadora es la primera entrada de la nueva; en un nodo
+     * interno la entrada central sube al padre y sale de ambos.
+     */
+    private Division dividir(Nodo n) {
+        int mitad = n.bytes() / 2;
+        int limite = n.hoja ? n.tam() - 1 : n.tam() - 2;
+        int m = 0;
+        for (int acum = CABECERA_NODO; m < limite && acum < mitad; m++) acum += n.largoEntrada(m);
+        m = Math.max(1, m);
+        Nodo d = nuevoNodo(n.hoja);
+        int tam = n.tam();
+        Division res;
+        if (n.hoja) {
+            d.claves.addAll(n.claves.subList(m, tam));
+            d.ids.addAll(n.ids.subList(m, tam));
+            d.siguiente = n.siguiente;
+            n.siguiente = d.pagina;
+            res = new Division(d.claves.get(0), d.ids.get(0), d.pagina);
+        } else {
+            res = new Division(n.claves.get(m), n.ids.get(m), d.pagina);
+            d.claves.addAll(n.claves.subList(m + 1, tam));
+            d.ids.addAll(n.ids.subList(m + 1, tam));
+            d.hijos.addAll(n.hijos.subList(m + 1, tam + 1));
+            n.hijos.subList(m + 1, tam + 1).clear();
+        }
+        n.claves.subList(m, tam).clear();
+        n.ids.subList(m, tam).clear();
+        marcarSucio(n);
+        marcarSucio(d);
+        return res;
+    }
+
+    // Quita la entrada de su hoja, sin fusionar páginas; false si no estaba
+    private boolean quitarEntrada(byte[] k, int id) {
+        comprobarAbierto();
+        Nodo hoja = descender(k, id, null);
+        int pos = cotaInferior(hoja, k, id);
+        if (pos == hoja.tam() || comparar(hoja.claves.get(pos), hoja.ids.get(pos), k, id) != 0) return false;
+        hoja.claves.remove(pos);
+        hoja.ids.remove(pos);
+        marcarSucio(hoja);
+        return true;
+    }
+
+    private void comprobarAbierto() {
+        if (cerrado) throw new IllegalStateException("Índice cerrado: " + ruta);
+    }
+
+    // ------------------------------------------------------------------
+    // Codificación de claves
+
+    private static byte[] clave(byte prefijo, String valor) {
+        byte[] v = valor.getBytes(StandardCharsets.UTF_8);
+        if (v.length > MAX_CLAVE) {
+            throw new IllegalArgumentException("Clave de más de " + MAX_CLAVE + " bytes para el índice en disco");
+        }
+        byte[] k = new byte[v.length + 1];
+        k[0] = prefijo;
+        System.arraycopy(v, 0, k, 1, v.length);
+        return k;
+    }
+
+    // 'r', el ID en 4 bytes y la clave: las de un mismo ID quedan contiguas
+    private static byte[] claveInversa(int id, String valor) {
+        byte[] v = clave(INVERSO, valor);
+        byte[] k = new byte[v.length + 4];
+        k[0] = INVERSO;
+        k[1] = (byte) (id >>> 24);
+        k[2] = (byte) (id >>> 16);
+        k[3] = (byte) (id >>> 8);
+        k[4] = (byte) id;
+        System.arraycopy(v, 1, k, 5, v.length - 1);
+        return k;
+    }
+
+    private static boolean empiezaPor(byte[] c, byte[] prefijo) {
+        return c.length >= prefijo.length && Arrays.equals(c, 0, prefijo.length, prefijo, 0, prefijo.length);
+    }
+
+    private static String texto(byte[] c, int desde) {
+        return new String(c, desde, c.length - desde, StandardCharsets.UTF_8);
+    }
+}
@@ -3,24 +3,35 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.*;
+import java.util.function.BiConsumer;
 
 /**
  * Árbol Binario de Búsqueda que indexa por clave String
  * y almacena listas de IDs para cada clave.
+ * Las operaciones son iterativas: con datos ordenados el árbol degenera
+ * en una lista y la recursión desbordaría la pila.
  */
-public class BST {
+public class BST implements EstructuraIndice {
+
+    // Bytes aproximados de un nodo (cabecera + campos) en una JVM de 64 bits
+    private static final int BYTES_NODO = 32;
 
     // Nodo interno que guarda una clave, lista de IDs y referencias a hijos
     private static class Node {
         String key;             // Clave de indexación (p. ej. apodo, nombre)
-        List<Integer> ids;      // Lista de IDs asociados a esta clave
+        ListaPostings ids;      // IDs asociados a esta clave (ordenados, sin duplicados)
         Node left, right;       // Hijos izquierdo y derecho
 
         // Constructor de nodo: inicializa la clave y agrega el primer ID
         Node(String key, int id) {
             this.key = key;
-            this.ids = new ArrayList<>();
-            this.ids.add(id);
+            this.ids = new ListaPostings(id);
+        }
+
+        // Constructor de nodo con una lista de IDs ya construida
+        Node(String key, ListaPostings ids) {
+            this.key = key;
+            this.ids = ids;
         }
     }
 
@@ -31,59 +42,153 @@ public class BST {
         this.root = null;
     }
 
+    /**
+     * Construye en O(n) un BST de altura mínima a partir de claves
+     * ordenadas y sin repetir (la mediana de cada rango es la raíz).
+     * Evita el árbol degenerado que produciría insertar en orden.
+     * @param claves  claves en orden ascendente
+     * @param ids     IDs de cada clave (misma posición)
+     * @param n       número de claves a usar
+     */
+    public static BST desdeOrdenado(String[] claves, ListaPostings[] ids, int n) {
+        BST t = new BST();
+        t.root = construir(claves, ids, 0, n - 1);
+        return t;
+    }
+
+    // Construye el subárbol del rango [lo, hi]; la profundidad es O(log n)
+    private static Node construir(String[] claves, ListaPostings[] ids, int lo, int hi) {
+        if (lo > hi) return null;
+        int mid = (lo + hi) >>> 1;
+        Node node = new Node(claves[mid], ids[mid]);
+        node.left  = construir(claves, ids, lo, mid - 1);
+        node.right = construir(claves, ids, mid + 1, hi);
+        return node;
+    }
+
     /**
      * Inserta un par (key, id) en el BST.
      * Si la clave ya existe, añade el ID a la lista (sin duplicados).
      */
+    @Override
     public void insert(String key, int id) {
-        root = insertRec(root, key, id);
+        if (root == null) {
+            root = new Node(key, id);
+            return;
+        }
+        // Descender hasta encontrar la clave o el hueco donde crear el nodo
+        Node node = root;
+        while (true) {
+            int cmp = key.compareTo(node.key);
+            if (cmp == 0) {
+                // Clave ya existe: agregar ID (la lista ignora duplicados)
+                node.ids.agregar(id);
+                return;
+            }
+            Node hijo = cmp < 0 ? node.left : node.right;
+            if (hijo == null) {
+                if (cmp < 0) node.left  = new Node(key, id);
+                else         node.right = new Node(key, id);
+                return;
+            }
+            node = hijo;
+        }
     }
 
-    // Recursión real de inserción: busca la posición y crea/actualiza el nodo
-    private Node insertRec(Node node, String key, int id) {
-        if (node == null) {
-            return new Node(key, id);
+    /**
+     * Quita el ID de la clave. Si la clave se queda sin IDs se elimina
+     * el nodo (sustituyéndolo por su sucesor si tiene dos hijos).
+     */
+    @Override
+    public void remove(String key, int id) {
+        Node padre = null, node = root;
+        while (node != null) {
+            int cmp = key.compareTo(node.key);
+            if (cmp == 0) break;
+            padre = node;
+            node  = cmp < 0 ? node.left : node.right;
         }
-        int cmp = key.compareTo(node.key);
-        if (cmp < 0) {
-            node.left = insertRec(node.left, key, id);
-        } else if (cmp > 0) {
-            node.right = insertRec(node.right, key, id);
-        } else {
-            // Clave ya existe: agregar ID si no está presente
-            if (!node.ids.contains(id)) {
-                node.ids.add(id);
+        if (node == null || !node.ids.eliminar(id) || !node.ids.estaVacia()) return;
+
+        if (node.left != null && node.right != null) {
+            // Dos hijos: copiar el sucesor (mínimo del subárbol derecho) y borrarlo a él
+            Node padreSuc = node, suc = node.right;
+            while (suc.left != null) {
+                padreSuc = suc;
+                suc = suc.left;
             }
+            node.key = suc.key;
+            node.ids = suc.ids;
+            if (padreSuc == node) padreSuc.right = suc.right;
+            else                  padreSuc.left  = suc.right;
+            return;
+        }
+        // Cero o un hijo: enlazar el hijo con el padre
+        Node hijo = node.left != null ? node.left : node.right;
+        if (padre == null)          root = hijo;
+        else if (padre.left == node) padre.left = hijo;
+        else                        padre.right = hijo;
+    }
+
+    /** IDs asociados a la clave, o null si no existe. */
+    @Override
+    public ListaPostings get(String key) {
+        Node node = root;
+        while (node != null) {
+            int cmp = key.compareTo(node.key);
+            if (cmp == 0) return node.ids;
+            node = cmp < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    /** Recorrido en orden (claves ascendentes) con una pila explícita. */
+    @Override
+    public void recorrer(BiConsumer<String, ListaPostings> accion) {
+        Deque<Node> pila = new ArrayDeque<>();
+        Node cur = root;
+        while (cur != null || !pila.isEmpty()) {
+            while (cur != null) {
+                pila.push(cur);
+                cur = cur.left;
+            }
+            cur = pila.pop();
+            accion.accept(cur.key, cur.ids);
+            cur = cur.right;
         }
-        return node;
     }
 
     /**
-     * Devuelve la lista de todos los IDs en recorrido por niveles (BFS).
+     * Devuelve todos los IDs del árbol recorriéndolo por niveles (BFS).
      * Cada nodo contribuye con todos sus IDs.
      */
-    public List<Integer> getAllIds() {
-        List<Integer> result = new ArrayList<>();
-        if (root == null) return result;
+    @Override
+    public ListaPostings getAllIds() {
+        int[] buffer = new int[16];
+        int n = 0;
+        if (root == null) return new ListaPostings();
 
-        Queue<Node> q = new LinkedList<>();
+        Queue<Node> q = new ArrayDeque<>();
         q.add(root);
         while (!q.isEmpty()) {
             Node cur = q.poll();
-            result.addAll(cur.ids);
+            for (int id : cur.ids.toArray()) {
+                if (n == buffer.length) buffer = Arrays.copyOf(buffer, n * 2);
+                buffer[n++] = id;
+            }
             if (cur.left  != null) q.add(cur.left);
             if (cur.right != null) q.add(cur.right);
         }
-        return result;
+        return ListaPostings.desdeArreglo(buffer, n);
     }
 
     /**
-     * Serializa el árbol por niveles a un archivo:
+     * Serializa el árbol por niveles:
      * - Incluye "null" solo para hijos directos de nodos reales.
      * - Recorta los null finales y deja un único marcador al final.
      * Ejemplo de salida: 1,2,3,null,4,6,5,7,null,null,null,9,null,10,null,8,null
      */
-    public void saveToFileWithNulls(String filename) {
+    public String serializarConNulls() {
         int h = treeHeight(root);                           // Altura máxima del árbol
         List<String> entries = new ArrayList<>();
         Queue<AbstractMap.SimpleEntry<Node,Integer>> q = new LinkedList<>();
@@ -94,7 +199,7 @@ public class BST {
             Node cur = en.getKey();
             int lvl = en.getValue();
             // Añadir ID o marcador null
-            entries.add(cur == null ? "null" : String.valueOf(cur.ids.get(0)));
+            entries.add(cur == null ? "null" : String.valueOf(cur.ids.primero()));
 
             // Solo expandir hijos si el nodo es real y no se alcanza la altura máxima
             if (cur != null && lvl < h) {
@@ -113,22 +218,62 @@ public class BST {
         // Conservar hasta el último real + un null de marcador
         int limit = Math.min(entries.size(), lastReal + 2);
 
-        // Escribir en archivo hasta el límite calculado
+        // Unir las entradas hasta el límite calculado
+        return String.join(",", entries.subList(0, Math.max(limit, 0)));
+    }
+
+    /**
+     * Serializa el árbol por niveles y lo escribe en un archivo
+     * (ver {@link #serializarConNulls()}).
+     */
+    public void saveToFileWithNulls(String filename) {
         try (PrintWriter pw = new PrintWriter(new FileWriter(filename))) {
-            for (int i = 0; i < limit; i++) {
-                pw.print(entries.get(i));
-                if (i < limit - 1) {
-                    pw.print(",");
-                }
-            }
+            pw.print(serializarConNulls());
         } catch (IOException e) {
             System.err.println("Error guardando BST con nulls: " + e.getMessage());
         }
     }
 
-    // Calcula recursivamente la altura (número de niveles) del árbol
+    @Override
+    public String serializar() {
+        return serializarConNulls();
+    }
+
+    /** Altura del árbol (número de niveles, 0 si está vacío). */
+    @Override
+    public int altura() {
+        return treeHeight(root);
+    }
+
+    /** Número de nodos (claves distintas) del árbol. */
+    @Override
+    public int cantidadNodos() {
+        int[] n = {0};
+        recorrer((k, ids) -> n[0]++);
+        return n[0];
+    }
+
+    @Override
+    public long bytesEstimados() {
+        long[] total = {0};
+        recorrer((k, ids) -> total[0] += BYTES_NODO + 2L * k.length() + ids.bytesEstimados());
+        return total[0];
+    }
+
+    // Calcula la altura (número de niveles) del árbol recorriéndolo por niveles
     private int treeHeight(Node node) {
         if (node == null) return 0;
-        return 1 + Math.max(treeHeight(node.left), treeHeight(node.right));
+        int niveles = 0;
+        Queue<Node> q = new ArrayDeque<>();
+        q.add(node);
+        while (!q.isEmpty()) {
+            niveles++;
+            for (int i = q.size(); i > 0; i--) {
+                Node cur = q.poll();
+                if (cur.left  != null) q.add(cur.left);
+                if (cur.right != null) q.add(cur.right);
+            }
+        }
+        return niveles;
     }
 }
@@ -0,0 +1,86 @@
+// BenchmarkIndices.java
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compara el coste de cada tipo de índice (hash, bst, avl) sobre un campo
+ * de alta cardinalidad (email) y otro de baja cardinalidad (apellido):
+ * tiempo de construcción (inserción a inserción y masiva), memoria (estimada y medida en el heap) y
+ * latencia media de búsqueda por igualdad.
+ *
+ * Uso: java BenchmarkIndices [cantidadContactos]
+ */
+public class BenchmarkIndices {
+
+    private static final String[] TIPOS  = {"hash", "bst", "avl"};
+    private static final String[] CAMPOS = {"email", "apellido"};
+    private static final int BUSQUEDAS   = 200_000;
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        List<Contacto> contactos = generarContactos(n);
+        GestorContactos gestor = new GestorContactos();
+        System.out.printf("%-9s %-5s %10s %11s %14s %14s %12s%n",
+                "campo", "tipo", "constr(ms)", "masivo(ms)", "bytes estim.", "heap medido", "busq(ns)");
+        for (String campo : CAMPOS) {
+            for (String tipo : TIPOS) {
+                medir(campo, tipo, contactos, gestor);
+            }
+        }
+    }
+
+    // Construye el índice, mide memoria y lanza búsquedas aleatorias
+    private static void medir(String campo, String tipo, List<Contacto> contactos, GestorContactos gestor) {
+        long heapAntes = heapUsado();
+        long t0 = System.nanoTime();
+        Indice indice = new Indice(campo, tipo, gestor);
+        for (Contacto c : contactos) {
+            indice.insertar(c);
+        }
+        long construccion = System.nanoTime() - t0;
+        long heapDespues = heapUsado();
+
+        Indice masivo = new Indice(campo, tipo, gestor);
+        long tm = System.nanoTime();
+        masivo.construirMasivo(contactos);
+        long construccionMasiva = System.nanoTime() - tm;
+
+        Random r = new Random(42);
+        long encontrados = 0;
+        long t1 = System.nanoTime();
+        for (int i = 0; i < BUSQUEDAS; i++) {
+            Contacto c = contactos.get(r.nextInt(contactos.size()));
+            String valor = campo.equals("email") ? c.getEmail() : c.getApellido();
+            encontrados += indice.buscarIds(valor).tamano();
+        }
+        long busqueda = (System.nanoTime() - t1) / BUSQUEDAS;
+
+        System.out.printf("%-9s %-5s %10d %11d %14d %14d %12d%n",
+                campo, tipo, construccion / 1_000_000, construccionMasiva / 1_000_000,
+                indice.getEstructura().bytesEstimados(), heapDespues - heapAntes, busqueda);
+        if (encontrados == 0) System.out.println("(sin resultados)");
+    }
+
+    // Contactos sintéticos: emails únicos y 200 apellidos distintos
+    private static List<Contacto> generarContactos(int n) {
+        Random r = new Random(7);
+        List<Contacto> lista = new ArrayList<>(n);
+        for (int i = 1; i <= n; i++) {
+            Contacto c = new Contacto("Nombre" + r.nextInt(5_000), "Apellido" + r.nextInt(200), "apodo" + i,
+                    String.format("%08d", 10_000_000 + i), "usuario" + i + "@dominio" + r.nextInt(50) + ".com",
+                    "Calle " + r.nextInt(1_000), String.format("%02d/%02d/%04d",
+                    1 + r.nextInt(28), 1 + r.nextInt(12), 1950 + r.nextInt(60)));
+            c.setId(i);
+            lista.add(c);
+        }
+        return lista;
+    }
+
+    // Heap ocupado tras pedir una recolección (aproximado)
+    private static long heapUsado() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
@@ -0,0 +1,168 @@
+// BenchmarkOffHeap.java
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compara el almacenamiento actual (ArrayList + HashMap de Contacto en el
+ * heap, como GestorContactos) con AlmacenOffHeap bajo la misma carga:
+ * heap ocupado, memoria directa, tiempo de carga, duración de una
+ * recolección completa con los datos vivos y recolecciones/tiempo de GC
+ * durante lecturas aleatorias de un campo. Las filas "gestor" y
+ * "gestor-fh" repiten la carga con un GestorContactos completo en cada
+ * modo (lista, acceso por ID y versión publicada), leyendo por
+ * getContactoPorId.
+ *
+ * Uso: java -Xmx2g -XX:MaxDirectMemorySize=2g BenchmarkOffHeap [cantidadContactos]
+ */
+public class BenchmarkOffHeap {
+
+    private static final int LECTURAS = 2_000_000;
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        System.out.printf("%-9s %10s %12s %12s %12s %10s %12s %10s%n",
+                "almacen", "carga(ms)", "heap", "directa", "gcCompl(ms)", "lect(ns)", "gcs lectura", "gc(ms)");
+        medirHeap(n);
+        medirOffHeap(n);
+        medirGestor(n, false);
+        medirGestor(n, true);
+    }
+
+    private static void medirGestor(int n, boolean fueraDelHeap) {
+        long heapAntes = heapUsado();
+        long directaAntes = memoriaDirecta();
+        long t0 = System.nanoTime();
+        GestorContactos gestor = new GestorContactos(fueraDelHeap);
+        Random r = new Random(7);
+        List<Contacto> lote = new ArrayList<>();
+        for (int i = 1; i <= n; i++) {
+            lote.add(generar(r, i));
+            if (lote.size() == 100_000 || i == n) {
+                gestor.incorporar(lote);
+                lote = new ArrayList<>();
+            }
+        }
+        long carga = System.nanoTime() - t0;
+        long heap = heapUsado() - heapAntes;
+        long directa = memoriaDirecta() - directaAntes;
+        long pausa = pausaCompleta();
+
+        long[] gc = estadoGc();
+        Random q = new Random(42);
+        long suma = 0;
+        long t1 = System.nanoTime();
+        for (int i = 0; i < LECTURAS; i++) {
+            suma += gestor.getContactoPorId(1 + q.nextInt(n)).getEmail().length();
+        }
+        long lectura = (System.nanoTime() - t1) / LECTURAS;
+        imprimir(fueraDelHeap ? "gestor-fh" : "gestor", carga, heap, directa, pausa, lectura, gc,
+                suma + gestor.getCantidadContactos());
+        gestor.cerrar();
+    }
+
+    private static void medirHeap(int n) {
+        long heapAntes = heapUsado();
+        long t0 = System.nanoTime();
+        List<Contacto> lista = new ArrayList<>(n);
+        Map<Integer, Contacto> porId = new HashMap<>();
+        Random r = new Random(7);
+        for (int i = 1; i <= n; i++) {
+            Contacto c = generar(r, i);
+            lista.add(c);
+            porId.put(i, c);
+        }
+        long carga = System.nanoTime() - t0;
+        long heap = heapUsado() - heapAntes;
+        long pausa = pausaCompleta();
+
+        long[] gc = estadoGc();
+        Random q = new Random(42);
+        long suma = 0;
+        long t1 = System.nanoTime();
+        for (int i = 0; i < LECTURAS; i++) {
+            suma += porId.get(1 + q.nextInt(n)).getEmail().length();
+        }
+        long lectura = (System.nanoTime() - t1) / LECTURAS;
+        imprimir("heap", carga, heap, 0, pausa, lectura, gc, suma + lista.size());
+    }
+
+    private static void medirOffHeap(int n) {
+        long heapAntes = heapUsado();
+        long t0 = System.nanoTime();
+        AlmacenOffHeap almacen = new AlmacenOffHeap();
+        Random r = new Random(7);
+        for (int i = 1; i <= n; i++) {
+            almacen.guardar(generar(r, i));
+        }
+        long carga = System.nanoTime() - t0;
+        long heap = heapUsado() - heapAntes;
+        long pausa = pausaCompleta();
+
+        long[] gc = estadoGc();
+        Random q = new Random(42);
+        long suma = 0;
+        long t1 = System.nanoTime();
+        for (int i = 0; i < LECTURAS; i++) {
+            suma += almacen.obtenerCampo(1 + q.nextInt(n), AlmacenOffHeap.Campo.EMAIL).length();
+        }
+        long lectura = (System.nanoTime() - t1) / LECTURAS;
+        imprimir("offheap", carga, heap, almacen.bytesReservados(), pausa, lectura, gc, suma + almacen.tamano());
+    }
+
+    private static void imprimir(String nombre, long carga, long heap, long directa, long pausa,
+                                 long lectura, long[] gcAntes, long control) {
+        long[] gc = estadoGc();
+        System.out.printf("%-9s %10d %12d %12d %12d %10d %12d %10d%n",
+                nombre, carga / 1_000_000, heap, directa, pausa, lectura,
+                gc[0] - gcAntes[0], gc[1] - gcAntes[1]);
+        if (control == 0) System.out.println("(sin datos)");
+    }
+
+    // Mismo generador que BenchmarkIndices: emails únicos y 200 apellidos
+    private static Contacto generar(Random r, int i) {
+        Contacto c = new Contacto("Nombre" + r.nextInt(5_000), "Apellido" + r.nextInt(200), "apodo" + i,
+                String.format("%08d", 10_000_000 + i), "usuario" + i + "@dominio" + r.nextInt(50) + ".com",
+                "Calle " + r.nextInt(1_000), String.format("%02d/%02d/%04d",
+                1 + r.nextInt(28), 1 + r.nextInt(12), 1950 + r.nextInt(60)));
+        c.setId(i);
+        return c;
+    }
+
+    // Duración de una recolección completa pedida con los datos vivos (ms)
+    private static long pausaCompleta() {
+        long t = System.nanoTime();
+        System.gc();
+        return (System.nanoTime() - t) / 1_000_000;
+    }
+
+    // {recolecciones, milisegundos} acumulados por todos los recolectores
+    private static long[] estadoGc() {
+        long cuenta = 0, tiempo = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            cuenta += Math.max(0, gc.getCollectionCount());
+            tiempo += Math.max(0, gc.getCollectionTime());
+        }
+        return new long[] {cuenta, tiempo};
+    }
+
+    // Memoria directa en uso por todos los ByteBuffer directos
+    private static long memoriaDirecta() {
+        for (BufferPoolMXBean b : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (b.getName().equals("direct")) return b.getMemoryUsed();
+        }
+        return 0;
+    }
+
+    // Heap ocupado tras pedir una recolección (aproximado)
+    private static long heapUsado() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
@@ -0,0 +1,125 @@
+// CacheConsultas.java
+import java.util.*;
+
+/**
+ * Caché LRU de resultados de consultas sobre GestorContactos.
+ * Cada entrada guarda la versión de los datos con la que se calculó;
+ * si la versión actual es distinta la entrada se descarta, de modo que
+ * cualquier modificación invalida exactamente los resultados obsoletos.
+ * El tamaño se limita por número de entradas y por peso total
+ * (cantidad de contactos referenciados por todas las listas).
+ */
+public class CacheConsultas {
+
+    // Entrada de la caché: resultado, versión de datos y peso
+    private static class Entrada {
+        final long version;
+        final List<Contacto> resultado;
+        final int peso;
+
+        Entrada(long version, List<Contacto> resultado) {
+            this.version   = version;
+            this.resultado = resultado;
+            this.peso      = Math.max(1, resultado.size());
+        }
+    }
+
+    // Máximo de consultas distintas que se mantienen
+    private final int maxEntradas;
+    // Máximo de contactos referenciados entre todas las entradas
+    private final long maxPeso;
+    // Mapa en orden de acceso: el primero es el menos usado recientemente
+    private final LinkedHashMap<String, Entrada> entradas;
+    // Peso acumulado de las entradas actuales
+    private long pesoActual;
+    // Estadísticas de uso
+    private long aciertos;
+    private long fallos;
+    private long desalojos;
+
+    public CacheConsultas(int maxEntradas, long maxPeso) {
+        this.maxEntradas = maxEntradas;
+        this.maxPeso     = maxPeso;
+        this.entradas    = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Devuelve el resultado guardado para la clave si se calculó con la
+     * versión indicada; en otro caso devuelve null y cuenta un fallo.
+     */
+    public synchronized List<Contacto> obtener(String clave, long version) {
+        Entrada e = entradas.get(clave);
+        if (e == null) {
+            fallos++;
+            return null;
+        }
+        if (e.version != version) {
+            // Resultado obsoleto: los datos cambiaron desde que se calculó
+            entradas.remove(clave);
+            pesoActual -= e.peso;
+            fallos++;
+            return null;
+        }
+        aciertos++;
+        return e.resultado;
+    }
+
+    /**
+     * Guarda un resultado (como lista inmutable) y aplica el desalojo LRU
+     * hasta respetar los límites de entradas y de peso.
+     * @return la lista inmutable almacenada
+     */
+    public synchronized List<Contacto> guardar(String clave, long version, List<Contacto> resultado) {
+        Entrada nueva = new Entrada(version, Collections.unmodifiableList(new ArrayList<>(resultado)));
+        if (nueva.peso > maxPeso) {
+            return nueva.resultado;  // demasiado grande para cachear
+        }
+        Entrada previa = entradas.put(clave, nueva);
+        if (previa != null) pesoActual -= previa.peso;
+        pesoActual += nueva.peso;
+        Iterator<Entrada> it = entradas.values().iterator();
+        while ((entradas.size() > maxEntradas || pesoActual > maxPeso) && it.hasNext()) {
+            Entrada vieja = it.next();
+            it.remove();
+            pesoActual -= vieja.peso;
+            desalojos++;
+        }
+        return nueva.resultado;
+    }
+
+    /** Vacía la caché conservando las estadísticas. */
+    public synchronized void limpiar() {
+        entradas.clear();
+        pesoActual = 0;
+    }
+
+    public synchronized long getAciertos() {
+        return aciertos;
+    }
+
+    public synchronized long getFallos() {
+        return fallos;
+    }
+
+    public synchronized long getDesalojos() {
+        return desalojos;
+    }
+
+    /** Proporción de aciertos sobre el total de consultas (0 si no hubo). */
+    public synchronized double getTasaAciertos() {
+        long total = aciertos + fallos;
+        return total == 0 ? 0.0 : (double) aciertos / total;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "CacheConsultas{" +
+                "entradas=" + entradas.size() +
+                ", peso=" + pesoActual +
+                ", aciertos=" + aciertos +
+                ", fallos=" + fallos +
+                ", desalojos=" + desalojos +
+                ", tasaAciertos=" + String.format("%.2f", getTasaAciertos()) +
+                '}';
+    }
+}
@@ -0,0 +1,117 @@
+// ClaveDerivada.java
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Claves calculadas a partir de un Contacto que no existen como campo
+ * almacenado (dominio del email, mes de nacimiento, etc.).
+ * Permiten crear índices y buscar sobre valores derivados sin recorrer
+ * toda la lista de contactos.
+ */
+public enum ClaveDerivada {
+    // Parte del email después de la '@', en minúsculas (p. ej. "empresa.com")
+    DOMINIO_EMAIL("dominio_email", c -> dominioEmail(c.getEmail())) {
+        @Override
+        public String normalizarValor(String valor) {
+            String v = valor.trim().toLowerCase(Locale.ROOT);
+            return v.startsWith("@") ? v.substring(1) : v;
+        }
+    },
+    // "nombre apellido" en minúsculas y sin tildes (p. ej. "jose perez")
+    NOMBRE_NORMALIZADO("nombre_normalizado", c -> plegar(c.getNombre() + " " + c.getApellido())) {
+        @Override
+        public String normalizarValor(String valor) {
+            return plegar(valor);
+        }
+    },
+    // Primeros cuatro dígitos del teléfono
+    PREFIJO_TELEFONO("prefijo_telefono", c -> prefijoTelefono(c.getTelefono())) {
+        @Override
+        public String normalizarValor(String valor) {
+            return prefijoTelefono(valor.trim());
+        }
+    },
+    // Mes de nacimiento con dos dígitos ("01".."12") tomado de DD/MM/AAAA
+    MES_NACIMIENTO("mes_nacimiento", c -> mesNacimiento(c.getFechaNacimiento())) {
+        @Override
+        public String normalizarValor(String valor) {
+            String v = valor.trim();
+            return v.length() == 1 ? "0" + v : v;
+        }
+    };
+
+    // Marcas diacríticas que quedan tras la descomposición NFD
+    private static final Pattern DIACRITICOS = Pattern.compile("\\p{M}+");
+    // Espacios consecutivos que plegar() reduce a uno
+    private static final Pattern ESPACIOS = Pattern.compile("\\s+");
+
+    // Nombre con el que se usa la clave en crearIndice y en el menú de búsqueda
+    private final String nombre;
+    // Función que calcula la clave a partir del contacto
+    private final Function<Contacto, String> funcion;
+
+    ClaveDerivada(String nombre, Function<Contacto, String> funcion) {
+        this.nombre  = nombre;
+        this.funcion = funcion;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    /** Calcula el valor derivado para el contacto dado. */
+    public String calcular(Contacto c) {
+        return funcion.apply(c);
+    }
+
+    /**
+     * Lleva el valor introducido por el usuario a la misma forma que
+     * produce {@link #calcular(Contacto)}, para que la búsqueda coincida.
+     */
+    public abstract String normalizarValor(String valor);
+
+    /**
+     * Busca la clave derivada por su nombre (sin distinguir mayúsculas).
+     * @return la clave o null si el nombre no corresponde a ninguna
+     */
+    public static ClaveDerivada desdeNombre(String nombre) {
+        for (ClaveDerivada clave : values()) {
+            if (clave.nombre.equalsIgnoreCase(nombre.trim())) return clave;
+        }
+        return null;
+    }
+
+    /** Lista de nombres separados por comas, útil para los menús. */
+    public static String nombresDisponibles() {
+        StringBuilder sb = new StringBuilder();
+        for (ClaveDerivada clave : values()) {
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(clave.nombre);
+        }
+        return sb.toString();
+    }
+
+    // --- Funciones auxiliares de cálculo ---
+
+    private static String dominioEmail(String email) {
+        int arroba = email.lastIndexOf('@');
+        return arroba < 0 ? "" : email.substring(arroba + 1).trim().toLowerCase(Locale.ROOT);
+    }
+
+    // Minúsculas, sin tildes y con espacios colapsados
+    static String plegar(String texto) {
+        String sinTildes = DIACRITICOS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        return ESPACIOS.matcher(sinTildes.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+
+    private static String prefijoTelefono(String telefono) {
+        return telefono.length() <= 4 ? telefono : telefono.substring(0, 4);
+    }
+
+    private static String mesNacimiento(String fecha) {
+        String[] partes = fecha.split("/");
+        return partes.length == 3 ? partes[1] : "";
+    }
+}
@@ -0,0 +1,284 @@
+// DetectorDuplicados.java
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Busca contactos casi duplicados ("Jose Perez" y "José Pérez", el mismo
+ * teléfono escrito de otra forma) sin comparar todos los pares:
+ * 1. cada contacto genera hasta tres claves de bloque: nombre y apellido
+ *    fonéticos, últimos dígitos del teléfono y parte local del email;
+ * 2. sólo se comparan contactos que comparten alguna clave. Los bloques de
+ *    más de MAX_BLOQUE contactos (apellidos muy comunes, teléfonos de
+ *    relleno) se omiten: un duplicado real suele coincidir también en
+ *    otra clave más selectiva;
+ * 3. los pares candidatos, sin repetir, se puntúan en paralelo combinando
+ *    Jaro-Winkler sobre nombre y email con la comparación de los dígitos
+ *    del teléfono, y se devuelven los que alcanzan el umbral.
+ */
+public class DetectorDuplicados {
+
+    /** Puntuación mínima por defecto para proponer una fusión. */
+    public static final double UMBRAL_DEFECTO = 0.85;
+    // Tamaño máximo de un bloque que se compara par a par
+    private static final int MAX_BLOQUE = 200;
+    // Dígitos finales del teléfono que forman su clave (sin prefijo de país)
+    private static final int DIGITOS_SUFIJO = 7;
+    // Longitud mínima de la parte local del email para usarla como clave
+    private static final int MIN_LOCAL_EMAIL = 3;
+    // Peso de cada campo en la puntuación (los ausentes no cuentan)
+    private static final double PESO_NOMBRE   = 0.5;
+    private static final double PESO_TELEFONO = 0.25;
+    private static final double PESO_EMAIL    = 0.25;
+    // Lo que no es dígito en un teléfono y los separadores ignorados en la parte local del email
+    private static final Pattern NO_DIGITOS = Pattern.compile("\\D+");
+    private static final Pattern SEPARADORES_EMAIL = Pattern.compile("[._-]+");
+
+    private final double umbral;
+    // Datos de la última ejecución
+    private int paresCandidatos;
+    private int bloquesOmitidos;
+
+    public DetectorDuplicados() {
+        this(UMBRAL_DEFECTO);
+    }
+
+    /** @param umbral  puntuación mínima (0..1) para proponer una fusión */
+    public DetectorDuplicados(double umbral) {
+        if (umbral < 0 || umbral > 1) throw new IllegalArgumentException("El umbral debe estar entre 0 y 1");
+        this.umbral = umbral;
+    }
+
+    // Formas normalizadas de un contacto, calculadas una sola vez
+    private static final class Huella {
+        final String nombre;     // "nombre apellido" plegado
+        final String telefono;   // sólo dígitos
+        final String email;      // completo, en minúsculas
+        final String local;      // parte local sin "+etiqueta" ni separadores
+        final String dominio;
+        final int[] claves;
+
+        Huella(Contacto c) {
+            nombre   = ClaveDerivada.plegar(c.getNombre() + " " + c.getApellido());
+            telefono = NO_DIGITOS.matcher(c.getTelefono()).replaceAll("");
+            email    = c.getEmail().trim().toLowerCase(Locale.ROOT);
+            int arroba = email.lastIndexOf('@');
+            String l = arroba < 0 ? email : email.substring(0, arroba);
+            int mas = l.indexOf('+');
+            local   = SEPARADORES_EMAIL.matcher(mas < 0 ? l : l.substring(0, mas)).replaceAll("");
+            dominio = arroba < 0 ? "" : email.substring(arroba + 1);
+
+            int[] k = new int[3];
+            int n = 0;
+            k[n++] = ("n" + fonetica(ClaveDerivada.plegar(c.getNombre())) + " "
+                    + fonetica(ClaveDerivada.plegar(c.getApellido()))).hashCode();
+            if (telefono.length() >= DIGITOS_SUFIJO) k[n++] = ("t" + sufijo(telefono)).hashCode();
+            if (local.length() >= MIN_LOCAL_EMAIL) k[n++] = ("e" + local).hashCode();
+            claves = Arrays.copyOf(k, n);
+        }
+    }
+
+    /**
+     * Propuestas de fusión entre los contactos dados, de mayor a menor
+     * puntuación. En cada par se conserva el de menor ID.
+     */
+    public List<SugerenciaFusion> detectar(List<Contacto> contactos) {
+        long t = Metricas.inicio();
+        Contacto[] arr = contactos.toArray(new Contacto[0]);
+        Huella[] huellas = new Huella[arr.length];
+        IntStream.range(0, arr.length).parallel().forEach(i -> huellas[i] = new Huella(arr[i]));
+        long[] pares = paresCandidatos(huellas);
+        List<SugerenciaFusion> res = Arrays.stream(pares).parallel()
+                .mapToObj(p -> puntuar(arr, huellas, (int) (p >>> 32), (int) p))
+                .filter(Objects::nonNull)
+                .sorted(Comparator.comparingDouble(SugerenciaFusion::puntuacion).reversed()
+                        .thenComparingInt(SugerenciaFusion::idConservar)
+                        .thenComparingInt(SugerenciaFusion::idDuplicado))
+                .collect(Collectors.toList());
+        Metricas.registrar("duplicados.detectar", t, arr.length);
+        return res;
+    }
+
+    /**
+     * Pares (i << 32 | j, con i < j) de posiciones que comparten alguna
+     * clave, ordenados y sin repetir. Las claves se agrupan ordenando
+     * (hash << 32 | posición): cada bloque queda contiguo sin crear un mapa
+     * de listas. Una colisión de hash sólo añade candidatos que la
+     * puntuación descarta.
+     */
+    private long[] paresCandidatos(Huella[] huellas) {
+        int total = 0;
+        for (Huella h : huellas) total += h.claves.length;
+        long[] entradas = new long[total];
+        int m = 0;
+        for (int i = 0; i < huellas.length; i++) {
+            for (int k : huellas[i].claves) entradas[m++] = ((long) k << 32) | i;
+        }
+        Arrays.parallelSort(entradas);
+
+        long[] pares = new long[1024];
+        int n = 0;
+        bloquesOmitidos = 0;
+        for (int a = 0; a < m; ) {
+            int b = a + 1;
+            while (b < m && (entradas[b] >>> 32) == (entradas[a] >>> 32)) b++;
+            if (b - a > MAX_BLOQUE) {
+                bloquesOmitidos++;
+            } else {
+                for (int x = a; x < b; x++) {
+                    for (int y = x + 1; y < b; y++) {
+                        int i = (int) entradas[x], j = (int) entradas[y];  // i <= j: el bloque está ordenado
+                        if (i == j) continue;
+                        if (n == pares.length) pares = Arrays.copyOf(pares, n * 2);
+                        pares[n++] = ((long) i << 32) | j;
+                    }
+                }
+            }
+            a = b;
+        }
+        Arrays.parallelSort(pares, 0, n);
+        int unicos = 0;
+        for (int k = 0; k < n; k++) {
+            if (unicos == 0 || pares[k] != pares[unicos - 1]) pares[unicos++] = pares[k];
+        }
+        paresCandidatos = unicos;
+        return Arrays.copyOf(pares, unicos);
+    }
+
+    // Sugerencia para el par si su puntuación alcanza el umbral, o null
+    private SugerenciaFusion puntuar(Contacto[] arr, Huella[] huellas, int i, int j) {
+        Huella a = huellas[i], b = huellas[j];
+        double nombre = jaroWinkler(a.nombre, b.nombre);
+        double suma = PESO_NOMBRE * nombre, pesos = PESO_NOMBRE;
+        StringBuilder detalle = new StringBuilder(String.format(Locale.ROOT, "nombre %.2f", nombre));
+        if (!a.telefono.isEmpty() && !b.telefono.isEmpty()) {
+            boolean conSufijo = a.telefono.length() >= DIGITOS_SUFIJO && b.telefono.length() >= DIGITOS_SUFIJO;
+            double tel = a.telefono.equals(b.telefono) ? 1
+                    : conSufijo && sufijo(a.telefono).equals(sufijo(b.telefono)) ? 0.9 : 0;
+            suma += PESO_TELEFONO * tel;
+            pesos += PESO_TELEFONO;
+            detalle.append(String.format(Locale.ROOT, ", telefono %.2f", tel));
+        }
+        if (!a.email.isEmpty() && !b.email.isEmpty()) {
+            double email = a.email.equals(b.email) ? 1
+                    : jaroWinkler(a.local, b.local) * (a.dominio.equals(b.dominio) ? 1 : 0.9);
+            suma += PESO_EMAIL * email;
+            pesos += PESO_EMAIL;
+            detalle.append(String.format(Locale.ROOT, ", email %.2f", email));
+        }
+        double puntuacion = suma / pesos;
+        if (puntuacion < umbral) return null;
+        int idA = arr[i].getId(), idB = arr[j].getId();
+        return new SugerenciaFusion(Math.min(idA, idB), Math.max(idA, idB), puntuacion, detalle.toString());
+    }
+
+    private static String sufijo(String digitos) {
+        return digitos.substring(digitos.length() - DIGITOS_SUFIJO);
+    }
+
+    /**
+     * Clave fonética aproximada para español sobre un texto ya plegado:
+     * b/v/w, s/z/ce/ci, k/c/q(u), j/ge/gi y ll/y suenan igual, la h se
+     * omite y las letras repetidas se colapsan ("Vázquez" = "basques").
+     */
+    static String fonetica(String texto) {
+        StringBuilder sb = new StringBuilder(texto.length());
+        int n = texto.length();
+        for (int i = 0; i < n; i++) {
+            char c = texto.charAt(i);
+            char sig = i + 1 < n ? texto.charAt(i + 1) : 0;
+            char ant = i > 0 ? texto.charAt(i - 1) : 0;
+            boolean suave = sig == 'e' || sig == 'i';
+            char r = switch (c) {
+                case 'v', 'w' -> 'b';
+                case 'z' -> 's';
+                case 'c' -> {
+                    if (sig == 'h') {
+                        i++;
+                        yield 'c';  // "ch" es el único sonido que conserva la c
+                    }
+                    yield suave ? 's' : 'k';
+                }
+                case 'q' -> 'k';
+                case 'g' -> suave ? 'j' : 'g';
+                case 'u' -> (ant == 'q' || ant == 'g') && suave ? 0 : 'u';
+                case 'h' -> 0;
+                case 'l' -> {
+                    if (sig == 'l') {
+                        i++;
+                        yield 'y';
+                    }
+                    yield 'l';
+                }
+                case ' ' -> ' ';
+                default -> (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') ? c : 0;
+            };
+            if (r != 0 && (sb.length() == 0 || sb.charAt(sb.length() - 1) != r)) sb.append(r);
+        }
+        return sb.toString();
+    }
+
+    /** Similitud de Jaro-Winkler entre 0 (nada en común) y 1 (iguales). */
+    static double jaroWinkler(String s, String t) {
+        if (s.equals(t)) return 1;
+        int ls = s.length(), lt = t.length();
+        if (ls == 0 || lt == 0) return 0;
+        int ventana = Math.max(0, Math.max(ls, lt) / 2 - 1);
+        boolean[] usadoS = new boolean[ls], usadoT = new boolean[lt];
+        int coincidencias = 0;
+        for (int i = 0; i < ls; i++) {
+            int desde = Math.max(0, i - ventana), hasta = Math.min(lt - 1, i + ventana);
+            for (int j = desde; j <= hasta; j++) {
+                if (!usadoT[j] && s.charAt(i) == t.charAt(j)) {
+                    usadoS[i] = usadoT[j] = true;
+                    coincidencias++;
+                    break;
+                }
+            }
+        }
+        if (coincidencias == 0) return 0;
+        int transposiciones = 0;
+        for (int i = 0, j = 0; i < ls; i++) {
+            if (!usadoS[i]) continue;
+            while (!usadoT[j]) j++;
+            if (s.charAt(i) != t.charAt(j)) transposiciones++;
+            j++;
+        }
+        double m = coincidencias;
+        double jaro = (m / ls + m / lt + (m - transposiciones / 2.0) / m) / 3;
+        int prefijo = 0;
+        while (prefijo < Math.min(4, Math.min(ls, lt)) && s.charAt(prefijo) == t.charAt(prefijo)) prefijo++;
+        return jaro + prefijo * 0.1 * (1 - jaro);
+    }
+
+    /** Escribe las sugerencias como CSV: id_conservar,id_duplicado,puntuacion,detalle. */
+    public static void escribirInforme(Path destino, List<SugerenciaFusion> sugerencias) throws IOException {
+        try (PrintWriter pw = new PrintWriter(Files.newBufferedWriter(destino))) {
+            pw.println("id_conservar,id_duplicado,puntuacion,detalle");
+            for (SugerenciaFusion s : sugerencias) {
+                pw.println(s.idConservar() + "," + s.idDuplicado() + ","
+                        + String.format(Locale.ROOT, "%.3f", s.puntuacion()) + ",\"" + s.detalle() + "\"");
+            }
+            if (pw.checkError()) throw new IOException("Error escribiendo " + destino);
+        }
+    }
+
+    /** Pares comparados en la última ejecución. */
+    public int getParesCandidatos() {
+        return paresCandidatos;
+    }
+
+    /** Bloques demasiado grandes que no se compararon en la última ejecución. */
+    public int getBloquesOmitidos() {
+        return bloquesOmitidos;
+    }
+
+    public double getUmbral() {
+        return umbral;
+    }
+}
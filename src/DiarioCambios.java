@@ -0,0 +1,103 @@
+// DiarioCambios.java
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Diario de cambios de un GestorContactos: archivo de texto al que sólo
+ * se añaden líneas (una por EventoCambio) con números de secuencia
+ * crecientes. Los eventos de una confirmación se escriben y vuelcan
+ * juntos, de modo que un SeguidorReplica que lee el final del archivo
+ * nunca ve una confirmación a medias. Al reabrir un diario existente la
+ * numeración continúa donde se quedó.
+ */
+public class DiarioCambios implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(DiarioCambios.class.getName());
+
+    private final Path ruta;
+    private final BufferedWriter salida;
+    // Última secuencia asignada
+    private long secuencia;
+    // Eventos anotados aún sin confirmar
+    private final List<EventoCambio> pendientes = new ArrayList<>();
+
+    public DiarioCambios(String ruta) throws IOException {
+        this.ruta = Path.of(ruta);
+        this.secuencia = leerUltimaSecuencia(this.ruta);
+        this.salida = Files.newBufferedWriter(this.ruta, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /** Anota un cambio; se escribe en la siguiente confirmación. */
+    public synchronized void anotar(EventoCambio.Tipo tipo, int id, Contacto contacto) {
+        pendientes.add(new EventoCambio(0, 0, tipo, id, contacto));
+    }
+
+    /**
+     * Numera y escribe los cambios anotados con la misma marca de tiempo.
+     * Un fallo de escritura se registra (los cambios en memoria ya están
+     * hechos) y los eventos se descartan.
+     * @return secuencia del último evento escrito
+     */
+    public synchronized long confirmar() {
+        if (pendientes.isEmpty()) return secuencia;
+        long marca = System.currentTimeMillis();
+        try {
+            for (EventoCambio e : pendientes) {
+                EventoCambio numerado = new EventoCambio(++secuencia, marca, e.tipo(), e.id(), e.contacto());
+                salida.write(numerado.aLinea());
+                salida.newLine();
+            }
+            salida.flush();
+            Metricas.contar("diario.confirmaciones");
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, "Error escribiendo el diario " + ruta, ex);
+        } finally {
+            pendientes.clear();
+        }
+        return secuencia;
+    }
+
+    public synchronized long getUltimaSecuencia() {
+        return secuencia;
+    }
+
+    public Path getRuta() {
+        return ruta;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        salida.close();
+    }
+
+    /**
+     * Secuencia de la última línea completa del diario, leyendo sólo su
+     * final; 0 si no existe o está vacío.
+     */
+    public static long leerUltimaSecuencia(Path ruta) throws IOException {
+        if (!Files.exists(ruta)) return 0;
+        try (RandomAccessFile raf = new RandomAccessFile(ruta.toFile(), "r")) {
+            long fin = raf.length();
+            int tam = (int) Math.min(fin, 64 * 1024);
+            byte[] cola = new byte[tam];
+            raf.seek(fin - tam);
+            raf.readFully(cola);
+            // Última línea terminada en salto de línea
+            int finLinea = tam - 1;
+            while (finLinea >= 0 && cola[finLinea] != '\n') finLinea--;
+            if (finLinea < 0) return 0;
+            int inicio = finLinea - 1;
+            while (inicio >= 0 && cola[inicio] != '\n') inicio--;
+            String linea = new String(cola, inicio + 1, finLinea - inicio - 1, StandardCharsets.UTF_8).trim();
+            return linea.isEmpty() ? 0 : EventoCambio.desdeLinea(linea).secuencia();
+        }
+    }
+}
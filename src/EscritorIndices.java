@@ -0,0 +1,107 @@
+// EscritorIndices.java
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Escritor en segundo plano de los archivos de índice.
+ * Las modificaciones sólo marcan el índice como pendiente; un hilo propio
+ * vuelca los índices pendientes cada cierto intervalo, o antes si se
+ * acumulan muchos cambios, de modo que muchas ediciones se agrupan en una
+ * sola escritura y el hilo principal nunca espera al disco.
+ * {@link #flushAll()} fuerza el volcado y un gancho de apagado de la JVM
+ * garantiza que lo pendiente se escriba al salir.
+ */
+public class EscritorIndices {
+
+    // Intervalo entre volcados periódicos
+    private static final long INTERVALO_MS = 2_000;
+    // Cambios acumulados que adelantan el volcado sin esperar al intervalo
+    private static final int UMBRAL_CAMBIOS = 10_000;
+
+    private static final Logger logger = Logger.getLogger(EscritorIndices.class.getName());
+
+    // Índices con cambios aún no escritos
+    private final Set<Indice> pendientes = ConcurrentHashMap.newKeySet();
+    // Cambios notificados desde el último volcado
+    private final AtomicInteger cambios = new AtomicInteger();
+    // Hilo único de escritura (daemon: no impide que termine la JVM)
+    private final ScheduledExecutorService hilo;
+    private final Thread ganchoApagado;
+    private volatile boolean cerrado;
+
+    public EscritorIndices() {
+        hilo = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "escritor-indices");
+            t.setDaemon(true);
+            return t;
+        });
+        hilo.scheduleWithFixedDelay(this::volcarPendientes, INTERVALO_MS, INTERVALO_MS, TimeUnit.MILLISECONDS);
+        ganchoApagado = new Thread(this::volcarPendientes, "escritor-indices-apagado");
+        Runtime.getRuntime().addShutdownHook(ganchoApagado);
+    }
+
+    /**
+     * Anota que el índice tiene cambios. No escribe nada: el volcado
+     * ocurre en el hilo de escritura.
+     */
+    public void programar(Indice indice) {
+        if (cerrado) {
+            indice.flush();
+            return;
+        }
+        pendientes.add(indice);
+        if (cambios.incrementAndGet() == UMBRAL_CAMBIOS) {
+            hilo.execute(this::volcarPendientes);
+        }
+    }
+
+    /**
+     * Escribe ya todos los índices pendientes y espera a que terminen,
+     * garantizando que lo modificado hasta ahora está en disco.
+     */
+    public void flushAll() {
+        if (cerrado) {
+            volcarPendientes();
+            return;
+        }
+        try {
+            hilo.submit(this::volcarPendientes).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.log(Level.SEVERE, "Error volcando índices", e.getCause());
+        }
+    }
+
+    /** Vuelca lo pendiente y detiene el hilo de escritura. */
+    public void cerrar() {
+        if (cerrado) return;
+        flushAll();
+        cerrado = true;
+        hilo.shutdown();
+        try {
+            Runtime.getRuntime().removeShutdownHook(ganchoApagado);
+        } catch (IllegalStateException e) {
+            // La JVM ya se está apagando: el gancho se ejecutará igualmente
+        }
+    }
+
+    // Escribe cada índice pendiente; Indice.flush() ignora los que no cambiaron
+    private synchronized void volcarPendientes() {
+        cambios.set(0);
+        List<Indice> lote = new ArrayList<>(pendientes);
+        pendientes.removeAll(lote);
+        for (Indice idx : lote) {
+            if (!idx.flush()) pendientes.add(idx);  // reintentar en el próximo ciclo
+        }
+    }
+}
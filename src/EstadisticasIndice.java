@@ -0,0 +1,51 @@
+// EstadisticasIndice.java
+import java.util.Locale;
+
+/**
+ * Estadísticas de un Indice obtenidas recorriendo su estructura
+ * (ver Indice.calcularEstadisticas): cardinalidad, distribución de la
+ * longitud de las claves, altura frente a la mínima log2(n) y tamaño de
+ * las listas de IDs. 'tipoSugerido' es el que elegiría el tipo "auto"
+ * con estos mismos datos.
+ */
+public record EstadisticasIndice(String campo, String tipo, int claves, int ids,
+                                 int longitudMin, int longitudMediana, int longitudP95, int longitudMax,
+                                 double longitudMedia, int altura, int alturaMinima,
+                                 int postingsMax, long bytesPostings, long bytes, String tipoSugerido) {
+
+    /** Un árbol en memoria está degradado si dobla la altura mínima (un AVL no pasa de ~1,44 veces). */
+    public boolean degradado() {
+        return (tipo.equals("bst") || tipo.equals("avl") || tipo.equals("avlp"))
+                && alturaMinima > 0 && altura > 2 * alturaMinima;
+    }
+
+    /** Media de IDs por clave (1 = clave única por contacto). */
+    public double idsPorClave() {
+        return claves == 0 ? 0 : (double) ids / claves;
+    }
+
+    /** Consejo para el índice, o "ninguna" si está bien como está. */
+    public String recomendacion() {
+        if (degradado()) {
+            return "reconstruir: altura " + altura + " frente a " + alturaMinima + " mínima"
+                    + (tipo.equals("bst") ? "; mejor como " + tipoSugerido : "");
+        }
+        // Sin orden de inserción garantizado un BST puede degradarse en cualquier momento;
+        // los demás tipos sólo se desaconsejan si el índice ya no cabe en memoria
+        if (tipo.equals("bst") || (tipoSugerido.equals("bplus") && !tipo.equals("bplus"))) {
+            return "cambiar a " + tipoSugerido;
+        }
+        return "ninguna";
+    }
+
+    @Override
+    public String toString() {
+        String s = campo + " (" + tipo + "): claves=" + claves + ", ids=" + ids
+                + String.format(Locale.ROOT, ", ids/clave=%.1f", idsPorClave())
+                + ", longitud clave min/mediana/p95/max=" + longitudMin + "/" + longitudMediana + "/"
+                + longitudP95 + "/" + longitudMax + String.format(Locale.ROOT, " (media %.1f)", longitudMedia);
+        if (!tipo.equals("hash")) s += ", altura=" + altura + (alturaMinima > 0 ? " (mínima " + alturaMinima + ")" : "");
+        return s + ", postings max=" + postingsMax + ", bytes postings~" + bytesPostings
+                + ", bytes~" + bytes + ", recomendación: " + recomendacion();
+    }
+}
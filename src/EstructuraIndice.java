@@ -0,0 +1,55 @@
+// EstructuraIndice.java
+
+import java.util.function.BiConsumer;
+
+/**
+ * Estructura de datos que respalda un Indice: asocia cada clave (valor
+ * del campo indexado) con el conjunto de IDs de contactos que la tienen.
+ * Implementaciones: BST, AVLTree, AVLPersistente, BPlusTree (ordenadas,
+ * la última en disco) e IndiceHash (sólo igualdad).
+ */
+public interface EstructuraIndice {
+
+    /** Añade el ID bajo la clave (sin duplicados). */
+    void insert(String key, int id);
+
+    /** Quita el ID de la clave; la clave desaparece si se queda sin IDs. */
+    void remove(String key, int id);
+
+    /** IDs asociados a la clave, o null si la clave no existe. */
+    ListaPostings get(String key);
+
+    /** Todos los IDs presentes en la estructura. */
+    ListaPostings getAllIds();
+
+    /**
+     * Recorre cada clave con sus IDs; las estructuras ordenadas lo hacen
+     * en orden ascendente de clave.
+     */
+    void recorrer(BiConsumer<String, ListaPostings> accion);
+
+    /**
+     * Recorre las claves entre desde y hasta (ambas incluidas; null = sin
+     * límite). Por defecto filtra un recorrido completo; las estructuras
+     * que pueden saltar directamente al inicio del rango lo redefinen.
+     */
+    default void rango(String desde, String hasta, BiConsumer<String, ListaPostings> accion) {
+        recorrer((clave, ids) -> {
+            if ((desde == null || clave.compareTo(desde) >= 0) && (hasta == null || clave.compareTo(hasta) <= 0)) {
+                accion.accept(clave, ids);
+            }
+        });
+    }
+
+    /** Número de claves distintas. */
+    int cantidadNodos();
+
+    /** Altura del árbol, o 0 si la estructura no es un árbol. */
+    int altura();
+
+    /** Bytes aproximados que ocupan nodos/entradas, claves e IDs. */
+    long bytesEstimados();
+
+    /** Representación en texto propia de la estructura, para volcar a disco. */
+    String serializar();
+}
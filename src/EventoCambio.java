@@ -0,0 +1,60 @@
+// EventoCambio.java
+
+/**
+ * Cambio confirmado en un GestorContactos, tal como se escribe en el
+ * DiarioCambios y lo aplica un SeguidorReplica.
+ * Formato de línea: secuencia|marcaMs|TIPO|datos, donde datos es la línea
+ * CSV del contacto (ALTA, MODIFICACION), su ID (BAJA) o vacío (REINICIO).
+ *
+ * @param secuencia  número de orden, estrictamente creciente en el diario
+ * @param marcaMs    hora de confirmación (ms desde la época)
+ * @param tipo       clase de cambio
+ * @param id         ID del contacto afectado (0 en REINICIO)
+ * @param contacto   datos nuevos en ALTA y MODIFICACION, null en otro caso
+ */
+public record EventoCambio(long secuencia, long marcaMs, Tipo tipo, int id, Contacto contacto) {
+
+    public enum Tipo {
+        ALTA,          // contacto nuevo
+        MODIFICACION,  // contacto existente con datos nuevos
+        BAJA,          // contacto eliminado
+        REINICIO       // se descartan todos los contactos (carga completa de un CSV)
+    }
+
+    /** Línea del diario, sin salto de línea. */
+    public String aLinea() {
+        String datos = switch (tipo) {
+            case ALTA, MODIFICACION -> GestorContactos.lineaCSV(contacto);
+            case BAJA               -> String.valueOf(id);
+            case REINICIO           -> "";
+        };
+        return secuencia + "|" + marcaMs + "|" + tipo + "|" + datos;
+    }
+
+    /**
+     * Interpreta una línea del diario.
+     * @throws IllegalArgumentException si la línea está mal formada
+     */
+    public static EventoCambio desdeLinea(String linea) {
+        String[] partes = linea.split("\\|", 4);
+        if (partes.length < 4) throw new IllegalArgumentException("Evento mal formado: " + linea);
+        try {
+            long secuencia = Long.parseLong(partes[0]);
+            long marca     = Long.parseLong(partes[1]);
+            Tipo tipo      = Tipo.valueOf(partes[2]);
+            return switch (tipo) {
+                case ALTA, MODIFICACION -> {
+                    String[] v = ValidadorContactos.dividirLinea(partes[3]);
+                    if (v.length < 8) throw new IllegalArgumentException("Evento mal formado: " + linea);
+                    Contacto c = new Contacto(v[1], v[2], v[3], v[4], v[5], v[6], v[7]);
+                    c.setId(Integer.parseInt(v[0].trim()));
+                    yield new EventoCambio(secuencia, marca, tipo, c.getId(), c);
+                }
+                case BAJA     -> new EventoCambio(secuencia, marca, tipo, Integer.parseInt(partes[3].trim()), null);
+                case REINICIO -> new EventoCambio(secuencia, marca, tipo, 0, null);
+            };
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Evento mal formado: " + linea, e);
+        }
+    }
+}
@@ -1,11 +1,23 @@
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class GestorContactos {
 
     // Lista que almacena todos los contactos en memoria
     private List<Contacto> contactos;
+    // Acceso directo a cada contacto por su ID (null en modo fuera del heap)
+    private Map<Integer, Contacto> contactosPorId;
+    // Misma lista que 'contactos' en modo fuera del heap, o null
+    private final ListaOffHeap fueraDelHeap;
     // Map que asocia un campo (nombre, apellido, etc.) con su índice
     private Map<String, Indice> indices;
     // Siguiente ID disponible para asignar a un nuevo contacto
@@ -16,13 +28,68 @@ public class GestorContactos {
     private String loadedCSVPath;
     // Indica si existen cambios en memoria que aún no han sido exportados
     private boolean dirty;
+    // Versión de los datos: aumenta con cada modificación e invalida la caché
+    private long version;
+    // Caché de resultados de búsquedas y listados ordenados
+    private final CacheConsultas cache;
+    // Vuelca en segundo plano los archivos de los índices modificados
+    private final EscritorIndices escritor;
+    // Última versión confirmada, de sólo lectura; se sustituye entera en cada cambio
+    private volatile Instantanea publicada;
+    // IDs modificados desde la última publicación
+    private final Set<Integer> sinPublicar = new HashSet<>();
+    // Diario donde se emiten los cambios confirmados para las réplicas (opcional)
+    private DiarioCambios diario;
+    // Prefijo de los archivos de índice (distingue los fragmentos de GestorFragmentado)
+    private final String prefijoIndices;
+
+    // Límites de la caché: consultas distintas y contactos referenciados
+    private static final int  CACHE_MAX_ENTRADAS = 256;
+    private static final long CACHE_MAX_PESO     = 1_000_000;
+    // Filas del CSV que se leen y validan en paralelo de una vez
+    private static final int TAMANO_LOTE = 8192;
+    static final String CABECERA_CSV = "id,nombre,apellido,apodo,telefono,email,direccion,fecha_nacimiento";
+    // Fracción de contactos a partir de la cual un lote reconstruye los índices
+    private static final double FRACCION_RECONSTRUIR = 0.25;
 
     public GestorContactos() {
-        contactos     = new ArrayList<>();
+        this(false);
+    }
+
+    /**
+     * @param fueraDelHeap  guardar los contactos en un AlmacenOffHeap
+     *                      (memoria directa) en vez de como objetos del heap.
+     *                      Índices y búsquedas resuelven cada ID con vistas
+     *                      que decodifican sólo los campos que leen; cada
+     *                      versión publicada copia la tabla de desplazamientos
+     *                      del almacén (8 bytes por ID) en lugar de los cambios.
+     */
+    public GestorContactos(boolean fueraDelHeap) {
+        this("", new EscritorIndices(), fueraDelHeap);
+    }
+
+    /**
+     * Gestor con prefijo propio para sus archivos de índice y un escritor
+     * compartido; lo usa GestorFragmentado para cada fragmento.
+     */
+    GestorContactos(String prefijoIndices, EscritorIndices escritor) {
+        this(prefijoIndices, escritor, false);
+    }
+
+    // Constructor común a los anteriores
+    private GestorContactos(String prefijoIndices, EscritorIndices escritor, boolean fueraDelHeap) {
+        this.prefijoIndices = prefijoIndices;
+        this.fueraDelHeap = fueraDelHeap ? new ListaOffHeap() : null;
+        contactos     = fueraDelHeap ? this.fueraDelHeap : new ArrayList<>();
+        contactosPorId = fueraDelHeap ? null : new HashMap<>();
         indices       = new HashMap<>();
         nextId        = 1;
         loadedCSVPath = null;
         dirty         = false;
+        version       = 0;
+        cache         = new CacheConsultas(CACHE_MAX_ENTRADAS, CACHE_MAX_PESO);
+        this.escritor = escritor;
+        publicada     = new Instantanea(0, 0, TablaContactos.VACIA, Map.of());
         // No se carga ningún archivo aquí; Main invoca inicializar()
     }
 
@@ -75,70 +142,294 @@ public class GestorContactos {
     }
 
     /**
-     * Lee el CSV línea por línea, crea objetos Contacto en memoria,
+     * Lee el CSV por lotes validados, crea objetos Contacto en memoria,
      * asigna IDs, actualiza nextId y restablece dirty = false.
+     * Las filas inválidas se omiten y se listan en un informe de rechazos.
      */
     private void cargarContactosDesdeArchivo(File archivoCSV) {
+        List<ValidadorContactos.Rechazo> rechazos = new ArrayList<>();
+        long t = Metricas.inicio();
         try (BufferedReader br = new BufferedReader(new FileReader(archivoCSV))) {
-            String line;
-            boolean primera = true;
-            contactos.clear();
-            while ((line = br.readLine()) != null) {
-                if (primera) {
-                    primera = false;
-                    if (line.toLowerCase().contains("id,nombre,apellido")) continue;
-                }
-                String[] v = line.split(",\\s*");
-                if (v.length == 8 && v[0].matches("\\d+")) {
-                    Contacto c = new Contacto(v[1], v[2], v[3],
-                            v[4], v[5], v[6], v[7]);
-                    c.setId(Integer.parseInt(v[0]));
-                    contactos.add(c);
-                    nextId = Math.max(nextId, c.getId() + 1);
-                }
-            }
-            loadedCSVPath = archivoCSV.getAbsolutePath();
-            dirty = false;  // Los cambios se sincronizan al cargar
+            List<Contacto> leidos = new ArrayList<>();
+            int filas = leerCSVValidado(br, true, fila -> leidos.add(contactoDesdeFila(fila)), rechazos);
+            reemplazarContactos(leidos, archivoCSV.getAbsolutePath());
+            Metricas.registrar("csv.cargar", t, filas);
             System.out.println("Cargados desde: " + loadedCSVPath);
         } catch (IOException e) {
             System.out.println("Error lectura: " + e.getMessage());
         }
+        reportarRechazos(archivoCSV.getPath(), rechazos);
+    }
+
+    // Contacto de una fila validada del CSV (con ID)
+    static Contacto contactoDesdeFila(ValidadorContactos.FilaValida fila) {
+        String[] v = fila.campos();
+        Contacto c = new Contacto(v[1], v[2], v[3],
+                v[4], v[5], v[6], v[7]);
+        c.setId(ValidadorContactos.parsearId(v[0].trim()));
+        return c;
+    }
+
+    /**
+     * Sustituye todos los contactos en memoria por los dados, reconstruye
+     * los índices y restablece dirty = false (los datos vienen de disco).
+     */
+    void reemplazarContactos(List<Contacto> nuevos, String rutaOrigen) {
+        contactos.clear();
+        if (contactosPorId != null) contactosPorId.clear();
+        for (Contacto c : nuevos) {
+            guardarNuevo(c);
+            nextId = Math.max(nextId, c.getId() + 1);
+        }
+        loadedCSVPath = rutaOrigen;
+        actualizarIndices();  // Reconstruir en paralelo los índices configurados
+        programarVolcadoIndices();
+        version++;      // Los datos cambiaron por completo
+        dirty = false;  // Los cambios se sincronizan al cargar
+        publicar(true);
     }
     /**
-     * Importa un CSV desde la ruta indicada en memoria, evita duplicados,
-     * actualiza índices y marca dirty = true.
+     * Importa un CSV desde la ruta indicada en memoria, valida cada fila,
+     * evita duplicados, actualiza índices y marca dirty = true.
+     * Las filas inválidas o duplicadas se listan en un informe de rechazos.
      */
     public void importarCSVDesdeRuta(String rutaArchivo) {
+        List<ValidadorContactos.Rechazo> rechazos = new ArrayList<>();
+        long t = Metricas.inicio();
         try (BufferedReader br = new BufferedReader(new FileReader(rutaArchivo))) {
-            String line;
-            boolean primera = true;
-            int maxId = contactos.stream()
-                    .mapToInt(Contacto::getId)
-                    .max()
-                    .orElse(0);
-            while ((line = br.readLine()) != null) {
-                if (primera) {
-                    primera = false;
-                    if (line.toLowerCase().contains("id,nombre,apellido")) continue;
-                }
-                String[] v = line.split(",\\s*");
-                if (v.length == 8 &&
-                        !existeContacto(v[1], v[2], v[3], v[5], v[4])) {
-                    Contacto c = new Contacto(
-                            v[1].trim(), v[2].trim(), v[3].trim(),
-                            v[4].trim(), v[5].trim(), v[6].trim(), v[7].trim()
-                    );
-                    maxId++;
-                    c.setId(maxId);
-                    contactos.add(c);
-                }
+            // Claves de duplicado de lo ya cargado, calculadas una vez: cada
+            // fila se comprueba en O(1) en lugar de recorrer todos los contactos
+            Set<String> nombres = new HashSet<>(), emails = new HashSet<>(), telefonos = new HashSet<>();
+            for (Contacto c : contactos) {
+                nombres.add(claveNombreCompleto(c.getNombre(), c.getApellido(), c.getApodo()));
+                emails.add(c.getEmail().toLowerCase());
+                telefonos.add(c.getTelefono());
             }
+            int filas = leerCSVValidado(br, false, fila -> {
+                String[] v = fila.campos();
+                String nombre = claveNombreCompleto(v[1].trim(), v[2].trim(), v[3].trim());
+                String email = v[5].trim().toLowerCase();
+                String telefono = v[4].trim();
+                // Duplicado: mismo nombre, apellido y apodo, o mismo email o teléfono
+                if (nombres.contains(nombre) || emails.contains(email) || telefonos.contains(telefono)) {
+                    rechazos.add(new ValidadorContactos.Rechazo(fila.linea(), String.join(",", v), "duplicado"));
+                    return;
+                }
+                nombres.add(nombre);
+                emails.add(email);
+                telefonos.add(telefono);
+                Contacto c = new Contacto(
+                        v[1].trim(), v[2].trim(), v[3].trim(),
+                        v[4].trim(), v[5].trim(), v[6].trim(), v[7].trim()
+                );
+                c.setId(nextId++);  // Igual que agregarContacto: ningún ID se reutiliza
+                guardarNuevo(c);
+                sinPublicar.add(c.getId());
+            }, rechazos);
             actualizarIndices();
-            dirty = true;  // Hay cambios pendientes de exportación
+            marcarCambio();  // Hay cambios pendientes de exportación
+            Metricas.registrar("csv.importar", t, filas);
             System.out.println("Importación completada en memoria.");
         } catch (IOException e) {
             System.out.println("Error al importar CSV: " + e.getMessage());
         }
+        reportarRechazos(rutaArchivo, rechazos);
+    }
+
+    /**
+     * Importa un CSV como versión actualizada de los contactos (upsert):
+     * cada fila se casa con el contacto existente de la misma clave ("id",
+     * "email" o "telefono") y sólo se aplica la diferencia:
+     * - filas sin contacto: se insertan (con su ID si la clave es "id",
+     *   con uno nuevo si no),
+     * - filas con algún campo distinto: se actualiza el contacto,
+     * - contactos cuya clave no aparece: se eliminan si eliminarAusentes.
+     * Los índices sólo cambian en las entradas de los contactos afectados
+     * y la versión avanza una vez, así que resincronizar un archivo casi
+     * igual cuesta la lectura más el tamaño del cambio, no una reconstrucción.
+     * Las filas inválidas, con clave repetida o duplicadas (mismo nombre y
+     * apodo que otro contacto) se rechazan; sus claves no se eliminan.
+     */
+    public ResumenSincronizacion sincronizarCSV(String rutaArchivo, String clave, boolean eliminarAusentes)
+            throws IOException {
+        long t = Metricas.inicio();
+        boolean porId = clave.equalsIgnoreCase("id");
+        Function<Contacto, String> claveDe = claveSincronizacion(clave);
+        // Contacto actual de cada clave; por ID basta con getContactoPorId
+        Map<String, Contacto> porClave = new HashMap<>();
+        if (!porId) {
+            for (Contacto c : contactos) porClave.putIfAbsent(claveDe.apply(c), c);
+        }
+        Function<String, Contacto> actualDe = porId
+                ? k -> getContactoPorId(Integer.parseInt(k))
+                : porClave::get;
+        Set<String> existentes = new HashSet<>();
+        for (Contacto c : contactos) existentes.add(claveDuplicado(c));
+
+        Set<String> vistas = new HashSet<>();
+        List<Contacto> altas = new ArrayList<>();
+        List<Contacto> cambios = new ArrayList<>();
+        int[] sinCambios = {0};
+        List<ValidadorContactos.Rechazo> rechazos = new ArrayList<>();
+        List<ValidadorContactos.Rechazo> propios = new ArrayList<>();
+        int filas;
+        try (BufferedReader br = new BufferedReader(new FileReader(rutaArchivo))) {
+            filas = leerCSVValidado(br, porId, fila -> {
+                String[] v = fila.campos();
+                Contacto leido = new Contacto(v[1].trim(), v[2].trim(), v[3].trim(),
+                        v[4].trim(), v[5].trim(), v[6].trim(), v[7].trim());
+                if (porId) leido.setId(ValidadorContactos.parsearId(v[0].trim()));
+                String k = claveDe.apply(leido);
+                String motivo = k.isEmpty() ? "clave vacía"
+                        : !vistas.add(k) ? "clave repetida en el archivo"
+                        : motivoDatosInvalidos(leido);
+                Contacto actual = motivo == null ? actualDe.apply(k) : null;
+                if (motivo == null && actual == null && !existentes.add(claveDuplicado(leido))) motivo = "duplicado";
+                if (motivo != null) {
+                    propios.add(new ValidadorContactos.Rechazo(fila.linea(), String.join(",", v), motivo));
+                } else if (actual == null) {
+                    altas.add(leido);
+                } else if (mismosDatos(actual, leido)) {
+                    sinCambios[0]++;
+                } else {
+                    leido.setId(actual.getId());
+                    cambios.add(leido);
+                }
+            }, rechazos);
+        }
+        // Las filas que el validador rechazó conservan su contacto si se reconoce
+        // la clave, escrita igual que claveDe ("007" protege al contacto 7)
+        int columna = switch (clave.toLowerCase()) {
+            case "email"    -> 5;
+            case "telefono" -> 4;
+            default         -> 0;
+        };
+        for (ValidadorContactos.Rechazo r : rechazos) {
+            String[] v = ValidadorContactos.dividirLinea(r.contenido());
+            if (porId) {
+                int id = ValidadorContactos.parsearId(v[0].trim());
+                if (id >= 0) vistas.add(String.valueOf(id));  // un ID ilegible no protege a nadie
+            } else if (v.length > columna) {
+                vistas.add(normalizarClave(clave, v[columna]));
+            }
+        }
+        rechazos.addAll(propios);
+
+        Set<Integer> bajas = new HashSet<>();
+        if (eliminarAusentes) {
+            for (Contacto c : contactos) {
+                if (!vistas.contains(claveDe.apply(c))) bajas.add(c.getId());
+            }
+        }
+        for (Contacto c : altas) {
+            if (!porId) c.setId(nextId++);
+        }
+        aplicarDelta(altas, cambios, bajas);
+        Metricas.registrar("csv.sincronizar", t, filas);
+        reportarRechazos(rutaArchivo, rechazos);
+        return new ResumenSincronizacion(altas.size(), cambios.size(), bajas.size(), sinCambios[0], rechazos.size());
+    }
+
+    // Clave con la que sincronizarCSV casa filas y contactos
+    private static Function<Contacto, String> claveSincronizacion(String clave) {
+        return switch (clave.toLowerCase()) {
+            case "id"       -> c -> String.valueOf(c.getId());
+            case "email"    -> c -> normalizarClave("email", c.getEmail());
+            case "telefono" -> c -> normalizarClave("telefono", c.getTelefono());
+            default -> throw new IllegalArgumentException("Clave de sincronización no soportada: " + clave);
+        };
+    }
+
+    // Emails sin distinguir mayúsculas; teléfonos tal cual, sin espacios alrededor
+    private static String normalizarClave(String clave, String valor) {
+        if (valor == null) return "";
+        String v = valor.trim();
+        return clave.equalsIgnoreCase("email") ? v.toLowerCase() : v;
+    }
+
+    private static boolean mismosDatos(Contacto a, Contacto b) {
+        return a.getNombre().equals(b.getNombre())
+                && a.getApellido().equals(b.getApellido())
+                && a.getApodo().equals(b.getApodo())
+                && a.getTelefono().equals(b.getTelefono())
+                && a.getEmail().equals(b.getEmail())
+                && a.getDireccion().equals(b.getDireccion())
+                && a.getFechaNacimiento().equals(b.getFechaNacimiento());
+    }
+
+    /**
+     * Aplica altas (con ID asignado), cambios y bajas ya validados como un
+     * solo cambio: los índices reciben sólo esas entradas y la versión
+     * avanza una vez.
+     */
+    private void aplicarDelta(List<Contacto> altas, List<Contacto> cambios, Set<Integer> bajas) {
+        if (altas.isEmpty() && cambios.isEmpty() && bajas.isEmpty()) return;
+        if (!bajas.isEmpty()) quitar(bajas);
+        List<Contacto> afectados = new ArrayList<>(altas.size() + cambios.size());
+        for (Contacto nuevo : cambios) {
+            afectados.add(sobrescribir(nuevo));
+        }
+        for (Contacto c : altas) {
+            guardarNuevo(c);
+            nextId = Math.max(nextId, c.getId() + 1);
+            afectados.add(c);
+        }
+        for (Contacto c : afectados) sinPublicar.add(c.getId());
+        sinPublicar.addAll(bajas);
+        actualizarIndicesLote(afectados, bajas);
+        marcarCambio();
+    }
+
+    /**
+     * Lee el CSV en lotes de TAMANO_LOTE líneas, valida cada lote en
+     * paralelo y entrega las filas válidas, en orden, al consumidor.
+     * Omite la cabecera y acumula las filas rechazadas.
+     * @return número de filas de datos leídas (válidas o no)
+     */
+    static int leerCSVValidado(BufferedReader br, boolean exigirId,
+                                 Consumer<ValidadorContactos.FilaValida> consumidor,
+                                 List<ValidadorContactos.Rechazo> rechazos) throws IOException {
+        List<String> lote = new ArrayList<>(TAMANO_LOTE);
+        int numLinea   = 0;
+        int inicioLote = 1;
+        int cabecera   = 0;
+        String line;
+        while ((line = br.readLine()) != null) {
+            numLinea++;
+            if (numLinea == 1 && line.toLowerCase().contains("id,nombre,apellido")) {
+                inicioLote = 2;
+                cabecera   = 1;
+                continue;
+            }
+            lote.add(line);
+            if (lote.size() == TAMANO_LOTE) {
+                procesarLote(lote, inicioLote, exigirId, consumidor, rechazos);
+                inicioLote = numLinea + 1;
+                lote.clear();
+            }
+        }
+        procesarLote(lote, inicioLote, exigirId, consumidor, rechazos);
+        return numLinea - cabecera;
+    }
+
+    // Valida un lote en paralelo y aplica secuencialmente las filas aceptadas
+    private static void procesarLote(List<String> lote, int primeraLinea, boolean exigirId,
+                              Consumer<ValidadorContactos.FilaValida> consumidor,
+                              List<ValidadorContactos.Rechazo> rechazos) {
+        if (lote.isEmpty()) return;
+        ValidadorContactos.ValidacionLote res = ValidadorContactos.validarLote(lote, primeraLinea, exigirId);
+        rechazos.addAll(res.rechazos());
+        res.validas().forEach(consumidor);
+    }
+
+    // Escribe "<archivo>.rechazos.txt" si hubo filas rechazadas e informa al usuario
+    static void reportarRechazos(String rutaArchivo, List<ValidadorContactos.Rechazo> rechazos) {
+        if (rechazos.isEmpty()) return;
+        String rutaReporte = rutaArchivo + ".rechazos.txt";
+        rechazos.sort(Comparator.comparingInt(ValidadorContactos.Rechazo::linea));
+        if (ValidadorContactos.escribirReporteRechazos(rutaReporte, rechazos)) {
+            System.out.println(rechazos.size() + " filas rechazadas. Detalle en: " + rutaReporte);
+        }
     }
     /**
      * Cambia el directorio de trabajo y automáticamente ofrece
@@ -160,18 +451,11 @@ public class GestorContactos {
      * Al finalizar, dirty pasa a false y loadedCSVPath se actualiza.
      */
     public void exportarContactos(String rutaArchivo) {
-        try (PrintWriter pw = new PrintWriter(new FileWriter(rutaArchivo))) {
-            pw.println("id,nombre,apellido,apodo,telefono,email,direccion,fecha_nacimiento");
-            for (Contacto c : contactos) {
-                pw.println(c.getId() + "," +
-                        c.getNombre() + "," +
-                        c.getApellido() + "," +
-                        c.getApodo() + "," +
-                        c.getTelefono() + "," +
-                        c.getEmail() + "," +
-                        c.getDireccion() + "," +
-                        c.getFechaNacimiento());
-            }
+        long t = Metricas.inicio();
+        Instantanea inst = instantanea();  // versión confirmada, en orden de ID
+        try {
+            inst.exportarContactos(rutaArchivo);
+            Metricas.registrar("csv.exportar", t, inst.getCantidadContactos());
             System.out.println("CSV exportado en: " + rutaArchivo);
             loadedCSVPath = rutaArchivo;
             dirty = false;  // Ya no hay cambios pendientes
@@ -180,16 +464,79 @@ public class GestorContactos {
         }
     }
 
+    /**
+     * Exporta la versión confirmada en 'particiones' archivos escritos en
+     * paralelo, por rango de ID o por hash del ID (ver
+     * {@link Instantanea#exportarParticionado}). No cambia el CSV de
+     * trabajo ni el estado de cambios pendientes.
+     */
+    public void exportarParticionado(String rutaBase, int particiones, boolean porRango) {
+        long t = Metricas.inicio();
+        Instantanea inst = instantanea();
+        try {
+            List<Path> archivos = inst.exportarParticionado(rutaBase, particiones, porRango);
+            Metricas.registrar("csv.exportarParticionado", t, inst.getCantidadContactos());
+            System.out.println(archivos.size() + " archivos exportados: " + archivos.get(0)
+                    + (archivos.size() > 1 ? " ... " + archivos.get(archivos.size() - 1) : ""));
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Error al exportar CSV: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Exporta los contactos en el orden del índice del campo, recorriéndolo
+     * en orden en lugar de ordenar la lista: el coste es el de escribir.
+     * Los índices "avlp" se recorren sobre la versión confirmada; los demás
+     * sobre el estado actual. Requiere un índice que no sea hash.
+     */
+    public void exportarPorIndice(String rutaArchivo, String campo) {
+        ClaveDerivada derivada = ClaveDerivada.desdeNombre(campo);
+        if (derivada != null) campo = derivada.getNombre();
+        Indice indice = indices.get(campo);
+        if (indice == null || indice.getTipo().equals("hash")) {
+            System.out.println("No hay un índice ordenado (bst, avl, avlp o bplus) para " + campo + ".");
+            return;
+        }
+        long t = Metricas.inicio();
+        try {
+            Instantanea inst = instantanea();
+            if (!inst.exportarPorIndice(rutaArchivo, campo)) {
+                try (PrintWriter pw = new PrintWriter(Files.newBufferedWriter(Path.of(rutaArchivo)))) {
+                    pw.println(CABECERA_CSV);
+                    indice.recorrerEnOrden(c -> pw.println(lineaCSV(c)));
+                    if (pw.checkError()) throw new IOException("Error escribiendo " + rutaArchivo);
+                }
+            }
+            Metricas.registrar("csv.exportarPorIndice", t, contactos.size());
+            System.out.println("CSV exportado en orden de " + campo + ": " + rutaArchivo);
+        } catch (IOException e) {
+            System.out.println("Error al exportar CSV: " + e.getMessage());
+        }
+    }
+
+    // Línea del CSV exportado para un contacto
+    static String lineaCSV(Contacto c) {
+        return c.getId() + "," +
+                c.getNombre() + "," +
+                c.getApellido() + "," +
+                c.getApodo() + "," +
+                c.getTelefono() + "," +
+                c.getEmail() + "," +
+                c.getDireccion() + "," +
+                c.getFechaNacimiento();
+    }
+
     /**
      * Agrega un nuevo Contacto en memoria, actualiza índices,
      * marca dirty = true y NO escribe en disco.
      */
     public void agregarContacto(Contacto contacto) {
-        if (!esEmailValido(contacto.getEmail())) {
+        long t = Metricas.inicio();
+        if (!ValidadorContactos.esEmailValido(contacto.getEmail())) {
             System.out.println("Formato de email inválido.");
             return;
         }
-        if (!esTelefonoValido(contacto.getTelefono())) {
+        if (!ValidadorContactos.esTelefonoValido(contacto.getTelefono())) {
             System.out.println("Teléfono inválido.");
             return;
         }
@@ -198,9 +545,11 @@ public class GestorContactos {
             return;
         }
         contacto.setId(nextId++);
-        contactos.add(contacto);
+        guardarNuevo(contacto);
+        sinPublicar.add(contacto.getId());
         actualizarIndices(contacto);
-        dirty = true;  // Indica cambios pendientes de exportar
+        marcarCambio();  // Indica cambios pendientes de exportar
+        Metricas.registrar("contacto.agregar", t);
         System.out.println("Contacto agregado (en memoria).");
     }
 
@@ -213,13 +562,18 @@ public class GestorContactos {
             System.out.println("No hay contactos registrados.");
             return;
         }
-        boolean eliminado = contactos.removeIf(c -> c.getId() == id);
-        if (!eliminado) {
+        long t = Metricas.inicio();
+        if (!existeId(id)) {
             System.out.println("No se encontró contacto con ID especificado.");
             return;
         }
-        actualizarIndices();
-        dirty = true;
+        quitar(Set.of(id));
+        for (Indice idx : indices.values()) {
+            idx.eliminar(id);
+        }
+        sinPublicar.add(id);
+        marcarCambio();
+        Metricas.registrar("contacto.eliminar", t);
         System.out.println("Contacto eliminado (en memoria).");
     }
 
@@ -232,57 +586,692 @@ public class GestorContactos {
             System.out.println("No hay contactos registrados.");
             return;
         }
+        long t = Metricas.inicio();
+        Contacto c = sobrescribir(contacto);
+        if (c == null) {
+            System.out.println("No se encontró contacto con ID especificado.");
+            return;
+        }
+        actualizarIndices(c);  // insertar() retira la clave anterior del ID
+        sinPublicar.add(c.getId());
+        marcarCambio();
+        Metricas.registrar("contacto.actualizar", t);
+        System.out.println("Contacto actualizado (en memoria).");
+    }
+
+    /**
+     * Agrega varios contactos de una vez. Cada elemento se valida igual que
+     * en agregarContacto (también contra los demás del lote) y su resultado
+     * se devuelve en vez de imprimirse. Con todoONada, un solo rechazo
+     * cancela el lote entero. Los índices y la versión se actualizan una
+     * única vez por lote.
+     */
+    public ResultadoLote agregarContactos(Collection<Contacto> nuevos, boolean todoONada) {
+        long t = Metricas.inicio();
+        Set<String> existentes = new HashSet<>();
         for (Contacto c : contactos) {
-            if (c.getId() == contacto.getId()) {
-                c.setNombre(contacto.getNombre());
-                c.setApellido(contacto.getApellido());
-                c.setApodo(contacto.getApodo());
-                c.setTelefono(contacto.getTelefono());
-                c.setEmail(contacto.getEmail());
-                c.setDireccion(contacto.getDireccion());
-                c.setFechaNacimiento(contacto.getFechaNacimiento());
-                actualizarIndices();
-                dirty = true;
-                System.out.println("Contacto actualizado (en memoria).");
-                return;
+            existentes.add(claveDuplicado(c));
+        }
+        List<ResultadoLote.Item> items = new ArrayList<>(nuevos.size());
+        List<Contacto> validos = new ArrayList<>(nuevos.size());
+        int pos = 0;
+        for (Contacto c : nuevos) {
+            String motivo = motivoDatosInvalidos(c);
+            if (motivo == null && !existentes.add(claveDuplicado(c))) {
+                motivo = "duplicado";
             }
+            if (motivo == null) validos.add(c);
+            items.add(new ResultadoLote.Item(pos++, 0,
+                    motivo == null ? ResultadoLote.Estado.APLICADO : ResultadoLote.Estado.RECHAZADO, motivo));
+        }
+        if (validos.isEmpty() || (todoONada && validos.size() < nuevos.size())) {
+            return new ResultadoLote(cancelar(items), false);
+        }
+        // Los IDs se asignan en orden, así que el i-ésimo válido recibe el i-ésimo ID
+        Iterator<Contacto> it = validos.iterator();
+        for (int i = 0; i < items.size(); i++) {
+            ResultadoLote.Item item = items.get(i);
+            if (item.estado() != ResultadoLote.Estado.APLICADO) continue;
+            Contacto c = it.next();
+            c.setId(nextId++);
+            items.set(i, new ResultadoLote.Item(item.posicion(), c.getId(), item.estado(), null));
+        }
+        incorporar(validos);
+        Metricas.registrar("contacto.agregarLote", t, validos.size());
+        return new ResultadoLote(items, true);
+    }
+
+    /**
+     * Elimina varios contactos por ID. Los IDs inexistentes se rechazan;
+     * con todoONada, un solo rechazo cancela el lote entero.
+     */
+    public ResultadoLote eliminarContactos(Set<Integer> ids, boolean todoONada) {
+        long t = Metricas.inicio();
+        List<ResultadoLote.Item> items = new ArrayList<>(ids.size());
+        Set<Integer> presentes = new HashSet<>();
+        int pos = 0;
+        for (int id : ids) {
+            boolean existe = existeId(id);
+            if (existe) presentes.add(id);
+            items.add(new ResultadoLote.Item(pos++, id,
+                    existe ? ResultadoLote.Estado.APLICADO : ResultadoLote.Estado.RECHAZADO,
+                    existe ? null : "no existe"));
+        }
+        if (presentes.isEmpty() || (todoONada && presentes.size() < ids.size())) {
+            return new ResultadoLote(cancelar(items), false);
+        }
+        sinPublicar.addAll(presentes);
+        quitar(presentes);  // una sola pasada
+        actualizarIndicesLote(Collections.emptyList(), presentes);
+        marcarCambio();
+        Metricas.registrar("contacto.eliminarLote", t, presentes.size());
+        return new ResultadoLote(items, true);
+    }
+
+    /**
+     * Actualiza varios contactos existentes, localizados por su ID. Se
+     * rechazan los IDs inexistentes o repetidos y los datos inválidos; con
+     * todoONada, un solo rechazo cancela el lote entero.
+     */
+    public ResultadoLote actualizarContactos(Collection<Contacto> cambios, boolean todoONada) {
+        long t = Metricas.inicio();
+        List<ResultadoLote.Item> items = new ArrayList<>(cambios.size());
+        List<Contacto> validos = new ArrayList<>(cambios.size());
+        Set<Integer> vistos = new HashSet<>();
+        int pos = 0;
+        for (Contacto c : cambios) {
+            String motivo = null;
+            if (!existeId(c.getId())) {
+                motivo = "no existe";
+            } else if (!vistos.add(c.getId())) {
+                motivo = "ID repetido en el lote";
+            } else {
+                motivo = motivoDatosInvalidos(c);
+            }
+            if (motivo == null) validos.add(c);
+            items.add(new ResultadoLote.Item(pos++, c.getId(),
+                    motivo == null ? ResultadoLote.Estado.APLICADO : ResultadoLote.Estado.RECHAZADO, motivo));
+        }
+        if (validos.isEmpty() || (todoONada && validos.size() < cambios.size())) {
+            return new ResultadoLote(cancelar(items), false);
+        }
+        sustituir(validos);
+        Metricas.registrar("contacto.actualizarLote", t, validos.size());
+        return new ResultadoLote(items, true);
+    }
+
+    /**
+     * Sustituye los datos de contactos existentes sin validarlos (cambios
+     * ya aceptados en otro gestor, como los que aplica SeguidorReplica),
+     * actualizando índices y versión una sola vez.
+     * @return IDs de los cambios cuyo contacto no existe, que no se aplican
+     */
+    List<Integer> sustituir(Collection<Contacto> cambios) {
+        List<Contacto> modificados = new ArrayList<>(cambios.size());
+        List<Integer> ausentes = new ArrayList<>();
+        for (Contacto nuevo : cambios) {
+            Contacto c = sobrescribir(nuevo);
+            if (c == null) {
+                ausentes.add(nuevo.getId());
+                continue;
+            }
+            modificados.add(c);
+            sinPublicar.add(c.getId());
+        }
+        if (!modificados.isEmpty()) {
+            actualizarIndicesLote(modificados, Collections.emptySet());
+            marcarCambio();
+        }
+        return ausentes;
+    }
+
+    /**
+     * Añade contactos ya validados y con ID asignado, actualizando índices
+     * y versión una sola vez. No comprueba duplicados.
+     */
+    void incorporar(List<Contacto> nuevos) {
+        for (Contacto c : nuevos) {
+            guardarNuevo(c);
+            nextId = Math.max(nextId, c.getId() + 1);
+            sinPublicar.add(c.getId());
         }
-        System.out.println("No se encontró contacto con ID especificado.");
+        actualizarIndicesLote(nuevos, Collections.emptySet());
+        marcarCambio();
+    }
+
+    // Motivo por el que los datos de un contacto no son válidos, o null
+    static String motivoDatosInvalidos(Contacto c) {
+        if (!ValidadorContactos.esEmailValido(c.getEmail())) return "email inválido";
+        if (!ValidadorContactos.esTelefonoValido(c.getTelefono())) return "teléfono inválido";
+        return null;
+    }
+
+    // Lote cancelado: los elementos válidos pasan a NO_APLICADO
+    static List<ResultadoLote.Item> cancelar(List<ResultadoLote.Item> items) {
+        List<ResultadoLote.Item> res = new ArrayList<>(items.size());
+        for (ResultadoLote.Item i : items) {
+            res.add(i.estado() == ResultadoLote.Estado.APLICADO
+                    ? new ResultadoLote.Item(i.posicion(), i.id(), ResultadoLote.Estado.NO_APLICADO, null)
+                    : i);
+        }
+        return res;
+    }
+
+    // Clave de duplicado de agregarContacto: nombre y apodo sin distinguir mayúsculas
+    static String claveDuplicado(Contacto c) {
+        return c.getNombre().toLowerCase() + '\u0000' + c.getApodo().toLowerCase();
     }
 
+    /**
+     * Busca contactos por criterio y valor. Los resultados se sirven desde
+     * la caché mientras no cambie la versión de los datos.
+     */
     public List<Contacto> buscarContactos(String criterio, String valor) {
         if (contactos.isEmpty()) {
             System.out.println("No hay contactos registrados.");
             return Collections.emptyList();
         }
+        long t = Metricas.inicio();
+        String clave = claveBusqueda(criterio, valor);
+        List<Contacto> res = cache.obtener(clave, version);
+        if (res != null) {
+            Metricas.contar("busqueda.cache");
+        } else {
+            res = cache.guardar(clave, version, buscarSinCache(criterio, valor));
+        }
+        Metricas.registrar("buscar", t);
+        return res;
+    }
+
+    // Clave de la caché para una búsqueda de un criterio
+    private static String claveBusqueda(String criterio, String valor) {
+        return "buscar|" + criterio.toLowerCase() + "|" + valor;
+    }
+
+    // Ejecuta la búsqueda contra el índice o recorriendo la lista
+    private List<Contacto> buscarSinCache(String criterio, String valor) {
+        return streamSinCache(criterio, valor).collect(Collectors.toList());
+    }
+
+    /**
+     * Búsqueda perezosa: los resultados se producen a medida que se
+     * consumen, desde la caché si la consulta ya está en ella, desde el
+     * índice (en orden de ID) o recorriendo la lista, sin materializar la
+     * lista completa; con limit() o un iterador el primer resultado llega
+     * sin esperar al resto. Como con un iterador de ArrayList, el gestor no
+     * debe modificarse mientras se consume. Para paginar o leer desde otro
+     * hilo, usar {@link #buscarPagina}.
+     */
+    public Stream<Contacto> buscarContactosStream(String criterio, String valor) {
+        List<Contacto> enCache = cache.obtener(claveBusqueda(criterio, valor), version);
+        if (enCache != null) {
+            Metricas.contar("busqueda.cache");
+            return enCache.stream();
+        }
+        return streamSinCache(criterio, valor);
+    }
+
+    // Stream de la búsqueda contra el índice o recorriendo la lista
+    private Stream<Contacto> streamSinCache(String criterio, String valor) {
+        // Claves derivadas: usar el índice si existe, si no, recorrer calculando la clave
+        ClaveDerivada derivada = ClaveDerivada.desdeNombre(criterio);
+        if (derivada != null) {
+            String buscado = derivada.normalizarValor(valor);
+            Indice indice = indices.get(derivada.getNombre());
+            if (indice != null) {
+                Metricas.contar("busqueda.indice");
+                return indice.buscarStream(buscado, Integer.MIN_VALUE);
+            }
+            Metricas.contar("busqueda.recorrido");
+            return contactos.stream()
+                    .filter(c -> derivada.calcular(c).equals(buscado));
+        }
+        // Campos almacenados: con la misma regla que filtroCampo, vía índice si existe
+        String campo = criterio.trim().toLowerCase();
+        Indice indice = indices.get(campo);
+        if (indice != null) {
+            Metricas.contar("busqueda.indice");
+            return distingueMayusculas(campo)
+                    ? indice.buscarStream(valor, Integer.MIN_VALUE)
+                    : indice.buscarStreamSinMayusculas(valor);
+        }
+        Metricas.contar("busqueda.recorrido");
         return contactos.stream()
-                .filter(c ->
-                        criterio.equalsIgnoreCase("nombre")   ? c.getNombre().equalsIgnoreCase(valor)   :
-                                criterio.equalsIgnoreCase("apellido") ? c.getApellido().equalsIgnoreCase(valor) :
-                                        criterio.equalsIgnoreCase("email")    ? c.getEmail().equalsIgnoreCase(valor)     :
-                                                criterio.equalsIgnoreCase("telefono") ? c.getTelefono().equals(valor)            :
-                                                        false
-                )
-                .collect(Collectors.toList());
+                .filter(filtroCampo(criterio, valor));
+    }
+
+    /**
+     * Búsqueda paginada sobre la última versión confirmada (ver
+     * {@link Instantanea#buscarPagina}); memoria proporcional al límite.
+     * @param cursor  null para la primera página, o el de la anterior
+     */
+    public PaginaResultados buscarPagina(String criterio, String valor, String cursor, int limite) {
+        return instantanea().buscarPagina(criterio, valor, cursor, limite);
+    }
+
+    /**
+     * Condición de búsqueda sobre un campo almacenado: los textos se
+     * comparan sin distinguir mayúsculas y teléfono, fecha e ID tal cual
+     * (ver {@link #distingueMayusculas}). Campo desconocido: nada coincide.
+     */
+    static Predicate<Contacto> filtroCampo(String criterio, String valor) {
+        String campo = criterio.trim().toLowerCase();
+        String buscado = valor.trim();
+        Function<Contacto, String> extractor;
+        try {
+            extractor = Indice.extractorPara(campo);
+        } catch (IllegalArgumentException e) {
+            return c -> false;
+        }
+        return distingueMayusculas(campo)
+                ? c -> extractor.apply(c).equals(buscado)
+                : c -> extractor.apply(c).equalsIgnoreCase(buscado);
     }
 
+    // Campos almacenados que se buscan de forma exacta; el resto ignora mayúsculas
+    static boolean distingueMayusculas(String campo) {
+        return switch (campo) {
+            case "id", "telefono", "fecha_nacimiento" -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Búsqueda con varios criterios combinados con AND (todos = true) u OR.
+     * Cada criterio se resuelve como conjunto de IDs, desde su índice si
+     * existe (coincidencia exacta) o recorriendo la lista, y los conjuntos
+     * se combinan con intersección/unión de listas de postings.
+     * @param criterios  mapa campo → valor buscado
+     */
+    public List<Contacto> buscarContactosCombinados(Map<String, String> criterios, boolean todos) {
+        long t = Metricas.inicio();
+        ListaPostings ids = null;
+        for (Map.Entry<String, String> e : criterios.entrySet()) {
+            ListaPostings parcial = idsQueCumplen(e.getKey(), e.getValue());
+            if (ids == null) ids = parcial;
+            else ids = todos ? ListaPostings.interseccion(ids, parcial) : ListaPostings.union(ids, parcial);
+            // Con AND, un conjunto vacío ya no puede crecer
+            if (todos && ids.estaVacia()) break;
+        }
+        List<Contacto> res = new ArrayList<>();
+        if (ids != null) {
+            ids.forEach(id -> {
+                Contacto c = getContactoPorId(id);
+                if (c != null) res.add(c);
+            });
+        }
+        Metricas.registrar("buscar.combinado", t);
+        return res;
+    }
+
+    // IDs de los contactos que cumplen un criterio, vía índice o recorrido;
+    // ambos caminos aplican la misma regla de coincidencia que filtroCampo
+    private ListaPostings idsQueCumplen(String criterio, String valor) {
+        ClaveDerivada derivada = ClaveDerivada.desdeNombre(criterio);
+        String campo = derivada != null ? derivada.getNombre() : criterio.trim().toLowerCase();
+        Indice indice = indices.get(campo);
+        if (indice != null) {
+            Metricas.contar("busqueda.indice");
+            if (derivada != null) return indice.buscarIds(derivada.normalizarValor(valor));
+            return distingueMayusculas(campo) ? indice.buscarIds(valor) : indice.buscarIdsSinMayusculas(valor);
+        }
+        List<Contacto> encontrados = buscarSinCache(criterio, valor);
+        int[] ids = new int[encontrados.size()];
+        for (int i = 0; i < ids.length; i++) ids[i] = encontrados.get(i).getId();
+        return ListaPostings.desdeArreglo(ids, ids.length);
+    }
+
+    /**
+     * Crea y construye el índice del campo. Con tipo "auto" la estructura
+     * se elige a partir de una muestra de los contactos (ver Indice.elegirTipo).
+     */
     public void crearIndice(String campo, String tipo) {
-        Indice indice = new Indice(campo, tipo, this);
-        for (Contacto c : contactos) {
-            indice.insertar(c);
+        ClaveDerivada derivada = ClaveDerivada.desdeNombre(campo);
+        if (derivada != null) campo = derivada.getNombre();
+        Indice indice;
+        try {
+            if (tipo.trim().equalsIgnoreCase("auto")) {
+                tipo = Indice.elegirTipo(campo, contactos);
+                System.out.println("tipo elegido para " + campo + ": " + tipo);
+            }
+            indice = new Indice(campo, tipo, this);
+        } catch (IllegalArgumentException e) {
+            System.out.println("no se pudo crear el indice: " + e.getMessage());
+            return;
+        }
+        indice.construirMasivo(contactos);
+        registrarIndice(indice);
+        escritor.programar(indice);  // El archivo se escribe en segundo plano
+        publicar(false);             // Incluir la vista del índice si es persistente
+        System.out.println("indice creado");
+    }
+
+    /**
+     * Reabre el índice "bplus" de un campo desde su archivo, sin
+     * reconstruirlo. Si el archivo falta, no se cerró limpiamente o no
+     * corresponde a los contactos cargados (mismos IDs con los mismos
+     * valores, según la huella guardada en su cabecera), se crea de nuevo.
+     */
+    public void abrirIndice(String campo) {
+        ClaveDerivada derivada = ClaveDerivada.desdeNombre(campo);
+        if (derivada != null) campo = derivada.getNombre();
+        // El índice en uso sobre el mismo archivo se cierra antes de reabrirlo
+        Indice previo = indices.get(campo);
+        if (previo != null && previo.getTipo().equals("bplus")) previo.cerrar();
+        Indice indice;
+        try {
+            indice = Indice.abrir(campo, this);
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("no se pudo reabrir el indice (" + e.getMessage() + "), se reconstruye");
+            crearIndice(campo, "bplus");
+            return;
         }
-        indices.put(campo, indice);
-        indice.flush();  // Guarda el archivo del índice si hubo cambios
+        if (!indice.coincideCon(contactos)) {
+            indice.cerrar();
+            System.out.println("el indice guardado no coincide con los contactos, se reconstruye");
+            crearIndice(campo, "bplus");
+            return;
+        }
+        registrarIndice(indice);
+        escritor.programar(indice);
+        System.out.println("indice abierto sin reconstruir");
+    }
+
+    /** Indica si hay un archivo de índice "bplus" para el campo. */
+    public boolean hayIndiceEnDisco(String campo) {
+        ClaveDerivada derivada = ClaveDerivada.desdeNombre(campo);
+        if (derivada != null) campo = derivada.getNombre();
+        return Indice.rutaArbol(prefijoIndices, campo).toFile().exists();
+    }
+
+    // Sustituye el índice del campo, cerrando el anterior si lo había
+    private void registrarIndice(Indice indice) {
+        Indice previo = indices.put(indice.getCampo(), indice);
+        if (previo != null && previo != indice) previo.cerrar();
+    }
+
+    /**
+     * Crea varios índices a la vez, construyéndolos en paralelo.
+     * @param campoTipo  mapa campo → tipo ("bst", "avl", "avlp", "hash",
+     *                   "bplus" o "auto")
+     */
+    public void crearIndices(Map<String, String> campoTipo) {
+        List<Indice> nuevos = new ArrayList<>();
+        for (Map.Entry<String, String> e : campoTipo.entrySet()) {
+            ClaveDerivada derivada = ClaveDerivada.desdeNombre(e.getKey());
+            String campo = derivada != null ? derivada.getNombre() : e.getKey();
+            try {
+                String tipo = e.getValue().trim().equalsIgnoreCase("auto")
+                        ? Indice.elegirTipo(campo, contactos) : e.getValue();
+                nuevos.add(new Indice(campo, tipo, this));
+            } catch (IllegalArgumentException ex) {
+                System.out.println("no se pudo crear el indice " + campo + ": " + ex.getMessage());
+            }
+        }
+        construirEnParalelo(nuevos);
+        for (Indice idx : nuevos) {
+            registrarIndice(idx);
+            escritor.programar(idx);
+        }
+        publicar(false);
+    }
+
+    /**
+     * Página 'numero' (desde 0) de 'tamano' contactos en orden del campo
+     * y, a igualdad, de ID. Con un índice "avl" en el campo salta a la
+     * página en O(log n); con otro índice ordenado lo recorre y, si no hay
+     * índice, ordena todos los contactos.
+     */
+    public List<Contacto> paginaOrdenada(String campo, int numero, int tamano) {
+        ClaveDerivada derivada = ClaveDerivada.desdeNombre(campo);
+        if (derivada != null) campo = derivada.getNombre();
+        if (numero < 0 || tamano < 1) throw new IllegalArgumentException("Página o tamaño inválidos");
+        long desde = (long) numero * tamano;
+        if (desde >= contactos.size()) return List.of();
+        Indice indice = indices.get(campo);
+        if (indice != null && !indice.getTipo().equals("hash")) return indice.pagina((int) desde, tamano);
+        Function<Contacto, String> valor = Indice.extractorPara(campo);
+        return contactos.stream()
+                .sorted(Comparator.comparing(valor).thenComparingInt(Contacto::getId))
+                .skip(desde).limit(tamano)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Número de contactos cuyo campo está entre desde y hasta (ambos
+     * incluidos; null = sin límite). Con un índice "avl" en el campo se
+     * cuenta en O(log n) sin enumerar los contactos.
+     */
+    public int contarRango(String campo, String desde, String hasta) {
+        ClaveDerivada derivada = ClaveDerivada.desdeNombre(campo);
+        if (derivada != null) campo = derivada.getNombre();
+        Indice indice = indices.get(campo);
+        if (indice != null) return indice.contarRango(desde, hasta);
+        Function<Contacto, String> valor = Indice.extractorPara(campo);
+        return (int) contactos.stream()
+                .filter(c -> (desde == null || valor.apply(c).compareTo(desde) >= 0)
+                        && (hasta == null || valor.apply(c).compareTo(hasta) <= 0))
+                .count();
+    }
+
+    /**
+     * Contactos cuyo campo está entre desde y hasta (ambos incluidos; null
+     * = sin límite), en orden de valor. Usa el índice del campo si existe
+     * (el árbol B+ sólo lee las páginas del rango); si no, filtra y ordena
+     * todos los contactos.
+     */
+    public List<Contacto> buscarRango(String campo, String desde, String hasta) {
+        ClaveDerivada derivada = ClaveDerivada.desdeNombre(campo);
+        if (derivada != null) campo = derivada.getNombre();
+        Indice indice = indices.get(campo);
+        if (indice != null && !indice.getTipo().equals("hash")) return indice.buscarRango(desde, hasta);
+        Function<Contacto, String> valor = Indice.extractorPara(campo);
+        return contactos.stream()
+                .filter(c -> (desde == null || valor.apply(c).compareTo(desde) >= 0)
+                        && (hasta == null || valor.apply(c).compareTo(hasta) <= 0))
+                .sorted(Comparator.comparing(valor).thenComparingInt(Contacto::getId))
+                .collect(Collectors.toList());
     }
 
     public void listarContactosOrdenados(String campo) {
-        Comparator<Contacto> comp = switch (campo) {
+        obtenerContactosOrdenados(campo).forEach(System.out::println);
+    }
+
+    /**
+     * Devuelve los contactos ordenados por el campo indicado.
+     * El listado se reutiliza desde la caché hasta la siguiente modificación.
+     */
+    public List<Contacto> obtenerContactosOrdenados(String campo) {
+        String clave = "orden|" + campo;
+        List<Contacto> enCache = cache.obtener(clave, version);
+        if (enCache != null) return enCache;
+        return cache.guardar(clave, version,
+                contactos.stream().sorted(comparadorPara(campo)).collect(Collectors.toList()));
+    }
+
+    // Orden de los listados: nombre, apellido, fecha_nacimiento o, si no, ID
+    static Comparator<Contacto> comparadorPara(String campo) {
+        return switch (campo) {
             case "nombre"           -> Comparator.comparing(Contacto::getNombre);
             case "apellido"         -> Comparator.comparing(Contacto::getApellido);
             case "fecha_nacimiento" -> Comparator.comparing(Contacto::getFechaNacimiento);
             default                 -> Comparator.comparingInt(Contacto::getId);
         };
-        contactos.stream().sorted(comp).forEach(System.out::println);
+    }
+
+    /** Estadísticas de aciertos/fallos de la caché de consultas. */
+    public CacheConsultas getCacheConsultas() {
+        return cache;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Posibles duplicados entre los contactos de la versión confirmada,
+     * de mayor a menor puntuación (ver {@link DetectorDuplicados}).
+     * Sólo propone fusiones: no modifica ningún contacto.
+     */
+    public List<SugerenciaFusion> buscarDuplicados(double umbral) {
+        return new DetectorDuplicados(umbral).detectar(instantanea().getContactos());
+    }
+
+    /**
+     * Estadísticas de cada índice, con la recomendación de reconstruirlo
+     * o cambiar su tipo. Recorre todas las estructuras.
+     */
+    public List<EstadisticasIndice> estadisticasIndices() {
+        List<EstadisticasIndice> res = new ArrayList<>();
+        for (Indice idx : indices.values()) res.add(idx.calcularEstadisticas());
+        return res;
+    }
+
+    /**
+     * Reconstruye el índice del campo con su mismo tipo, dejándolo con
+     * la altura mínima. Devuelve false si el campo no tiene índice.
+     */
+    public boolean reconstruirIndice(String campo) {
+        Indice indice = indices.get(campo);
+        if (indice == null) return false;
+        indice.reconstruir();
+        escritor.programar(indice);
+        publicar(false);  // La vista "avlp" publicada debe ser la nueva
+        return true;
+    }
+
+    /**
+     * Informe de métricas: operaciones medidas, caché de consultas y
+     * estado de cada índice (altura, nodos, IDs).
+     */
+    public String volcarMetricas() {
+        StringBuilder sb = new StringBuilder(Metricas.volcar());
+        sb.append(cache).append('\n');
+        for (Indice idx : indices.values()) {
+            sb.append(idx.getEstadisticas()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    // Registra una modificación: cambios pendientes de exportar y nueva versión
+    private void marcarCambio() {
+        dirty = true;
+        version++;
+        programarVolcadoIndices();
+        publicar(false);
+    }
+
+    /**
+     * Última versión confirmada de los contactos, en O(1). No cambia
+     * aunque el gestor siga modificándose; pedir otra para ver los cambios.
+     */
+    public Instantanea instantanea() {
+        return publicada;
+    }
+
+    /**
+     * Publica una nueva Instantanea: aplica a la tabla anterior sólo los IDs
+     * modificados (copia de camino) o la reconstruye si son muchos, y
+     * congela los índices persistentes. Se sustituye de una vez, así que
+     * un lector ve la versión anterior completa o la nueva completa.
+     */
+    private void publicar(boolean todo) {
+        TablaContactos anterior = publicada.getTabla();
+        long secuencia = diario == null ? 0 : emitirCambios(anterior, todo);
+        TablaContactos tabla;
+        if (fueraDelHeap != null) {
+            tabla = TablaContactos.fueraDelHeap(fueraDelHeap.congelar());
+        } else if (todo || sinPublicar.size() > contactos.size() * FRACCION_RECONSTRUIR) {
+            tabla = TablaContactos.desde(contactos);
+        } else {
+            tabla = anterior;
+            for (int id : sinPublicar) {
+                Contacto c = contactosPorId.get(id);
+                tabla = c == null ? tabla.sin(id) : tabla.con(c);
+            }
+        }
+        sinPublicar.clear();
+        Map<String, EstructuraIndice> vistas = new HashMap<>();
+        for (Indice idx : indices.values()) {
+            EstructuraIndice vista = idx.instantanea();
+            if (vista != null) vistas.put(idx.getCampo(), vista);
+        }
+        publicada = new Instantanea(version, secuencia, tabla, vistas);
+    }
+
+    /**
+     * Escribe en el diario los cambios de esta confirmación, comparando con
+     * la versión publicada anterior: REINICIO más una ALTA por contacto si
+     * cambió todo, o ALTA/MODIFICACION/BAJA por cada ID tocado.
+     * @return secuencia del último evento escrito
+     */
+    private long emitirCambios(TablaContactos anterior, boolean todo) {
+        if (todo) {
+            diario.anotar(EventoCambio.Tipo.REINICIO, 0, null);
+            for (Contacto c : contactos) {
+                diario.anotar(EventoCambio.Tipo.ALTA, c.getId(), c);
+            }
+        } else {
+            for (int id : sinPublicar) {
+                Contacto c = getContactoPorId(id);
+                boolean existia = anterior.get(id) != null;
+                if (c != null) {
+                    diario.anotar(existia ? EventoCambio.Tipo.MODIFICACION : EventoCambio.Tipo.ALTA, id, c);
+                } else if (existia) {
+                    diario.anotar(EventoCambio.Tipo.BAJA, id, null);
+                }
+            }
+        }
+        return diario.confirmar();
+    }
+
+    /**
+     * Empieza a emitir los cambios confirmados en el diario dado. Para que
+     * el diario sea autosuficiente se escribe primero el estado actual
+     * completo (REINICIO más una ALTA por contacto).
+     */
+    public void activarDiario(DiarioCambios diario) {
+        this.diario = diario;
+        publicar(true);
+    }
+
+    /**
+     * Punto de control para réplicas: exporta la última versión confirmada
+     * a un CSV y guarda en "<ruta>.seq" la secuencia del diario a la que
+     * corresponde; un SeguidorReplica arranca de él y aplica sólo los
+     * eventos posteriores.
+     */
+    public void escribirPuntoControl(String rutaArchivo) throws IOException {
+        Instantanea inst = instantanea();
+        inst.exportarContactos(rutaArchivo);
+        try (PrintWriter pw = new PrintWriter(new FileWriter(rutaArchivo + ".seq"))) {
+            pw.println(inst.getSecuencia());
+        }
+    }
+
+    // Anota para el escritor en segundo plano los índices con cambios
+    private void programarVolcadoIndices() {
+        for (Indice idx : indices.values()) {
+            if (idx.isModificado()) escritor.programar(idx);
+        }
+    }
+
+    /** Escribe ya en disco todos los índices con cambios pendientes. */
+    public void flushAll() {
+        escritor.flushAll();
+    }
+
+    /** Vuelca los índices pendientes y detiene el escritor; llamar al salir. */
+    public void cerrar() {
+        escritor.cerrar();
+        for (Indice idx : indices.values()) idx.cerrar();
+        if (diario != null) {
+            try {
+                diario.close();
+            } catch (IOException e) {
+                System.out.println("Error cerrando el diario: " + e.getMessage());
+            }
+        }
     }
 
     // Actualiza todos los índices con un nuevo contacto
@@ -291,21 +1280,50 @@ public class GestorContactos {
             idx.insertar(contacto);
         }
     }
-    // Reconstruye todos los índices completos (en casos de eliminación o edición masiva)
-    private void actualizarIndices() {
+    /**
+     * Aplica un lote a todos los índices de una vez: si el lote es una
+     * fracción grande de los contactos conviene reconstruirlos en paralelo;
+     * si no, se insertan y eliminan sólo las entradas afectadas.
+     */
+    private void actualizarIndicesLote(List<Contacto> insertados, Set<Integer> eliminados) {
+        if (indices.isEmpty()) return;
+        int tamanoLote = insertados.size() + eliminados.size();
+        if (tamanoLote > contactos.size() * FRACCION_RECONSTRUIR) {
+            actualizarIndices();
+            return;
+        }
         for (Indice idx : indices.values()) {
-            idx.reconstruir();
+            for (int id : eliminados) {
+                idx.eliminar(id);
+            }
+            for (Contacto c : insertados) {
+                idx.insertar(c);
+            }
         }
     }
-
-    // Validación básica de formato de email
-    private boolean esEmailValido(String email) {
-        return email.matches("^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+\\.[A-Za-z]{2,}$");
+    // Reconstruye todos los índices completos (en casos de eliminación o edición masiva)
+    private void actualizarIndices() {
+        construirEnParalelo(new ArrayList<>(indices.values()));
     }
-    // Validación de teléfono de 8 dígitos
-    private boolean esTelefonoValido(String telefono) {
-        return telefono.matches("^\\d{8}$");
+
+    /**
+     * Construye los índices dados de forma concurrente en el pool
+     * fork-join común; cada construcción además ordena en paralelo.
+     */
+    private void construirEnParalelo(List<Indice> lista) {
+        if (lista.size() == 1) {
+            lista.get(0).construirMasivo(contactos);
+            return;
+        }
+        List<ForkJoinTask<?>> tareas = new ArrayList<>();
+        for (Indice idx : lista) {
+            tareas.add(ForkJoinPool.commonPool().submit(() -> idx.construirMasivo(contactos)));
+        }
+        for (ForkJoinTask<?> tarea : tareas) {
+            tarea.join();
+        }
     }
+
     // Comprueba duplicado basado en nombre y apodo
     private boolean existeContacto(String nombre, String apodo) {
         return contactos.stream()
@@ -314,25 +1332,66 @@ public class GestorContactos {
                                 c.getApodo().equalsIgnoreCase(apodo)
                 );
     }
-    // Comprueba duplicado avanzado: combina varios campos
-    private boolean existeContacto(String nombre,
-                                   String apellido,
-                                   String apodo,
-                                   String email,
-                                   String telefono) {
-        return contactos.stream().anyMatch(c ->
-                (c.getNombre().equalsIgnoreCase(nombre)
-                        && c.getApellido().equalsIgnoreCase(apellido)
-                        && c.getApodo().equalsIgnoreCase(apodo))
-                        || c.getEmail().equalsIgnoreCase(email)
-                        || c.getTelefono().equals(telefono)
-        );
+
+    // Clave de duplicado de la importación: nombre, apellido y apodo sin distinguir mayúsculas
+    private static String claveNombreCompleto(String nombre, String apellido, String apodo) {
+        return nombre.toLowerCase() + '\u0000' + apellido.toLowerCase() + '\u0000' + apodo.toLowerCase();
+    }
+
+    // Prefijo que Indice antepone a los nombres de sus archivos
+    String getPrefijoIndices() {
+        return prefijoIndices;
     }
 
     public Contacto getContactoPorId(int id) {
-        return contactos.stream()
-                .filter(c -> c.getId() == id)
-                .findFirst()
-                .orElse(null);
+        return fueraDelHeap != null ? fueraDelHeap.porId(id) : contactosPorId.get(id);
+    }
+
+    /** Indica si los contactos están en memoria directa (ver GestorContactos(boolean)). */
+    public boolean isFueraDelHeap() {
+        return fueraDelHeap != null;
+    }
+
+    private boolean existeId(int id) {
+        return fueraDelHeap != null ? fueraDelHeap.contiene(id) : contactosPorId.containsKey(id);
+    }
+
+    // Añade un contacto con su ID ya asignado a la lista y al acceso por ID
+    private void guardarNuevo(Contacto c) {
+        contactos.add(c);
+        if (contactosPorId != null) contactosPorId.put(c.getId(), c);
+    }
+
+    // Quita los contactos de los IDs dados recorriendo la lista una vez
+    private void quitar(Set<Integer> ids) {
+        if (fueraDelHeap != null) {
+            fueraDelHeap.eliminar(ids);
+            return;
+        }
+        contactos.removeIf(c -> ids.contains(c.getId()));
+        for (int id : ids) contactosPorId.remove(id);
+    }
+
+    /**
+     * Copia los datos de 'nuevo' en el contacto guardado con su mismo ID.
+     * @return el contacto guardado, o null si el ID no existe
+     */
+    private Contacto sobrescribir(Contacto nuevo) {
+        if (fueraDelHeap != null) return fueraDelHeap.sustituir(nuevo);
+        Contacto c = contactosPorId.get(nuevo.getId());
+        if (c == null) return null;
+        c.setNombre(nuevo.getNombre());
+        c.setApellido(nuevo.getApellido());
+        c.setApodo(nuevo.getApodo());
+        c.setTelefono(nuevo.getTelefono());
+        c.setEmail(nuevo.getEmail());
+        c.setDireccion(nuevo.getDireccion());
+        c.setFechaNacimiento(nuevo.getFechaNacimiento());
+        return c;
+    }
+
+    /** Vista de sólo lectura de los contactos en memoria. */
+    public List<Contacto> getContactos() {
+        return Collections.unmodifiableList(contactos);
     }
 }
@@ -0,0 +1,381 @@
+// GestorFragmentado.java
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Gestor de contactos repartido en N fragmentos independientes según el
+ * hash del ID. Cada fragmento es un GestorContactos con su propia lista,
+ * sus índices y su caché, así que una modificación sólo reconstruye los
+ * índices de su fragmento. Búsquedas, listados ordenados (mezcla de k
+ * vías) y exportación se reparten entre los fragmentos en paralelo sobre
+ * el pool fork-join común y se combinan al final.
+ * Los IDs se asignan globalmente; los archivos de índice de cada
+ * fragmento llevan el prefijo "fragmentoN-".
+ */
+public class GestorFragmentado {
+
+    // Fragmentos; el contacto con ID id vive en fragmentos[fragmentoDe(id)]
+    private final GestorContactos[] fragmentos;
+    // Escritor de índices compartido por todos los fragmentos (un solo hilo)
+    private final EscritorIndices escritor;
+    // Siguiente ID libre, común a todos los fragmentos
+    private final AtomicInteger nextId = new AtomicInteger(1);
+
+    /**
+     * @param cantidad  número de fragmentos; conviene que sea del orden
+     *                  de los núcleos disponibles
+     */
+    public GestorFragmentado(int cantidad) {
+        if (cantidad < 1) throw new IllegalArgumentException("Se necesita al menos un fragmento");
+        escritor   = new EscritorIndices();
+        fragmentos = new GestorContactos[cantidad];
+        for (int i = 0; i < cantidad; i++) {
+            fragmentos[i] = new GestorContactos("fragmento" + i + "-", escritor);
+        }
+    }
+
+    /** Un fragmento por cada procesador disponible. */
+    public GestorFragmentado() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public int getCantidadFragmentos() {
+        return fragmentos.length;
+    }
+
+    public int getCantidadContactos() {
+        int n = 0;
+        for (GestorContactos f : fragmentos) n += f.getCantidadContactos();
+        return n;
+    }
+
+    public Contacto getContactoPorId(int id) {
+        return fragmento(id).getContactoPorId(id);
+    }
+
+    /**
+     * Carga un CSV completo: se lee y valida una vez, se reparte por ID y
+     * cada fragmento reconstruye sus índices en paralelo con los demás.
+     */
+    public void cargarDesdeArchivo(String rutaArchivo) {
+        List<ValidadorContactos.Rechazo> rechazos = new ArrayList<>();
+        long t = Metricas.inicio();
+        List<List<Contacto>> partes = new ArrayList<>();
+        for (int i = 0; i < fragmentos.length; i++) partes.add(new ArrayList<>());
+        int[] maxId = {0};
+        try (BufferedReader br = new BufferedReader(new FileReader(rutaArchivo))) {
+            int filas = GestorContactos.leerCSVValidado(br, true, fila -> {
+                Contacto c = GestorContactos.contactoDesdeFila(fila);
+                partes.get(fragmentoDe(c.getId())).add(c);
+                maxId[0] = Math.max(maxId[0], c.getId());
+            }, rechazos);
+            String origen = new File(rutaArchivo).getAbsolutePath();
+            enParalelo(i -> {
+                fragmentos[i].reemplazarContactos(partes.get(i), origen);
+                return null;
+            });
+            nextId.set(maxId[0] + 1);
+            Metricas.registrar("fragmentos.cargar", t, filas);
+            System.out.println("Cargados desde: " + origen);
+        } catch (IOException e) {
+            System.out.println("Error lectura: " + e.getMessage());
+        }
+        GestorContactos.reportarRechazos(rutaArchivo, rechazos);
+    }
+
+    /**
+     * Agrega varios contactos. Se validan contra todos los fragmentos
+     * (duplicado por nombre y apodo) y después cada fragmento incorpora
+     * los suyos en paralelo. Con todoONada, un rechazo cancela el lote.
+     */
+    public ResultadoLote agregarContactos(Collection<Contacto> nuevos, boolean todoONada) {
+        long t = Metricas.inicio();
+        List<Set<String>> porFragmento = enParalelo(i -> {
+            Set<String> claves = new HashSet<>();
+            for (Contacto c : fragmentos[i].getContactos()) claves.add(GestorContactos.claveDuplicado(c));
+            return claves;
+        });
+        Set<String> existentes = new HashSet<>();
+        porFragmento.forEach(existentes::addAll);
+
+        List<ResultadoLote.Item> items = new ArrayList<>(nuevos.size());
+        List<Contacto> validos = new ArrayList<>(nuevos.size());
+        int pos = 0;
+        for (Contacto c : nuevos) {
+            String motivo = GestorContactos.motivoDatosInvalidos(c);
+            if (motivo == null && !existentes.add(GestorContactos.claveDuplicado(c))) {
+                motivo = "duplicado";
+            }
+            if (motivo == null) validos.add(c);
+            items.add(new ResultadoLote.Item(pos++, 0,
+                    motivo == null ? ResultadoLote.Estado.APLICADO : ResultadoLote.Estado.RECHAZADO, motivo));
+        }
+        if (validos.isEmpty() || (todoONada && validos.size() < nuevos.size())) {
+            return new ResultadoLote(GestorContactos.cancelar(items), false);
+        }
+        List<List<Contacto>> partes = new ArrayList<>();
+        for (int i = 0; i < fragmentos.length; i++) partes.add(new ArrayList<>());
+        Iterator<Contacto> it = validos.iterator();
+        for (int i = 0; i < items.size(); i++) {
+            ResultadoLote.Item item = items.get(i);
+            if (item.estado() != ResultadoLote.Estado.APLICADO) continue;
+            Contacto c = it.next();
+            c.setId(nextId.getAndIncrement());
+            partes.get(fragmentoDe(c.getId())).add(c);
+            items.set(i, new ResultadoLote.Item(item.posicion(), c.getId(), item.estado(), null));
+        }
+        enParalelo(i -> {
+            if (!partes.get(i).isEmpty()) fragmentos[i].incorporar(partes.get(i));
+            return null;
+        });
+        Metricas.registrar("fragmentos.agregar", t, validos.size());
+        return new ResultadoLote(items, true);
+    }
+
+    /** Elimina varios contactos por ID; sólo se tocan sus fragmentos. */
+    public ResultadoLote eliminarContactos(Set<Integer> ids, boolean todoONada) {
+        long t = Metricas.inicio();
+        List<ResultadoLote.Item> items = new ArrayList<>(ids.size());
+        List<Set<Integer>> partes = new ArrayList<>();
+        for (int i = 0; i < fragmentos.length; i++) partes.add(new HashSet<>());
+        int pos = 0;
+        int presentes = 0;
+        for (int id : ids) {
+            boolean existe = getContactoPorId(id) != null;
+            if (existe) {
+                partes.get(fragmentoDe(id)).add(id);
+                presentes++;
+            }
+            items.add(new ResultadoLote.Item(pos++, id,
+                    existe ? ResultadoLote.Estado.APLICADO : ResultadoLote.Estado.RECHAZADO,
+                    existe ? null : "no existe"));
+        }
+        if (presentes == 0 || (todoONada && presentes < ids.size())) {
+            return new ResultadoLote(GestorContactos.cancelar(items), false);
+        }
+        enParalelo(i -> partes.get(i).isEmpty() ? null : fragmentos[i].eliminarContactos(partes.get(i), true));
+        Metricas.registrar("fragmentos.eliminar", t, presentes);
+        return new ResultadoLote(items, true);
+    }
+
+    /**
+     * Actualiza varios contactos localizados por ID. La validación se hace
+     * antes de repartir, así todoONada abarca a todos los fragmentos.
+     */
+    public ResultadoLote actualizarContactos(Collection<Contacto> cambios, boolean todoONada) {
+        long t = Metricas.inicio();
+        List<ResultadoLote.Item> items = new ArrayList<>(cambios.size());
+        List<List<Contacto>> partes = new ArrayList<>();
+        for (int i = 0; i < fragmentos.length; i++) partes.add(new ArrayList<>());
+        Set<Integer> vistos = new HashSet<>();
+        int pos = 0;
+        int validos = 0;
+        for (Contacto c : cambios) {
+            String motivo;
+            if (getContactoPorId(c.getId()) == null) {
+                motivo = "no existe";
+            } else if (!vistos.add(c.getId())) {
+                motivo = "ID repetido en el lote";
+            } else {
+                motivo = GestorContactos.motivoDatosInvalidos(c);
+            }
+            if (motivo == null) {
+                partes.get(fragmentoDe(c.getId())).add(c);
+                validos++;
+            }
+            items.add(new ResultadoLote.Item(pos++, c.getId(),
+                    motivo == null ? ResultadoLote.Estado.APLICADO : ResultadoLote.Estado.RECHAZADO, motivo));
+        }
+        if (validos == 0 || (todoONada && validos < cambios.size())) {
+            return new ResultadoLote(GestorContactos.cancelar(items), false);
+        }
+        enParalelo(i -> partes.get(i).isEmpty() ? null : fragmentos[i].actualizarContactos(partes.get(i), true));
+        Metricas.registrar("fragmentos.actualizar", t, validos);
+        return new ResultadoLote(items, true);
+    }
+
+    /**
+     * Crea el índice en todos los fragmentos, construyéndolos en paralelo.
+     * Con tipo "auto" cada fragmento elige sobre su propia muestra.
+     */
+    public void crearIndice(String campo, String tipo) {
+        try {
+            if (!tipo.trim().equalsIgnoreCase("auto")) Indice.comprobarTipo(tipo);
+        } catch (IllegalArgumentException e) {
+            System.out.println("no se pudo crear el indice: " + e.getMessage());
+            return;
+        }
+        enParalelo(i -> {
+            fragmentos[i].crearIndices(Map.of(campo, tipo));
+            return null;
+        });
+        System.out.println("indice creado");
+    }
+
+    /**
+     * Busca en todos los fragmentos a la vez y concatena los resultados
+     * (cada fragmento usa su índice o su caché si los tiene).
+     */
+    public List<Contacto> buscarContactos(String criterio, String valor) {
+        long t = Metricas.inicio();
+        List<Contacto> res = concatenar(enParalelo(i -> fragmentos[i].getCantidadContactos() == 0
+                ? Collections.<Contacto>emptyList()
+                : fragmentos[i].buscarContactos(criterio, valor)));
+        Metricas.registrar("fragmentos.buscar", t, res.size());
+        return res;
+    }
+
+    /** Búsqueda combinada (AND/OR) repartida entre los fragmentos. */
+    public List<Contacto> buscarContactosCombinados(Map<String, String> criterios, boolean todos) {
+        return concatenar(enParalelo(i -> fragmentos[i].buscarContactosCombinados(criterios, todos)));
+    }
+
+    /**
+     * Contactos ordenados por el campo indicado: cada fragmento ordena los
+     * suyos en paralelo y se mezclan con una cola de prioridad (k vías).
+     */
+    public List<Contacto> obtenerContactosOrdenados(String campo) {
+        long t = Metricas.inicio();
+        List<List<Contacto>> ordenadas = enParalelo(i -> fragmentos[i].obtenerContactosOrdenados(campo));
+        Comparator<Contacto> comp = GestorContactos.comparadorPara(campo);
+        // Cada entrada es {fragmento, posición}; se compara por su contacto actual
+        PriorityQueue<int[]> cola = new PriorityQueue<>(
+                (a, b) -> comp.compare(ordenadas.get(a[0]).get(a[1]), ordenadas.get(b[0]).get(b[1])));
+        int total = 0;
+        for (int i = 0; i < ordenadas.size(); i++) {
+            total += ordenadas.get(i).size();
+            if (!ordenadas.get(i).isEmpty()) cola.add(new int[] {i, 0});
+        }
+        List<Contacto> res = new ArrayList<>(total);
+        while (!cola.isEmpty()) {
+            int[] cab = cola.poll();
+            List<Contacto> lista = ordenadas.get(cab[0]);
+            res.add(lista.get(cab[1]));
+            if (++cab[1] < lista.size()) cola.add(cab);
+        }
+        Metricas.registrar("fragmentos.ordenar", t, total);
+        return res;
+    }
+
+    public void listarContactosOrdenados(String campo) {
+        obtenerContactosOrdenados(campo).forEach(System.out::println);
+    }
+
+    /**
+     * Exporta todos los contactos: cada fragmento escribe su parte en un
+     * temporal en paralelo y las partes se concatenan, en orden de
+     * fragmento, tras la cabecera.
+     */
+    public void exportarContactos(String rutaArchivo) {
+        long t = Metricas.inicio();
+        Path destino = Path.of(rutaArchivo);
+        List<Path> partes = new ArrayList<>();
+        try {
+            partes.addAll(enParalelo(i -> {
+                Path parte = Path.of(rutaArchivo + ".parte" + i);
+                try (PrintWriter pw = new PrintWriter(Files.newBufferedWriter(parte))) {
+                    for (Contacto c : fragmentos[i].getContactos()) {
+                        pw.println(GestorContactos.lineaCSV(c));
+                    }
+                    if (pw.checkError()) throw new UncheckedIOException(new IOException("error escribiendo " + parte));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return parte;
+            }));
+            try (FileChannel salida = FileChannel.open(destino, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                salida.write(ByteBuffer.wrap((GestorContactos.CABECERA_CSV + System.lineSeparator())
+                        .getBytes(StandardCharsets.UTF_8)));
+                for (Path parte : partes) {
+                    try (FileChannel entrada = FileChannel.open(parte)) {
+                        long tam = entrada.size();
+                        long copiado = 0;
+                        while (copiado < tam) copiado += entrada.transferTo(copiado, tam - copiado, salida);
+                    }
+                }
+            }
+            Metricas.registrar("fragmentos.exportar", t, getCantidadContactos());
+            System.out.println("CSV exportado en: " + rutaArchivo);
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error al exportar CSV: " + e.getMessage());
+        } finally {
+            for (int i = 0; i < fragmentos.length; i++) {
+                try {
+                    Files.deleteIfExists(Path.of(rutaArchivo + ".parte" + i));
+                } catch (IOException e) {
+                    // Se intenta borrar el resto de temporales
+                }
+            }
+        }
+    }
+
+    /** Informe de métricas y del estado de cada fragmento. */
+    public String volcarMetricas() {
+        StringBuilder sb = new StringBuilder(Metricas.volcar());
+        for (int i = 0; i < fragmentos.length; i++) {
+            sb.append("fragmento ").append(i).append(": ")
+              .append(fragmentos[i].getCantidadContactos()).append(" contactos, ")
+              .append(fragmentos[i].getCacheConsultas()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /** Escribe ya en disco los índices pendientes de todos los fragmentos. */
+    public void flushAll() {
+        escritor.flushAll();
+    }
+
+    /** Vuelca los índices pendientes y detiene el escritor; llamar al salir. */
+    public void cerrar() {
+        escritor.cerrar();
+    }
+
+    private int fragmentoDe(int id) {
+        return particionDe(id, fragmentos.length);
+    }
+
+    // Partición de un ID entre n: mezcla los bits para repartir bien IDs consecutivos
+    static int particionDe(int id, int n) {
+        int h = id * 0x9E3779B9;
+        h ^= h >>> 16;
+        return Math.floorMod(h, n);
+    }
+
+    private GestorContactos fragmento(int id) {
+        return fragmentos[fragmentoDe(id)];
+    }
+
+    // Ejecuta la tarea para cada fragmento en el pool común y devuelve los resultados en orden
+    private <T> List<T> enParalelo(Function<Integer, T> tarea) {
+        if (fragmentos.length == 1) return Collections.singletonList(tarea.apply(0));
+        List<ForkJoinTask<T>> tareas = new ArrayList<>(fragmentos.length);
+        for (int i = 0; i < fragmentos.length; i++) {
+            int n = i;
+            tareas.add(ForkJoinPool.commonPool().submit(() -> tarea.apply(n)));
+        }
+        List<T> res = new ArrayList<>(fragmentos.length);
+        for (ForkJoinTask<T> t : tareas) {
+            res.add(t.join());
+        }
+        return res;
+    }
+
+    private static List<Contacto> concatenar(List<List<Contacto>> partes) {
+        int total = 0;
+        for (List<Contacto> p : partes) total += p.size();
+        List<Contacto> res = new ArrayList<>(total);
+        for (List<Contacto> p : partes) res.addAll(p);
+        return res;
+    }
+}
@@ -1,93 +1,272 @@
 // Indice.java
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Gestiona un índice para un campo específico de Contacto,
- * usando internamente un BST o un AVL para acelerar búsquedas.
+ * usando internamente un BST, un AVL, una tabla hash o un árbol B+ en
+ * disco para acelerar búsquedas. La estructura elegida es la única copia
+ * de clave → IDs.
  */
 public class Indice {
     // Nombre del campo de Contacto que se indexa (e.g., "nombre", "apodo")
+    // o de la clave derivada (e.g., "dominio_email")
     private final String campo;
-    // Tipo de estructura: "bst" o "avl"
+    // Función que obtiene la clave de indexación a partir de un Contacto
+    private final Function<Contacto, String> extractor;
+    // Tipo de estructura: "bst", "avl", "avlp" (AVL persistente), "hash"
+    // o "bplus" (árbol B+ en el archivo campo-tipo.bpt)
     private final String tipo;
-    // Mapa que asocia cada valor de campo con la lista de IDs de Contactos
-    private final Map<String, List<Integer>> indice;
-    // Estructuras de árbol para mantener el índice en memoria
-    private final BST bst;
-    private final AVLTree avl;
+    // Estructura que asocia cada valor de campo con los IDs de Contactos
+    private EstructuraIndice estructura;
+    // Valor indexado actualmente para cada ID; permite quitar la entrada
+    // antigua cuando el contacto cambia sin recorrer todas las claves.
+    // Los índices "bplus" lo guardan en su propio archivo y éste queda vacío
+    private Map<Integer, String> valorPorId;
     // Referencia al gestor para recuperar objetos Contacto por ID
     private final GestorContactos gestor;
+    // Nombre de los archivos sin extensión: [prefijo del gestor]campo-tipo
+    private final String nombreArchivo;
     // Logger para reportar errores en I/O
     private static final Logger logger = Logger.getLogger(Indice.class.getName());
     // Indica si hubo inserciones o cambios que aún no se han volcado a disco
     private boolean modificado;
+    // Serializa las escrituras a disco para que un volcado antiguo no pise a uno nuevo
+    private final Object cerrojoDisco = new Object();
+    // Contactos que examina el tipo "auto" para decidir la estructura
+    private static final int MUESTRA_AUTO = 10_000;
+    // Proporción de claves distintas a partir de la cual se prefiere "hash"
+    private static final double CASI_UNICAS = 0.9;
+    // Bytes por contacto de un índice en memoria, además de la clave
+    private static final int BYTES_ENTRADA_AUTO = 64;
 
     /**
      * Constructor: inicializa el índice en memoria y borra el archivo previo.
-     * @param campo   nombre del campo a indexar
-     * @param tipo    tipo de árbol ("bst" o "avl")
+     * @param campo   nombre del campo o de la clave derivada a indexar
+     * @param tipo    tipo de estructura ("bst", "avl", "avlp", "hash" o
+     *                "bplus"; "auto" se resuelve antes con elegirTipo)
      * @param gestor  gestor para obtener Contacto por ID
      */
     public Indice(String campo, String tipo, GestorContactos gestor) {
+        this(campo, tipo, gestor, extractorPara(campo));
+    }
+
+    /**
+     * Constructor para índices sobre una clave calculada arbitraria.
+     * @param campo      nombre con el que se identifica el índice (y su archivo)
+     * @param tipo       tipo de estructura ("bst", "avl" o "hash")
+     * @param gestor     gestor para obtener Contacto por ID
+     * @param extractor  función que calcula la clave de cada Contacto
+     */
+    public Indice(String campo, String tipo, GestorContactos gestor,
+                  Function<Contacto, String> extractor) {
+        this(campo, tipo, gestor, extractor, null);
+    }
+
+    // Con 'existente' != null se usa esa estructura y no se borra ningún archivo
+    private Indice(String campo, String tipo, GestorContactos gestor,
+                   Function<Contacto, String> extractor, EstructuraIndice existente) {
         this.campo      = campo;
+        this.extractor  = extractor;
         this.tipo       = tipo.toLowerCase();
         this.gestor     = gestor;
-        this.indice     = new HashMap<>();
+        this.nombreArchivo = gestor.getPrefijoIndices() + campo + "-" + this.tipo;
+        this.valorPorId = new HashMap<>();
         this.modificado = false;
-        // Crear la estructura de árbol correspondiente
-        if (this.tipo.equals("bst")) {
-            bst = new BST();
-            avl = null;
-        } else {
-            avl = new AVLTree();
-            bst = null;
-        }
-        // Borrar fichero de índice existente para empezar limpio
-        File f = new File(campo + "-" + tipo + ".txt");
+        if (existente != null) {
+            this.estructura = existente;
+            return;
+        }
+        this.estructura = nuevaEstructura(this.tipo, nombreArchivo);
+        // Borrar ficheros de índice existentes para empezar limpio
+        File f = new File(nombreArchivo + ".txt");
         if (f.exists()) f.delete();
+        File p = new File(nombreArchivo + ".postings");
+        if (p.exists()) p.delete();
+    }
+
+    /**
+     * Reabre un índice "bplus" desde su archivo sin reconstruirlo: sólo se
+     * lee la cabecera y las páginas se cargan según se consultan.
+     * @throws IOException si el archivo no existe, no es válido o no se
+     *         cerró limpiamente
+     */
+    public static Indice abrir(String campo, GestorContactos gestor) throws IOException {
+        Path ruta = rutaArbol(gestor.getPrefijoIndices(), campo);
+        return new Indice(campo, "bplus", gestor, extractorPara(campo), BPlusTree.abrir(ruta));
+    }
+
+    /** Archivo del índice "bplus" de un campo. */
+    static Path rutaArbol(String prefijo, String campo) {
+        return Path.of(prefijo + campo + "-bplus.bpt");
     }
 
     /**
      * Inserta o actualiza un Contacto en el índice.
      * - Elimina la entrada antigua si el valor cambió.
-     * - Añade el ID al nuevo valor en el mapa y en el árbol.
+     * - Añade el ID al nuevo valor en la estructura.
      */
-    public void insertar(Contacto contacto) {
+    public synchronized void insertar(Contacto contacto) {
+        long t = Metricas.inicio();
+        int id = contacto.getId();
         String valor = obtenerValorCampo(contacto);
-        // Eliminar ID de cualquier lista previa donde aún estuviera
-        for (Iterator<Map.Entry<String, List<Integer>>> it = indice.entrySet().iterator(); it.hasNext();) {
-            Map.Entry<String,List<Integer>> e = it.next();
-            if (e.getValue().remove((Integer) contacto.getId()) && e.getValue().isEmpty()) {
-                it.remove();
-            }
+        String anterior = cambiarValor(id, valor);
+        if (!valor.equals(anterior)) {
+            if (anterior != null) estructura.remove(anterior, id);
+            estructura.insert(valor, id);
+            // Marcar como modificado para que flush() lo vuelque a disco
+            modificado = true;
+        }
+        Metricas.registrar("indice.insertar", t);
+    }
+
+    /** Quita del índice el contacto con el ID dado, si estaba indexado. */
+    public synchronized void eliminar(int id) {
+        String anterior = quitarValor(id);
+        if (anterior != null) {
+            estructura.remove(anterior, id);
+            modificado = true;
+        }
+    }
+
+    // Valor indexado de cada ID: en memoria o, en los índices "bplus", en su archivo
+    private String cambiarValor(int id, String valor) {
+        return estructura instanceof BPlusTree arbol ? arbol.cambiarValor(id, valor) : valorPorId.put(id, valor);
+    }
+
+    private String quitarValor(int id) {
+        return estructura instanceof BPlusTree arbol ? arbol.quitarValor(id) : valorPorId.remove(id);
+    }
+
+    /**
+     * Indica si un índice "bplus" reabierto corresponde exactamente a los
+     * contactos dados: mismo número de IDs y misma huella de los pares
+     * (id, clave), calculada sobre los contactos en paralelo. Detecta
+     * ediciones y altas compensadas con bajas que el recuento no ve.
+     */
+    public boolean coincideCon(Collection<Contacto> contactos) {
+        long esperada = contactos.parallelStream()
+                .mapToLong(c -> BPlusTree.huellaDe(c.getId(), obtenerValorCampo(c)))
+                .sum();  // la suma desborda igual en cualquier orden
+        synchronized (this) {
+            return estructura instanceof BPlusTree arbol
+                    && arbol.cantidadIds() == contactos.size() && arbol.getHuella() == esperada;
         }
-        // Añadir el ID bajo el valor actual
-        indice.computeIfAbsent(valor, k -> new ArrayList<>()).add(contacto.getId());
-        // Insertar en la estructura de árbol elegida
-        if (tipo.equals("bst")) bst.insert(valor, contacto.getId());
-        else                   avl.insert(valor, contacto.getId());
-        // Marcar como modificado para que flush() lo vuelque a disco
-        modificado = true;
+    }
+
+    /** Número de contactos indexados. */
+    public synchronized int cantidadIds() {
+        return estructura instanceof BPlusTree arbol ? arbol.cantidadIds() : valorPorId.size();
     }
 
     /**
-     * Reconstruye completamente el mapa de valor→IDs a partir del árbol.
-     * Útil si se modificó la lista de IDs en bloque.
+     * Reconstruye completamente el índice a partir de los contactos
+     * actuales del gestor. Útil si se modificó la lista en bloque.
      */
     public void reconstruir() {
-        indice.clear();
-        List<Integer> ids = (tipo.equals("bst") ? bst.getAllIds() : avl.getAllIds());
-        // Volver a poblar el mapa usando el recorrido por niveles del árbol
-        for (Integer id : ids) {
-            Contacto c = gestor.getContactoPorId(id);
-            if (c != null) {
-                String v = obtenerValorCampo(c);
-                indice.computeIfAbsent(v, k -> new ArrayList<>()).add(id);
+        construirMasivo(gestor.getContactos());
+    }
+
+    /**
+     * Construye el índice de una vez, sustituyendo su contenido:
+     * 1. calcula en paralelo la clave de cada contacto,
+     * 2. agrupa los IDs por clave en una pasada (tabla hash),
+     * 3. ordena sólo las claves distintas con Arrays.parallelSort
+     *    (los índices hash se saltan este paso),
+     * 4. levanta la estructura de abajo hacia arriba en O(n)
+     *    (árbol de altura mínima, sin inserciones ni rotaciones; el
+     *    árbol B+ se escribe en un archivo nuevo que sustituye al actual).
+     * Agrupar antes de ordenar evita ordenar n pares cuando el campo
+     * tiene pocas claves distintas (p. ej. apellido).
+     */
+    public void construirMasivo(Collection<Contacto> contactos) {
+        long t = Metricas.inicio();
+        Contacto[] arr = contactos.toArray(new Contacto[0]);
+        int n = arr.length;
+        String[] valores = new String[n];
+        IntStream.range(0, n).parallel().forEach(i -> valores[i] = obtenerValorCampo(arr[i]));
+
+        Map<String, Grupo> grupos = new HashMap<>();
+        Map<Integer, String> porId = new HashMap<>(Math.max(16, n * 4 / 3 + 1));
+        for (int i = 0; i < n; i++) {
+            String v = grupos.computeIfAbsent(valores[i], Grupo::new).agregar(arr[i].getId());
+            porId.put(arr[i].getId(), v);
+        }
+        String[] claves = grupos.keySet().toArray(new String[0]);
+        if (!tipo.equals("hash")) Arrays.parallelSort(claves);  // la tabla hash no necesita orden
+        ListaPostings[] ids = new ListaPostings[claves.length];
+        for (int i = 0; i < claves.length; i++) {
+            Grupo g = grupos.get(claves[i]);
+            ids[i] = ListaPostings.desdeArreglo(g.ids, g.n);
+        }
+        if (tipo.equals("bplus")) {
+            construirEnDisco(claves, ids, porId);
+            Metricas.registrar("indice.construir", t, n);
+            return;
+        }
+        EstructuraIndice nueva = switch (tipo) {
+            case "bst"  -> BST.desdeOrdenado(claves, ids, claves.length);
+            case "avl"  -> AVLTree.desdeOrdenado(claves, ids, claves.length);
+            case "avlp" -> AVLPersistente.desdeOrdenado(claves, ids, claves.length);
+            default     -> IndiceHash.desdeOrdenado(claves, ids, claves.length);
+        };
+        // Publicar la nueva estructura de una vez, con el cerrojo del índice
+        synchronized (this) {
+            estructura = nueva;
+            valorPorId = porId;
+            modificado = true;
+        }
+        Metricas.registrar("indice.construir", t, n);
+    }
+
+    /**
+     * Escribe el árbol B+ completo en campo-bplus.bpt.tmp y, con el cerrojo
+     * tomado, cierra el árbol actual y pone el nuevo archivo en su lugar.
+     */
+    private void construirEnDisco(String[] claves, ListaPostings[] ids, Map<Integer, String> porId) {
+        Path destino = Path.of(nombreArchivo + ".bpt");
+        Path tmp = destino.resolveSibling(destino.getFileName() + ".tmp");
+        try {
+            BPlusTree.construir(tmp, claves, ids, claves.length, porId);
+            synchronized (this) {
+                if (estructura instanceof BPlusTree viejo) viejo.close();
+                Files.move(tmp, destino, StandardCopyOption.REPLACE_EXISTING);
+                estructura = BPlusTree.abrir(destino);
+                modificado = false;  // el archivo ya está completo
             }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // IDs acumulados para una clave durante la construcción masiva
+    private static final class Grupo {
+        final String clave;
+        int[] ids = new int[4];
+        int n;
+
+        Grupo(String clave) {
+            this.clave = clave;
+        }
+
+        // Añade el ID y devuelve la clave compartida (una sola instancia por valor)
+        String agregar(int id) {
+            if (n == ids.length) ids = Arrays.copyOf(ids, n * 2);
+            ids[n++] = id;
+            return clave;
         }
     }
 
@@ -97,32 +276,450 @@ public class Indice {
      * @return lista de objetos Contacto que coinciden
      */
     public List<Contacto> buscar(String valor) {
+        long t = Metricas.inicio();
+        List<Contacto> res = buscarStream(valor, Integer.MIN_VALUE).collect(Collectors.toList());
+        Metricas.contar(res.isEmpty() ? "indice.sin_resultado" : "indice.con_resultado");
+        Metricas.registrar("indice.buscar", t);
+        return res;
+    }
+
+    /**
+     * Versión perezosa de buscar: recorre los IDs de la clave en orden
+     * ascendente, a partir del primero mayor que despuesDe, y resuelve cada
+     * Contacto sólo cuando se consume. No copia la lista de IDs, así que el
+     * índice no debe modificarse mientras se consume el stream.
+     */
+    public Stream<Contacto> buscarStream(String valor, int despuesDe) {
+        return streamDe(buscarIds(valor), despuesDe);
+    }
+
+    /**
+     * Como buscarStream, pero sin distinguir mayúsculas: los IDs salen de
+     * buscarIdsSinMayusculas y los contactos se resuelven al consumirlos.
+     */
+    public Stream<Contacto> buscarStreamSinMayusculas(String valor) {
+        return streamDe(buscarIdsSinMayusculas(valor), Integer.MIN_VALUE);
+    }
+
+    // Contactos de una lista de IDs, resueltos a medida que se consumen
+    private Stream<Contacto> streamDe(ListaPostings ids, int despuesDe) {
+        Spliterator.OfInt it = Spliterators.spliterator(ids.iteradorDesde(despuesDe), ids.tamano(),
+                Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL);
+        return StreamSupport.intStream(it, false)
+                .mapToObj(gestor::getContactoPorId)
+                .filter(Objects::nonNull);
+    }
+
+    /**
+     * Entrega los contactos en orden de clave, y por ID dentro de cada
+     * clave, recorriendo la estructura en orden: no hace falta ordenar.
+     * Los índices hash no tienen orden y lanzan UnsupportedOperationException.
+     */
+    public synchronized void recorrerEnOrden(Consumer<Contacto> accion) {
+        if (tipo.equals("hash")) throw new UnsupportedOperationException("Un índice hash no tiene orden: " + campo);
+        estructura.recorrer((clave, ids) -> ids.forEach(id -> {
+            Contacto c = gestor.getContactoPorId(id);
+            if (c != null) accion.accept(c);
+        }));
+    }
+
+    /**
+     * Número de contactos con clave entre desde y hasta (ambas incluidas;
+     * null = sin límite). Un índice "avl" responde en O(log n) con los
+     * tamaños de subárbol; los demás tipos recorren el rango.
+     */
+    public synchronized int contarRango(String desde, String hasta) {
+        if (estructura instanceof AVLTree avl) return avl.countRange(desde, hasta);
+        int[] n = {0};
+        estructura.rango(desde, hasta, (clave, ids) -> n[0] += ids.tamano());
+        return n[0];
+    }
+
+    /**
+     * Número de contactos con clave menor que 'valor', es decir, la
+     * posición (desde 0) del primero que lo tiene. O(log n) en "avl".
+     */
+    public synchronized int posicion(String valor) {
+        if (estructura instanceof AVLTree avl) return avl.rank(valor);
+        int[] n = {0};
+        estructura.rango(null, valor, (clave, ids) -> {
+            if (!clave.equals(valor)) n[0] += ids.tamano();
+        });
+        return n[0];
+    }
+
+    /**
+     * Clave del contacto que ocupa la posición dada (desde 0) en orden de
+     * clave y de ID. O(log n) en "avl"; no disponible en índices hash.
+     * @throws IndexOutOfBoundsException si la posición no existe
+     */
+    public synchronized String claveEnPosicion(int posicion) {
+        if (estructura instanceof AVLTree avl) return avl.select(posicion);
+        List<Contacto> uno = pagina(posicion, 1);
+        if (uno.isEmpty()) throw new IndexOutOfBoundsException("Posición " + posicion);
+        return obtenerValorCampo(uno.get(0));
+    }
+
+    /**
+     * Hasta 'limite' contactos en orden de clave (y de ID dentro de cada
+     * clave) a partir de la posición 'desde'. En "avl" salta directamente
+     * a la posición en O(log n), sin enumerar las páginas anteriores; los
+     * demás tipos ordenados recorren desde el principio.
+     */
+    public synchronized List<Contacto> pagina(int desde, int limite) {
+        if (tipo.equals("hash")) throw new UnsupportedOperationException("Un índice hash no tiene orden: " + campo);
         List<Contacto> res = new ArrayList<>();
-        for (Integer id : indice.getOrDefault(valor.trim(), Collections.emptyList())) {
+        if (estructura instanceof AVLTree avl) {
+            for (int id : avl.idsDesdePosicion(desde, limite)) {
+                Contacto c = gestor.getContactoPorId(id);
+                if (c != null) res.add(c);
+            }
+            return res;
+        }
+        int[] posicion = {0};
+        estructura.recorrer((clave, ids) -> {
+            if (res.size() >= limite || posicion[0] + ids.tamano() <= desde) {
+                posicion[0] += ids.tamano();
+                return;
+            }
+            ids.forEach(id -> {
+                if (posicion[0]++ >= desde && res.size() < limite) {
+                    Contacto c = gestor.getContactoPorId(id);
+                    if (c != null) res.add(c);
+                }
+            });
+        });
+        return res;
+    }
+
+    /**
+     * Contactos cuya clave está entre desde y hasta (ambos incluidos; null
+     * = sin límite), en orden de clave salvo en los índices hash. El árbol
+     * B+ sólo lee las páginas del rango; el resto recorre todas las claves.
+     */
+    public synchronized List<Contacto> buscarRango(String desde, String hasta) {
+        long t = Metricas.inicio();
+        List<Contacto> res = new ArrayList<>();
+        estructura.rango(desde, hasta, (clave, ids) -> ids.forEach(id -> {
             Contacto c = gestor.getContactoPorId(id);
             if (c != null) res.add(c);
-        }
+        }));
+        Metricas.registrar("indice.rango", t);
         return res;
     }
 
+    /**
+     * Devuelve los IDs cuyo campo coincide exactamente con 'valor',
+     * para combinarlos con los de otros índices (AND/OR).
+     * La lista devuelta es de sólo lectura.
+     */
+    public ListaPostings buscarIds(String valor) {
+        ListaPostings ids = estructura.get(valor.trim());
+        return ids == null ? new ListaPostings() : ids;
+    }
+
+    /**
+     * IDs cuyo campo coincide con 'valor' sin distinguir mayúsculas
+     * (equalsIgnoreCase), la misma regla que el filtro sin índice. Todas
+     * las claves que coinciden quedan entre la que toma en cada carácter el
+     * menor código equivalente y la que toma el mayor (ver VariantesMayusculas),
+     * así que en un índice ordenado basta con recorrer ese rango; un índice
+     * hash recorre todas sus claves.
+     */
+    public synchronized ListaPostings buscarIdsSinMayusculas(String valor) {
+        String v = valor.trim();
+        char[] menor = v.toCharArray(), mayor = v.toCharArray();
+        for (int i = 0; i < menor.length; i++) {
+            menor[i] = VariantesMayusculas.MENOR[menor[i]];
+            mayor[i] = VariantesMayusculas.MAYOR[mayor[i]];
+        }
+        ListaPostings[] res = { new ListaPostings() };
+        estructura.rango(new String(menor), new String(mayor), (clave, ids) -> {
+            if (clave.equalsIgnoreCase(v)) res[0] = ListaPostings.union(res[0], ids);
+        });
+        return res[0];
+    }
+
     /**
      * Si hubo cambios (modificado == true), vuelca el índice completo a disco:
-     * - Llama a saveToFileWithNulls de la estructura de árbol.
-     * - Imprime un único mensaje de éxito o error.
-     * - Resetea la bandera 'modificado'.
+     * - Copia en memoria la estructura (saveToFileWithNulls en los árboles)
+     *   y las listas de IDs comprimidas, con el cerrojo del índice tomado.
+     * - Escribe campo-tipo.txt y campo-tipo.postings fuera del cerrojo,
+     *   cada uno en un temporal que luego sustituye al original de forma atómica.
+     * - Resetea la bandera 'modificado' (se restaura si la escritura falla).
+     * Lo invoca normalmente el EscritorIndices en segundo plano.
+     * @return true si no había cambios o se escribieron correctamente
      */
-    public void flush() {
-        if (!modificado) return;
-        String filename = campo + "-" + tipo + ".txt";
+    public boolean flush() {
+        synchronized (cerrojoDisco) {
+            if (tipo.equals("bplus")) return sincronizarArbol();
+            Volcado v = tomarVolcado();
+            if (v == null) return true;
+            long t = Metricas.inicio();
+            String filename = nombreArchivo + ".txt";
+            try {
+                escribirAtomico(Path.of(filename), v.texto().getBytes(StandardCharsets.UTF_8));
+                escribirAtomico(Path.of(nombreArchivo + ".postings"), v.postings());
+                Metricas.registrar("indice.flush", t);
+                return true;
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Error guardando índice en " + filename, e);
+                synchronized (this) {
+                    modificado = true;  // se reintentará en el siguiente volcado
+                }
+                return false;
+            }
+        }
+    }
+
+    // El árbol B+ ya vive en su archivo: basta con escribir sus páginas pendientes
+    private synchronized boolean sincronizarArbol() {
+        if (!modificado || !(estructura instanceof BPlusTree arbol)) return true;
         try {
-            if (tipo.equals("bst")) bst.saveToFileWithNulls(filename);
-            else                   avl.saveToFileWithNulls(filename);
-            System.out.println("indice creado");
-        } catch (Exception e) {
-            logger.log(Level.SEVERE, "Error guardando índice en " + filename, e);
-            System.out.println("no se pudo crear el indice");
+            long t = Metricas.inicio();
+            arbol.sincronizar();
+            modificado = false;
+            Metricas.registrar("indice.flush", t);
+            return true;
+        } catch (IOException | UncheckedIOException e) {
+            logger.log(Level.SEVERE, "Error sincronizando el índice " + nombreArchivo + ".bpt", e);
+            return false;
         }
+    }
+
+    /**
+     * Libera los recursos del índice: cierra el archivo de los índices
+     * "bplus" tras escribir sus páginas pendientes. No hace nada en los demás.
+     */
+    public synchronized void cerrar() {
+        if (!(estructura instanceof BPlusTree arbol)) return;
+        try {
+            arbol.close();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error cerrando el índice " + nombreArchivo + ".bpt", e);
+        }
+    }
+
+    /** Indica si hay cambios en memoria que aún no están en disco. */
+    public synchronized boolean isModificado() {
+        return modificado;
+    }
+
+    // Contenido a escribir, capturado de forma consistente con el cerrojo tomado
+    private record Volcado(String texto, byte[] postings) {}
+
+    // Copia en memoria del índice (sin E/S) o null si no hay cambios
+    private synchronized Volcado tomarVolcado() {
+        if (!modificado) return null;
         modificado = false;
+        return new Volcado(estructura.serializar(), codificarPostings());
+    }
+
+    /**
+     * Escribe los datos en "destino.tmp" y lo mueve sobre el destino, de modo
+     * que un lector nunca ve un archivo a medio escribir.
+     */
+    static void escribirAtomico(Path destino, byte[] datos) throws IOException {
+        Path tmp = destino.resolveSibling(destino.getFileName() + ".tmp");
+        Files.write(tmp, datos);
+        try {
+            Files.move(tmp, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, destino, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Codifica cada clave con su lista de IDs en varint:
+     * [número de claves] y, por clave, [clave UTF][lista de postings].
+     */
+    private byte[] codificarPostings() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(estructura.cantidadNodos());
+            IOException[] error = {null};
+            estructura.recorrer((clave, ids) -> {
+                if (error[0] != null) return;
+                try {
+                    out.writeUTF(clave);
+                    ids.escribir(out);
+                } catch (IOException e) {
+                    error[0] = e;
+                }
+            });
+            if (error[0] != null) throw error[0];
+        } catch (IOException e) {
+            // Un ByteArrayOutputStream no falla; sólo claves UTF demasiado largas
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Lee un archivo campo-tipo.postings escrito por flush() (clave → IDs). */
+    public static Map<String, ListaPostings> leerPostings(String filename) throws IOException {
+        Map<String, ListaPostings> res = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(filename)))) {
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                String clave = in.readUTF();
+                res.put(clave, ListaPostings.leer(in));
+            }
+        }
+        return res;
+    }
+
+    public String getCampo() {
+        return campo;
+    }
+
+    public String getTipo() {
+        return tipo;
+    }
+
+    /** Estructura que respalda el índice (BST, AVL, hash o árbol B+). */
+    public EstructuraIndice getEstructura() {
+        return estructura;
+    }
+
+    /**
+     * Resumen del índice: claves distintas, IDs indexados, memoria
+     * estimada, altura del árbol frente a la altura mínima log2(n)
+     * y rotaciones (sólo AVL).
+     */
+    public String getEstadisticas() {
+        int nodos  = estructura.cantidadNodos();
+        int minima = nodos == 0 ? 0 : 32 - Integer.numberOfLeadingZeros(nodos);
+        String s = "Indice{" + campo + ", tipo=" + tipo +
+                ", claves=" + nodos +
+                ", ids=" + cantidadIds() +
+                ", bytes~" + estructura.bytesEstimados();
+        if (!tipo.equals("hash")) s += ", altura=" + estructura.altura() + ", alturaMinima=" + minima;
+        if (estructura instanceof AVLTree avl) s += ", rotaciones=" + avl.getRotaciones();
+        if (estructura instanceof BPlusTree arbol) {
+            s += ", paginas=" + arbol.getPaginas() + ", lecturasDisco=" + arbol.getLecturas()
+                    + ", escriturasDisco=" + arbol.getEscrituras();
+        }
+        return s + '}';
+    }
+
+    /**
+     * Recorre la estructura una vez y mide cardinalidad, longitud de las
+     * claves (en caracteres), altura frente a log2(claves) y listas de IDs.
+     * En un índice "bplus" lee todas las hojas del archivo; la altura
+     * mínima sólo se calcula para los árboles binarios.
+     */
+    public synchronized EstadisticasIndice calcularEstadisticas() {
+        int claves = estructura.cantidadNodos();
+        int[] longitudes = new int[claves];
+        long[] acumulado = new long[4];  // suma de longitudes, IDs, bytes de postings, longitud por ID
+        int[] i = {0, 0};                // posición, mayor lista
+        estructura.recorrer((clave, ids) -> {
+            if (i[0] < longitudes.length) longitudes[i[0]++] = clave.length();
+            acumulado[0] += clave.length();
+            acumulado[1] += ids.tamano();
+            acumulado[2] += ids.bytesEstimados();
+            acumulado[3] += (long) clave.length() * ids.tamano();
+            i[1] = Math.max(i[1], ids.tamano());
+        });
+        int n = i[0];
+        Arrays.sort(longitudes, 0, n);
+        boolean binario = tipo.equals("bst") || tipo.equals("avl") || tipo.equals("avlp");
+        int minima = !binario || claves == 0 ? 0 : 32 - Integer.numberOfLeadingZeros(claves);
+        long bytes = estructura.bytesEstimados();
+        // La misma estimación que elegirTipo, aquí con todos los contactos como muestra
+        int total = (int) acumulado[1];
+        double distintas = proporcionDistintas(claves, 0, total, total);
+        long bytesEnMemoria = bytesEnMemoria(total, total == 0 ? 0 : (double) acumulado[3] / total);
+        return new EstadisticasIndice(campo, tipo, claves, (int) acumulado[1],
+                n == 0 ? 0 : longitudes[0], n == 0 ? 0 : longitudes[n / 2],
+                n == 0 ? 0 : longitudes[(int) (n * 0.95)], n == 0 ? 0 : longitudes[n - 1],
+                n == 0 ? 0 : (double) acumulado[0] / n,
+                tipo.equals("hash") ? 0 : estructura.altura(), minima,
+                i[1], acumulado[2], bytes, tipoPara(distintas, bytesEnMemoria));
+    }
+
+    /**
+     * Tipo que usaría el índice "auto" para el campo, decidido con una
+     * muestra de hasta MUESTRA_AUTO contactos repartida por toda la lista
+     * (ver proporcionDistintas para la cardinalidad):
+     * - "bplus" si el índice estimado no cabe holgadamente en el heap;
+     * - "hash" si las claves son casi únicas (email, teléfono...): se
+     *   consultan por igualdad y la tabla lo resuelve en O(1);
+     * - "avl" en los demás casos: conserva el orden para listados y
+     *   rangos y no se degrada con datos ya ordenados, como sí el BST.
+     */
+    static String elegirTipo(String campo, List<Contacto> contactos) {
+        Function<Contacto, String> extractor = extractorPara(campo);
+        int n = contactos.size();
+        if (n == 0) return "avl";
+        int paso = Math.max(1, n / MUESTRA_AUTO);
+        Map<String, Integer> veces = new HashMap<>();
+        long longitud = 0;
+        int muestra = 0;
+        for (int k = 0; k < n; k += paso, muestra++) {
+            String v = extractor.apply(contactos.get(k));
+            veces.merge(v, 1, Integer::sum);
+            longitud += v.length();
+        }
+        int unicas = 0;
+        for (int f : veces.values()) if (f == 1) unicas++;
+        double proporcion = proporcionDistintas(veces.size(), unicas, muestra, n);
+        return tipoPara(proporcion, bytesEnMemoria(n, (double) longitud / muestra));
+    }
+
+    /**
+     * Proporción estimada de claves distintas entre los 'poblacion'
+     * contactos, a partir de una muestra de 'muestra' con 'distintas'
+     * valores, 'unicas' de ellos vistos una sola vez. La proporción de la
+     * muestra sobrestima la cardinalidad: con 1M contactos y 10 por clave,
+     * una muestra del 1% apenas repite valores. Se usa el estimador Duj1 de
+     * Haas et al., D = d / (1 - (1 - q) · f1 / n) con q = n / N: si nada se
+     * repite da N (claves únicas) y con la muestra completa da d exacto.
+     */
+    static double proporcionDistintas(int distintas, int unicas, int muestra, int poblacion) {
+        if (muestra == 0 || poblacion == 0) return 0;
+        double q = (double) muestra / poblacion;
+        double estimadas = distintas / (1 - (1 - q) * unicas / muestra);
+        return Math.min(1, estimadas / poblacion);
+    }
+
+    // Nodo o entrada, clave en UTF-16 y un ID, por contacto y en el peor caso
+    private static long bytesEnMemoria(long ids, double longitudMedia) {
+        return (long) (ids * (BYTES_ENTRADA_AUTO + 2 * longitudMedia));
+    }
+
+    // Regla común al tipo "auto" y a la recomendación de las estadísticas
+    private static String tipoPara(double proporcionDistintas, long bytesEstimados) {
+        if (bytesEstimados > Runtime.getRuntime().maxMemory() / 4) return "bplus";
+        return proporcionDistintas >= CASI_UNICAS ? "hash" : "avl";
+    }
+
+    /**
+     * Vista de sólo lectura de la estructura en su estado actual, en O(1),
+     * si es de tipo "avlp"; null para los demás tipos.
+     */
+    public synchronized EstructuraIndice instantanea() {
+        return estructura instanceof AVLPersistente p ? p.instantanea() : null;
+    }
+
+    // Crea la estructura vacía que corresponde al tipo de índice
+    private static EstructuraIndice nuevaEstructura(String tipo, String nombreArchivo) {
+        return switch (comprobarTipo(tipo)) {
+            case "bst"   -> new BST();
+            case "avl"   -> new AVLTree();
+            case "avlp"  -> new AVLPersistente();
+            case "bplus" -> BPlusTree.crear(Path.of(nombreArchivo + ".bpt"));
+            default      -> new IndiceHash();
+        };
+    }
+
+    /** Devuelve el tipo en minúsculas o lanza IllegalArgumentException si no existe. */
+    static String comprobarTipo(String tipo) {
+        return switch (tipo.toLowerCase()) {
+            case "bst", "avl", "avlp", "hash", "bplus" -> tipo.toLowerCase();
+            default -> throw new IllegalArgumentException("Tipo de índice no soportado: " + tipo);
+        };
     }
 
     /**
@@ -131,16 +728,58 @@ public class Indice {
      * @return valor de la propiedad indicada
      */
     private String obtenerValorCampo(Contacto c) {
+        return extractor.apply(c);
+    }
+
+    /**
+     * Resuelve la función de extracción para un campo almacenado
+     * o una clave derivada (ver {@link ClaveDerivada}).
+     */
+    static Function<Contacto, String> extractorPara(String campo) {
+        ClaveDerivada derivada = ClaveDerivada.desdeNombre(campo);
+        if (derivada != null) return derivada::calcular;
         return switch(campo) {
-            case "id"               -> String.valueOf(c.getId());
-            case "nombre"           -> c.getNombre();
-            case "apellido"         -> c.getApellido();
-            case "apodo"            -> c.getApodo();
-            case "telefono"         -> c.getTelefono();
-            case "email"            -> c.getEmail();
-            case "direccion"        -> c.getDireccion();
-            case "fecha_nacimiento" -> c.getFechaNacimiento();
+            case "id"               -> c -> String.valueOf(c.getId());
+            case "nombre"           -> Contacto::getNombre;
+            case "apellido"         -> Contacto::getApellido;
+            case "apodo"            -> Contacto::getApodo;
+            case "telefono"         -> Contacto::getTelefono;
+            case "email"            -> Contacto::getEmail;
+            case "direccion"        -> Contacto::getDireccion;
+            case "fecha_nacimiento" -> Contacto::getFechaNacimiento;
             default -> throw new IllegalArgumentException("Campo no soportado: " + campo);
         };
     }
+
+    /**
+     * Para cada carácter, el menor y el mayor código que equalsIgnoreCase
+     * considera iguales a él. Dos caracteres coinciden si su
+     * toLowerCase(toUpperCase(c)) es el mismo, así que las clases se
+     * calculan una vez sobre los 65536 valores de char; incluyen casos como
+     * el signo Kelvin (U+212A) frente a 'k', que no salen de toUpperCase y
+     * toLowerCase del propio carácter.
+     */
+    private static final class VariantesMayusculas {
+        static final char[] MENOR = new char[Character.MAX_VALUE + 1];
+        static final char[] MAYOR = new char[Character.MAX_VALUE + 1];
+
+        static {
+            char[] menorClase = new char[Character.MAX_VALUE + 1];
+            char[] mayorClase = new char[Character.MAX_VALUE + 1];
+            Arrays.fill(menorClase, Character.MAX_VALUE);
+            for (int c = 0; c <= Character.MAX_VALUE; c++) {
+                int clase = clase((char) c);
+                if (c < menorClase[clase]) menorClase[clase] = (char) c;
+                if (c > mayorClase[clase]) mayorClase[clase] = (char) c;
+            }
+            for (int c = 0; c <= Character.MAX_VALUE; c++) {
+                MENOR[c] = menorClase[clase((char) c)];
+                MAYOR[c] = mayorClase[clase((char) c)];
+            }
+        }
+
+        private static char clase(char c) {
+            return Character.toLowerCase(Character.toUpperCase(c));
+        }
+    }
 }
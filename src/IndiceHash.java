@@ -0,0 +1,104 @@
+// IndiceHash.java
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Índice por tabla hash: búsqueda por igualdad en O(1) sin mantener orden.
+ * Adecuado para campos que sólo se consultan por valor exacto, como
+ * email o teléfono.
+ */
+public class IndiceHash implements EstructuraIndice {
+
+    // Cabecera aproximada de objeto y de entrada de HashMap (JVM de 64 bits)
+    private static final int BYTES_ENTRADA = 48;
+
+    // Clave → IDs asociados
+    private final Map<String, ListaPostings> tabla;
+
+    public IndiceHash() {
+        this.tabla = new HashMap<>();
+    }
+
+    /** Crea la tabla de una vez a partir de claves sin repetir y sus IDs. */
+    public static IndiceHash desdeOrdenado(String[] claves, ListaPostings[] ids, int n) {
+        IndiceHash h = new IndiceHash();
+        for (int i = 0; i < n; i++) {
+            h.tabla.put(claves[i], ids[i]);
+        }
+        return h;
+    }
+
+    @Override
+    public void insert(String key, int id) {
+        tabla.computeIfAbsent(key, k -> new ListaPostings()).agregar(id);
+    }
+
+    @Override
+    public void remove(String key, int id) {
+        ListaPostings ids = tabla.get(key);
+        if (ids != null && ids.eliminar(id) && ids.estaVacia()) {
+            tabla.remove(key);
+        }
+    }
+
+    @Override
+    public ListaPostings get(String key) {
+        return tabla.get(key);
+    }
+
+    @Override
+    public ListaPostings getAllIds() {
+        int total = 0;
+        for (ListaPostings ids : tabla.values()) total += ids.tamano();
+        int[] buffer = new int[total];
+        int n = 0;
+        for (ListaPostings ids : tabla.values()) {
+            int[] parte = ids.toArray();
+            System.arraycopy(parte, 0, buffer, n, parte.length);
+            n += parte.length;
+        }
+        return ListaPostings.desdeArreglo(buffer, n);
+    }
+
+    @Override
+    public void recorrer(BiConsumer<String, ListaPostings> accion) {
+        tabla.forEach(accion);
+    }
+
+    @Override
+    public int cantidadNodos() {
+        return tabla.size();
+    }
+
+    @Override
+    public int altura() {
+        return 0;
+    }
+
+    @Override
+    public long bytesEstimados() {
+        long total = 0;
+        for (Map.Entry<String, ListaPostings> e : tabla.entrySet()) {
+            total += BYTES_ENTRADA + 2L * e.getKey().length() + e.getValue().bytesEstimados();
+        }
+        return total;
+    }
+
+    /** Una línea "clave=id1 id2 ..." por clave. */
+    @Override
+    public String serializar() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, ListaPostings> e : tabla.entrySet()) {
+            sb.append(e.getKey()).append('=');
+            boolean primero = true;
+            for (int id : e.getValue().toArray()) {
+                if (!primero) sb.append(' ');
+                sb.append(id);
+                primero = false;
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,390 @@
+// IngestaDirectorio.java
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Importa automáticamente los CSV que aparecen o crecen en un directorio,
+ * vigilándolo con un WatchService. De cada archivo se recuerda hasta qué
+ * byte se ha importado, así que a un archivo al que se añaden filas sólo
+ * se le leen las nuevas (si se trunca, se vuelve a leer desde el
+ * principio y los duplicados se descartan). Las posiciones se guardan en
+ * el archivo ".ingesta" del directorio para continuar tras reiniciar.
+ *
+ * Un hilo propio lee y valida en paralelo los archivos cambiados y deja
+ * los lotes en una cola acotada; aplicarPendientes() los incorpora al
+ * gestor con agregarContactos, que descarta duplicados y actualiza los
+ * índices una vez por lote. Como GestorContactos no es seguro entre
+ * hilos, aplicarPendientes() debe llamarse desde el hilo que usa el gestor.
+ *
+ * Uso: java IngestaDirectorio directorio
+ */
+public class IngestaDirectorio implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(IngestaDirectorio.class.getName());
+    private static final String ARCHIVO_ESTADO = ".ingesta";
+    // Bytes leídos de cada archivo por pasada como máximo; una línea más
+    // larga se rechaza entera
+    private static final int TAMANO_LECTURA = 8 << 20;
+    // Bytes del inicio de una línea demasiado larga que se copian al informe de rechazos
+    private static final int MUESTRA_RECHAZO = 200;
+    // Espera tras el último evento antes de leer, para agrupar escrituras seguidas
+    private static final long ESPERA_MS = 200;
+    // Lotes leídos a la espera de aplicarse; si se llena, el lector espera
+    private static final int LOTES_EN_COLA = 4;
+
+    // Posiciones de un archivo: hasta dónde se leyó y hasta dónde se aplicó
+    private static final class Seguimiento {
+        long leido;
+        int lineasLeidas;
+        long aplicado;
+        int lineasAplicadas;
+    }
+
+    // Filas nuevas de un archivo y posición del archivo tras ellas
+    private record Lectura(Path archivo, List<ValidadorContactos.FilaValida> filas,
+                           List<ValidadorContactos.Rechazo> rechazos, long hasta, int lineasHasta) {}
+
+    private final GestorContactos gestor;
+    private final Path directorio;
+    private final Map<Path, Seguimiento> seguimientos = new HashMap<>();
+    private final BlockingQueue<List<Lectura>> cola = new ArrayBlockingQueue<>(LOTES_EN_COLA);
+    private WatchService vigilante;
+    private Thread hilo;
+    private long importados;
+
+    public IngestaDirectorio(GestorContactos gestor, String directorio) throws IOException {
+        this.gestor = gestor;
+        this.directorio = Path.of(directorio).toAbsolutePath();
+        if (!Files.isDirectory(this.directorio)) throw new IOException("No es un directorio: " + directorio);
+        cargarEstado();
+    }
+
+    /**
+     * Empieza a vigilar el directorio en un hilo propio (daemon). Los CSV
+     * que ya existen se leen primero, desde la posición guardada.
+     */
+    public synchronized void iniciar() throws IOException {
+        if (hilo != null) return;
+        vigilante = FileSystems.getDefault().newWatchService();
+        directorio.register(vigilante, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        hilo = new Thread(this::vigilar, "ingesta-" + directorio.getFileName());
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    private void vigilar() {
+        try {
+            Set<Path> cambiados = new HashSet<>(listarCSV());
+            while (!Thread.currentThread().isInterrupted()) {
+                leerCambiados(cambiados);
+                cambiados.clear();
+                WatchKey clave = vigilante.take();
+                do {
+                    recoger(clave, cambiados);
+                } while ((clave = vigilante.poll(ESPERA_MS, TimeUnit.MILLISECONDS)) != null);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // detener()
+        } catch (IOException | UncheckedIOException e) {
+            logger.log(Level.SEVERE, "Error vigilando " + directorio, e);
+        }
+    }
+
+    // Añade los CSV de los eventos de la clave; si se perdieron eventos, todos
+    private void recoger(WatchKey clave, Set<Path> cambiados) throws IOException {
+        for (WatchEvent<?> evento : clave.pollEvents()) {
+            if (evento.kind() == StandardWatchEventKinds.OVERFLOW) {
+                cambiados.addAll(listarCSV());
+            } else if (evento.context() instanceof Path nombre && esCSV(nombre)) {
+                cambiados.add(directorio.resolve(nombre));
+            }
+        }
+        clave.reset();
+    }
+
+    /**
+     * Lee en paralelo lo nuevo de cada archivo y encola el lote; repite
+     * mientras algún archivo tenga más de TAMANO_LECTURA bytes pendientes.
+     */
+    private void leerCambiados(Set<Path> cambiados) throws InterruptedException {
+        List<Path> pendientes = new ArrayList<>(cambiados);
+        while (!pendientes.isEmpty()) {
+            List<ForkJoinTask<Lectura>> tareas = new ArrayList<>();
+            for (Path p : pendientes) {
+                Seguimiento s = seguimiento(p);
+                tareas.add(ForkJoinPool.commonPool().submit(() -> leerNuevo(p, s)));
+            }
+            List<Lectura> lote = new ArrayList<>();
+            List<Path> siguen = new ArrayList<>();
+            for (ForkJoinTask<Lectura> tarea : tareas) {
+                Lectura l;
+                try {
+                    l = tarea.join();
+                } catch (UncheckedIOException e) {
+                    logger.log(Level.WARNING, "No se pudo leer un CSV de " + directorio, e);
+                    continue;
+                }
+                if (l == null) continue;
+                lote.add(l);
+                if (tamano(l.archivo()) > l.hasta()) siguen.add(l.archivo());
+            }
+            if (!lote.isEmpty()) cola.put(lote);
+            pendientes = siguen;
+        }
+    }
+
+    /**
+     * Lee las líneas completas añadidas desde la última lectura (como
+     * mucho TAMANO_LECTURA bytes) y las valida; null si no hay nada nuevo.
+     * Una línea que no cabe en TAMANO_LECTURA se rechaza y la lectura salta
+     * al salto de línea que la termina, para no bloquear el archivo.
+     */
+    private Lectura leerNuevo(Path archivo, Seguimiento s) {
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            long tamano = canal.size();
+            long desde;
+            int lineas;
+            synchronized (s) {
+                if (tamano < s.leido) {  // truncado o reescrito: se lee de nuevo entero
+                    s.leido = 0;
+                    s.lineasLeidas = 0;
+                }
+                desde = s.leido;
+                lineas = s.lineasLeidas;
+            }
+            if (tamano == desde) return null;
+            ByteBuffer buf = ByteBuffer.allocate((int) Math.min(TAMANO_LECTURA, tamano - desde));
+            while (buf.hasRemaining() && canal.read(buf, desde + buf.position()) > 0) { }
+            int fin = buf.position() - 1;
+            byte[] bytes = buf.array();
+            while (fin >= 0 && bytes[fin] != '\n') fin--;
+            if (fin < 0) {
+                if (buf.position() < TAMANO_LECTURA) return null;  // sólo hay una línea a medio escribir
+                return saltarLineaLarga(canal, archivo, s, desde, lineas, bytes);
+            }
+            String bloque = new String(bytes, 0, fin + 1, StandardCharsets.UTF_8);
+            List<String> nuevas = new ArrayList<>(Arrays.asList(bloque.split("\r?\n")));
+            int primera = lineas + 1;
+            int leidas = nuevas.size();
+            if (desde == 0 && !nuevas.isEmpty() && nuevas.get(0).toLowerCase().contains("id,nombre,apellido")) {
+                nuevas.remove(0);  // cabecera
+                primera++;
+            }
+            ValidadorContactos.ValidacionLote res = ValidadorContactos.validarLote(nuevas, primera, false);
+            long hasta = desde + fin + 1;
+            synchronized (s) {
+                s.leido = hasta;
+                s.lineasLeidas = lineas + leidas;
+            }
+            return new Lectura(archivo, res.validas(), res.rechazos(), hasta, lineas + leidas);
+        } catch (NoSuchFileException e) {
+            return null;  // se borró entre el evento y la lectura
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Rechaza la línea demasiado larga que empieza en 'desde' y avanza la
+     * posición hasta después de su salto de línea; null si la línea aún no
+     * está terminada.
+     */
+    private Lectura saltarLineaLarga(FileChannel canal, Path archivo, Seguimiento s, long desde, int lineas,
+                                     byte[] inicio) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(64 << 10);
+        long pos = desde + inicio.length;
+        long hasta = -1;
+        while (hasta < 0) {
+            buf.clear();
+            int leidos = canal.read(buf, pos);
+            if (leidos <= 0) return null;
+            for (int i = 0; i < leidos; i++) {
+                if (buf.get(i) == '\n') {
+                    hasta = pos + i + 1;
+                    break;
+                }
+            }
+            pos += leidos;
+        }
+        String muestra = new String(inicio, 0, MUESTRA_RECHAZO, StandardCharsets.UTF_8) + "...";
+        ValidadorContactos.Rechazo rechazo = new ValidadorContactos.Rechazo(lineas + 1, muestra,
+                "línea demasiado larga (" + (hasta - desde) + " bytes)");
+        synchronized (s) {
+            s.leido = hasta;
+            s.lineasLeidas = lineas + 1;
+        }
+        return new Lectura(archivo, List.of(), List.of(rechazo), hasta, lineas + 1);
+    }
+
+    /**
+     * Incorpora al gestor todos los lotes leídos hasta ahora, como un único
+     * lote de agregarContactos (duplicados descartados, índices
+     * actualizados una vez), y guarda las nuevas posiciones.
+     * @return número de contactos añadidos
+     */
+    public synchronized int aplicarPendientes() {
+        List<List<Lectura>> lotes = new ArrayList<>();
+        cola.drainTo(lotes);
+        if (lotes.isEmpty()) return 0;
+        long t = Metricas.inicio();
+        List<Contacto> nuevos = new ArrayList<>();
+        List<Lectura> origen = new ArrayList<>();
+        List<ValidadorContactos.FilaValida> filas = new ArrayList<>();
+        // Rechazos de este lote por archivo; el informe de cada archivo sólo recoge los últimos
+        Map<Path, List<ValidadorContactos.Rechazo>> rechazos = new HashMap<>();
+        for (List<Lectura> lote : lotes) {
+            for (Lectura l : lote) {
+                for (ValidadorContactos.FilaValida fila : l.filas()) {
+                    String[] v = fila.campos();
+                    nuevos.add(new Contacto(v[1].trim(), v[2].trim(), v[3].trim(),
+                            v[4].trim(), v[5].trim(), v[6].trim(), v[7].trim()));
+                    origen.add(l);
+                    filas.add(fila);
+                }
+                if (!l.rechazos().isEmpty()) {
+                    rechazos.computeIfAbsent(l.archivo(), p -> new ArrayList<>()).addAll(l.rechazos());
+                }
+            }
+        }
+        int agregados = 0;
+        if (!nuevos.isEmpty()) {
+            ResultadoLote res = gestor.agregarContactos(nuevos, false);
+            agregados = res.getAplicados();
+            for (ResultadoLote.Item item : res.getItems()) {
+                if (item.estado() != ResultadoLote.Estado.RECHAZADO) continue;
+                Lectura l = origen.get(item.posicion());
+                ValidadorContactos.FilaValida fila = filas.get(item.posicion());
+                rechazos.computeIfAbsent(l.archivo(), p -> new ArrayList<>()).add(new ValidadorContactos.Rechazo(
+                        fila.linea(), String.join(",", fila.campos()), item.motivo()));
+            }
+        }
+        // Las posiciones avanzan sólo cuando sus filas ya están en el gestor
+        for (List<Lectura> lote : lotes) {
+            for (Lectura l : lote) {
+                Seguimiento s = seguimiento(l.archivo());
+                s.aplicado = l.hasta();
+                s.lineasAplicadas = l.lineasHasta();
+            }
+        }
+        guardarEstado();
+        rechazos.forEach((p, lista) -> GestorContactos.reportarRechazos(p.toString(), lista));
+        importados += agregados;
+        Metricas.registrar("ingesta.lote", t, nuevos.size());
+        return agregados;
+    }
+
+    /** Deja de vigilar el directorio; lo ya leído sigue pendiente de aplicar. */
+    public synchronized void detener() {
+        if (hilo == null) return;
+        hilo.interrupt();
+        try {
+            vigilante.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Error cerrando el WatchService", e);
+        }
+        hilo = null;
+    }
+
+    @Override
+    public void close() {
+        detener();
+    }
+
+    public Path getDirectorio() {
+        return directorio;
+    }
+
+    /** Contactos añadidos al gestor desde que se creó la ingesta. */
+    public synchronized long getImportados() {
+        return importados;
+    }
+
+    /** Lotes leídos que esperan a aplicarPendientes(). */
+    public int getLotesPendientes() {
+        return cola.size();
+    }
+
+    private Seguimiento seguimiento(Path archivo) {
+        synchronized (seguimientos) {
+            return seguimientos.computeIfAbsent(archivo.getFileName(), k -> new Seguimiento());
+        }
+    }
+
+    private List<Path> listarCSV() throws IOException {
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(directorio, p -> esCSV(p.getFileName()))) {
+            List<Path> res = new ArrayList<>();
+            ds.forEach(res::add);
+            return res;
+        }
+    }
+
+    private static boolean esCSV(Path nombre) {
+        return nombre.toString().toLowerCase().endsWith(".csv");
+    }
+
+    private static long tamano(Path archivo) {
+        try {
+            return Files.size(archivo);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    // Estado: una línea "bytesAplicados|lineasAplicadas|nombre" por archivo
+    private void cargarEstado() throws IOException {
+        Path ruta = directorio.resolve(ARCHIVO_ESTADO);
+        if (!Files.exists(ruta)) return;
+        for (String linea : Files.readAllLines(ruta, StandardCharsets.UTF_8)) {
+            String[] p = linea.split("\\|", 3);
+            if (p.length < 3) continue;
+            Seguimiento s = seguimiento(Path.of(p[2]));
+            s.leido = s.aplicado = Long.parseLong(p[0]);
+            s.lineasLeidas = s.lineasAplicadas = Integer.parseInt(p[1]);
+        }
+    }
+
+    private void guardarEstado() {
+        StringBuilder sb = new StringBuilder();
+        synchronized (seguimientos) {
+            for (Map.Entry<Path, Seguimiento> e : seguimientos.entrySet()) {
+                Seguimiento s = e.getValue();
+                sb.append(s.aplicado).append('|').append(s.lineasAplicadas).append('|').append(e.getKey()).append('\n');
+            }
+        }
+        try {
+            Indice.escribirAtomico(directorio.resolve(ARCHIVO_ESTADO), sb.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "No se pudo guardar el estado de la ingesta en " + directorio, e);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Uso: java IngestaDirectorio directorio");
+            return;
+        }
+        GestorContactos gestor = new GestorContactos();
+        IngestaDirectorio ingesta = new IngestaDirectorio(gestor, args[0]);
+        ingesta.iniciar();
+        System.out.println("Vigilando " + ingesta.getDirectorio());
+        while (true) {
+            Thread.sleep(1_000);
+            int n = ingesta.aplicarPendientes();
+            if (n > 0) {
+                System.out.println(n + " contactos importados (total " + ingesta.getImportados()
+                        + ", en memoria " + gestor.getCantidadContactos() + ")");
+            }
+        }
+    }
+}
@@ -0,0 +1,211 @@
+// Instantanea.java
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Vista inmutable de los contactos de un GestorContactos tal como estaban
+ * al confirmar una versión. El gestor publica una nueva tras cada cambio y
+ * obtenerla cuesta O(1), así que búsquedas, listados y exportaciones
+ * pueden ejecutarse sobre ella (incluso desde otro hilo) sin ver estados
+ * a medio actualizar ni bloquear a quien modifica.
+ * Usa los índices de tipo "avlp" (AVL persistente) congelados en la misma
+ * versión; las demás búsquedas recorren la tabla.
+ */
+public final class Instantanea {
+
+    private final long version;
+    // Última secuencia del DiarioCambios incluida en esta versión (0 sin diario)
+    private final long secuencia;
+    private final TablaContactos tabla;
+    // Vistas de sólo lectura de los índices persistentes, por campo
+    private final Map<String, EstructuraIndice> indices;
+
+    Instantanea(long version, long secuencia, TablaContactos tabla, Map<String, EstructuraIndice> indices) {
+        this.version   = version;
+        this.secuencia = secuencia;
+        this.tabla     = tabla;
+        this.indices   = indices;
+    }
+
+    /** Versión del gestor a la que corresponde esta vista. */
+    public long getVersion() {
+        return version;
+    }
+
+    /** Secuencia del diario de cambios hasta la que llega esta versión. */
+    public long getSecuencia() {
+        return secuencia;
+    }
+
+    public int getCantidadContactos() {
+        return tabla.tamano();
+    }
+
+    public Contacto getContactoPorId(int id) {
+        return tabla.get(id);
+    }
+
+    /** Contactos en orden de ID. */
+    public List<Contacto> getContactos() {
+        return Collections.unmodifiableList(tabla.aLista());
+    }
+
+    TablaContactos getTabla() {
+        return tabla;
+    }
+
+    /** Misma semántica que GestorContactos.buscarContactos, sobre esta versión. */
+    public List<Contacto> buscarContactos(String criterio, String valor) {
+        return buscarStream(criterio, valor, Integer.MIN_VALUE).collect(Collectors.toList());
+    }
+
+    /**
+     * Búsqueda perezosa en orden de ID. Al ser inmutable la vista, el
+     * stream puede consumirse a cualquier ritmo y desde cualquier hilo.
+     */
+    public Stream<Contacto> buscarStream(String criterio, String valor) {
+        return buscarStream(criterio, valor, Integer.MIN_VALUE);
+    }
+
+    /**
+     * Página de como máximo 'limite' resultados en orden de ID. El cursor
+     * recuerda el último ID devuelto, así que la siguiente página se pide
+     * a la misma o a una instantánea posterior y continúa donde se quedó.
+     * @param cursor  null para la primera página, o el de la anterior
+     */
+    public PaginaResultados buscarPagina(String criterio, String valor, String cursor, int limite) {
+        return PaginaResultados.de(buscarStream(criterio, valor, PaginaResultados.despuesDe(cursor)), limite);
+    }
+
+    // Resultados con ID mayor que despuesDe, por índice persistente o recorriendo la tabla
+    private Stream<Contacto> buscarStream(String criterio, String valor, int despuesDe) {
+        ClaveDerivada derivada = ClaveDerivada.desdeNombre(criterio);
+        if (derivada != null) {
+            String buscado = derivada.normalizarValor(valor);
+            EstructuraIndice indice = indices.get(derivada.getNombre());
+            if (indice != null) {
+                ListaPostings ids = indice.get(buscado);
+                if (ids == null) return Stream.empty();
+                return StreamSupport.intStream(Spliterators.spliterator(ids.iteradorDesde(despuesDe), ids.tamano(),
+                                Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL), false)
+                        .mapToObj(tabla::get);
+            }
+            return tabla.stream(despuesDe)
+                    .filter(c -> derivada.calcular(c).equals(buscado));
+        }
+        return tabla.stream(despuesDe)
+                .filter(GestorContactos.filtroCampo(criterio, valor));
+    }
+
+    /** Contactos ordenados por nombre, apellido, fecha_nacimiento o ID. */
+    public List<Contacto> obtenerContactosOrdenados(String campo) {
+        List<Contacto> lista = tabla.aLista();
+        if (!campo.equals("id")) lista.sort(GestorContactos.comparadorPara(campo));  // ya viene por ID
+        return lista;
+    }
+
+    /** Escribe esta versión en un CSV con el formato de exportación del gestor. */
+    public void exportarContactos(String rutaArchivo) throws IOException {
+        try (PrintWriter pw = new PrintWriter(new FileWriter(rutaArchivo))) {
+            pw.println(GestorContactos.CABECERA_CSV);
+            tabla.forEach(c -> pw.println(GestorContactos.lineaCSV(c)));
+            if (pw.checkError()) throw new IOException("Error escribiendo " + rutaArchivo);
+        }
+    }
+
+    /**
+     * Escribe esta versión repartida en varios CSV (cada uno con cabecera),
+     * todos a la vez en el pool fork-join común:
+     * - por rango, cada archivo recibe un tramo consecutivo de IDs con
+     *   aproximadamente el mismo número de contactos;
+     * - por hash, el mismo reparto por ID que GestorFragmentado.
+     * @param rutaBase  "dir/contactos.csv" produce dir/contactos-0.csv, -1, ...
+     * @return rutas de los archivos escritos, en orden de partición
+     */
+    public List<Path> exportarParticionado(String rutaBase, int particiones, boolean porRango) throws IOException {
+        if (particiones < 1) throw new IllegalArgumentException("Se necesita al menos una partición");
+        Contacto[] orden = tabla.aLista().toArray(new Contacto[0]);  // por ID
+        int n = orden.length;
+        int[][] cubetas = porRango ? null : repartirPorHash(orden, particiones);
+        List<ForkJoinTask<Path>> tareas = new ArrayList<>();
+        for (int k = 0; k < particiones; k++) {
+            int p = k;
+            Path destino = Path.of(rutaParticion(rutaBase, k));
+            tareas.add(ForkJoinPool.commonPool().submit(() -> {
+                try (PrintWriter pw = new PrintWriter(Files.newBufferedWriter(destino))) {
+                    pw.println(GestorContactos.CABECERA_CSV);
+                    if (porRango) {
+                        int hasta = (int) ((long) (p + 1) * n / particiones);
+                        for (int i = (int) ((long) p * n / particiones); i < hasta; i++) {
+                            pw.println(GestorContactos.lineaCSV(orden[i]));
+                        }
+                    } else {
+                        for (int i : cubetas[p]) pw.println(GestorContactos.lineaCSV(orden[i]));
+                    }
+                    if (pw.checkError()) throw new UncheckedIOException(new IOException("Error escribiendo " + destino));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return destino;
+            }));
+        }
+        List<Path> escritos = new ArrayList<>();
+        try {
+            for (ForkJoinTask<Path> t : tareas) escritos.add(t.join());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return escritos;
+    }
+
+    /**
+     * Posiciones de 'orden' que van a cada partición por hash, en orden de
+     * ID: una sola pasada calcula particionDe de cada contacto, en lugar de
+     * que cada tarea recorra todos los contactos para quedarse con los suyos.
+     */
+    private static int[][] repartirPorHash(Contacto[] orden, int particiones) {
+        int[] particion = new int[orden.length];
+        int[] cuenta = new int[particiones];
+        for (int i = 0; i < orden.length; i++) {
+            particion[i] = GestorFragmentado.particionDe(orden[i].getId(), particiones);
+            cuenta[particion[i]]++;
+        }
+        int[][] cubetas = new int[particiones][];
+        for (int k = 0; k < particiones; k++) cubetas[k] = new int[cuenta[k]];
+        int[] llenas = new int[particiones];
+        for (int i = 0; i < orden.length; i++) {
+            int k = particion[i];
+            cubetas[k][llenas[k]++] = i;
+        }
+        return cubetas;
+    }
+
+    // "base.csv" → "base-k.csv"; sin extensión .csv se añade "-k.csv"
+    static String rutaParticion(String rutaBase, int k) {
+        String sinExt = rutaBase.toLowerCase().endsWith(".csv") ? rutaBase.substring(0, rutaBase.length() - 4) : rutaBase;
+        return sinExt + "-" + k + ".csv";
+    }
+
+    /**
+     * Escribe esta versión en el orden de un índice "avlp" congelado con
+     * ella, recorriéndolo en orden (sin ordenar); por ID dentro de cada clave.
+     * @return false si no hay índice persistente para el campo
+     */
+    public boolean exportarPorIndice(String rutaArchivo, String campo) throws IOException {
+        EstructuraIndice indice = indices.get(campo);
+        if (indice == null) return false;
+        try (PrintWriter pw = new PrintWriter(Files.newBufferedWriter(Path.of(rutaArchivo)))) {
+            pw.println(GestorContactos.CABECERA_CSV);
+            indice.recorrer((clave, ids) -> ids.forEach(id -> pw.println(GestorContactos.lineaCSV(tabla.get(id)))));
+            if (pw.checkError()) throw new IOException("Error escribiendo " + rutaArchivo);
+        }
+        return true;
+    }
+}
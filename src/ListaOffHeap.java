@@ -0,0 +1,110 @@
+// ListaOffHeap.java
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Lista de contactos de GestorContactos en modo fuera del heap: los datos
+ * están en un AlmacenOffHeap y en el heap sólo queda un int por contacto
+ * (su ID, en orden de inserción). get() devuelve una vista del almacén que
+ * decodifica cada campo al leerlo, así que recorrer la lista para filtrar
+ * o indexar un campo no crea los demás String.
+ * Como ArrayList, no es segura para varios hilos si alguno la modifica.
+ */
+final class ListaOffHeap extends AbstractList<Contacto> implements RandomAccess {
+
+    private final AlmacenOffHeap almacen = new AlmacenOffHeap();
+    // IDs de los contactos en orden de inserción
+    private int[] ids = new int[16];
+    private int tamano;
+
+    @Override
+    public Contacto get(int i) {
+        Objects.checkIndex(i, tamano);
+        return almacen.vista(ids[i]);
+    }
+
+    @Override
+    public int size() {
+        return tamano;
+    }
+
+    /** Guarda el contacto, con su ID ya asignado, al final de la lista. */
+    @Override
+    public boolean add(Contacto c) {
+        almacen.guardar(c);
+        if (tamano == ids.length) ids = Arrays.copyOf(ids, tamano * 2);
+        ids[tamano++] = c.getId();
+        modCount++;
+        return true;
+    }
+
+    // Una sola pasada, compactando el arreglo de IDs
+    @Override
+    public boolean removeIf(Predicate<? super Contacto> filtro) {
+        int n = 0;
+        for (int i = 0; i < tamano; i++) {
+            if (filtro.test(almacen.vista(ids[i]))) almacen.eliminar(ids[i]);
+            else ids[n++] = ids[i];
+        }
+        return recortar(n);
+    }
+
+    /** Elimina los contactos de los IDs dados sin decodificar ninguno. */
+    boolean eliminar(Set<Integer> quitar) {
+        int n = 0;
+        for (int i = 0; i < tamano; i++) {
+            if (quitar.contains(ids[i])) almacen.eliminar(ids[i]);
+            else ids[n++] = ids[i];
+        }
+        return recortar(n);
+    }
+
+    private boolean recortar(int n) {
+        if (n == tamano) return false;
+        tamano = n;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        almacen.vaciar();
+        ids = new int[16];
+        tamano = 0;
+        modCount++;
+    }
+
+    /** Vista del contacto con el ID dado, o null si no existe. */
+    Contacto porId(int id) {
+        return almacen.vista(id);
+    }
+
+    boolean contiene(int id) {
+        return almacen.contiene(id);
+    }
+
+    /**
+     * Guarda los datos de c en lugar de los del contacto de su mismo ID,
+     * que conserva su posición en la lista.
+     * @return la vista del contacto guardado, o null si el ID no existe
+     */
+    Contacto sustituir(Contacto c) {
+        if (!almacen.contiene(c.getId())) return null;
+        almacen.guardar(c);
+        return almacen.vista(c.getId());
+    }
+
+    /** Copia de sólo lectura del almacén para publicar una versión. */
+    AlmacenOffHeap congelar() {
+        return almacen.congelar();
+    }
+
+    /** Memoria directa reservada por el almacén. */
+    long bytesReservados() {
+        return almacen.bytesReservados();
+    }
+}
@@ -0,0 +1,404 @@
+// ListaPostings.java
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+/**
+ * Conjunto ordenado de IDs de contacto (lista de "postings") guardado con
+ * enteros primitivos, sin objetos Integer.
+ * - Conjuntos dispersos: arreglo int[] ordenado y creciente; la pertenencia
+ *   se resuelve con búsqueda binaria.
+ * - Conjuntos densos: mapa de bits long[], cuando ocupa menos memoria
+ *   que el arreglo.
+ * Para persistir se codifica como diferencias entre IDs consecutivos en
+ * varint (1 byte por ID cuando los IDs están próximos).
+ */
+public class ListaPostings {
+
+    // Capacidad inicial del arreglo ordenado
+    private static final int CAPACIDAD_INICIAL = 2;
+    // Tamaño mínimo para considerar el modo mapa de bits
+    private static final int MIN_BITMAP = 64;
+
+    // Modo arreglo: IDs ordenados en datos[0..tamano)
+    private int[] datos;
+    // Modo bitmap: bit i encendido si el ID i pertenece al conjunto
+    private long[] bits;
+    // Número de IDs en el conjunto
+    private int tamano;
+
+    /** Crea una lista vacía. */
+    public ListaPostings() {
+        this.datos = new int[CAPACIDAD_INICIAL];
+    }
+
+    /** Crea una lista con un único ID. */
+    public ListaPostings(int id) {
+        this();
+        datos[0] = id;
+        tamano   = 1;
+    }
+
+    /**
+     * Crea una lista a partir de IDs en cualquier orden (se ordenan y se
+     * eliminan repetidos). El arreglo recibido se reutiliza.
+     */
+    public static ListaPostings desdeArreglo(int[] ids, int n) {
+        Arrays.sort(ids, 0, n);
+        int unicos = 0;
+        for (int i = 0; i < n; i++) {
+            if (unicos == 0 || ids[unicos - 1] != ids[i]) ids[unicos++] = ids[i];
+        }
+        ListaPostings l = new ListaPostings();
+        l.datos  = unicos == 0 ? new int[CAPACIDAD_INICIAL] : ids;
+        l.tamano = unicos;
+        l.ajustarRepresentacion();
+        return l;
+    }
+
+    public int tamano() {
+        return tamano;
+    }
+
+    public boolean estaVacia() {
+        return tamano == 0;
+    }
+
+    /** Indica si el conjunto está almacenado como mapa de bits. */
+    public boolean esBitmap() {
+        return bits != null;
+    }
+
+    /**
+     * Añade un ID si no estaba. Los IDs crecientes (caso habitual) se
+     * agregan al final en O(1) amortizado.
+     * @return true si el ID se añadió
+     */
+    public boolean agregar(int id) {
+        if (bits != null) {
+            int palabra = id >>> 6;
+            boolean crece = palabra >= bits.length;
+            if (crece) bits = Arrays.copyOf(bits, Math.max(palabra + 1, bits.length * 2));
+            long mascara = 1L << id;
+            if ((bits[palabra] & mascara) != 0) return false;
+            bits[palabra] |= mascara;
+            tamano++;
+            // Sólo un ID lejano (que amplía el bitmap) puede volverlo disperso
+            if (crece) ajustarRepresentacion();
+            return true;
+        }
+        int pos;
+        if (tamano == 0 || datos[tamano - 1] < id) {
+            pos = tamano;
+        } else {
+            pos = Arrays.binarySearch(datos, 0, tamano, id);
+            if (pos >= 0) return false;
+            pos = -pos - 1;
+        }
+        if (tamano == datos.length) datos = Arrays.copyOf(datos, datos.length * 2);
+        System.arraycopy(datos, pos, datos, pos + 1, tamano - pos);
+        datos[pos] = id;
+        tamano++;
+        ajustarRepresentacion();
+        return true;
+    }
+
+    /**
+     * Quita un ID si estaba presente.
+     * @return true si el ID se quitó
+     */
+    public boolean eliminar(int id) {
+        if (bits != null) {
+            int palabra = id >>> 6;
+            long mascara = 1L << id;
+            if (id < 0 || palabra >= bits.length || (bits[palabra] & mascara) == 0) return false;
+            bits[palabra] &= ~mascara;
+            tamano--;
+            ajustarRepresentacion();
+            return true;
+        }
+        int pos = Arrays.binarySearch(datos, 0, tamano, id);
+        if (pos < 0) return false;
+        System.arraycopy(datos, pos + 1, datos, pos, tamano - pos - 1);
+        tamano--;
+        return true;
+    }
+
+    /** Pertenencia en O(log k) (arreglo) u O(1) (bitmap). */
+    public boolean contiene(int id) {
+        if (bits != null) {
+            int palabra = id >>> 6;
+            return id >= 0 && palabra < bits.length && (bits[palabra] & (1L << id)) != 0;
+        }
+        return Arrays.binarySearch(datos, 0, tamano, id) >= 0;
+    }
+
+    /** Menor ID del conjunto. */
+    public int primero() {
+        if (tamano == 0) throw new NoSuchElementException("Lista de postings vacía");
+        if (bits == null) return datos[0];
+        for (int i = 0; i < bits.length; i++) {
+            if (bits[i] != 0) return (i << 6) + Long.numberOfTrailingZeros(bits[i]);
+        }
+        throw new IllegalStateException("Bitmap inconsistente");
+    }
+
+    /** Mayor ID del conjunto. */
+    public int ultimo() {
+        if (tamano == 0) throw new NoSuchElementException("Lista de postings vacía");
+        if (bits == null) return datos[tamano - 1];
+        for (int i = bits.length - 1; i >= 0; i--) {
+            if (bits[i] != 0) return (i << 6) + 63 - Long.numberOfLeadingZeros(bits[i]);
+        }
+        throw new IllegalStateException("Bitmap inconsistente");
+    }
+
+    /** Recorre los IDs en orden ascendente. */
+    public void forEach(IntConsumer accion) {
+        if (bits == null) {
+            for (int i = 0; i < tamano; i++) accion.accept(datos[i]);
+            return;
+        }
+        for (int i = 0; i < bits.length; i++) {
+            long w = bits[i];
+            while (w != 0) {
+                accion.accept((i << 6) + Long.numberOfTrailingZeros(w));
+                w &= w - 1;
+            }
+        }
+    }
+
+    /** Iterador primitivo en orden ascendente. */
+    public PrimitiveIterator.OfInt iterator() {
+        return iteradorDesde(Integer.MIN_VALUE);
+    }
+
+    /**
+     * Iterador perezoso de los IDs mayores que despuesDe, en orden
+     * ascendente: no copia la lista y empieza con una búsqueda binaria
+     * (arreglo) o saltando directamente a su palabra (bitmap). La lista no
+     * debe modificarse mientras se recorre.
+     */
+    public PrimitiveIterator.OfInt iteradorDesde(int despuesDe) {
+        if (bits == null) {
+            int pos = Arrays.binarySearch(datos, 0, tamano, despuesDe);
+            int inicio = pos >= 0 ? pos + 1 : -pos - 1;
+            return new PrimitiveIterator.OfInt() {
+                int i = inicio;
+                public boolean hasNext() { return i < tamano; }
+                public int nextInt() {
+                    if (i >= tamano) throw new NoSuchElementException();
+                    return datos[i++];
+                }
+            };
+        }
+        return new PrimitiveIterator.OfInt() {
+            int palabra;
+            long w;
+            {
+                long primero = (long) despuesDe + 1;
+                if (primero < 0) primero = 0;
+                palabra = (int) Math.min(primero >>> 6, bits.length);
+                w = palabra < bits.length ? bits[palabra] & (-1L << (primero & 63)) : 0;
+                avanzar();
+            }
+            // Deja en w la siguiente palabra con algún bit, o palabra = bits.length
+            private void avanzar() {
+                while (w == 0 && ++palabra < bits.length) w = bits[palabra];
+            }
+            public boolean hasNext() { return palabra < bits.length; }
+            public int nextInt() {
+                if (palabra >= bits.length) throw new NoSuchElementException();
+                int id = (palabra << 6) + Long.numberOfTrailingZeros(w);
+                w &= w - 1;
+                avanzar();
+                return id;
+            }
+        };
+    }
+
+    /** Copia de los IDs en orden ascendente. */
+    public int[] toArray() {
+        if (bits == null) return Arrays.copyOf(datos, tamano);
+        int[] res = new int[tamano];
+        int[] k = {0};
+        forEach(id -> res[k[0]++] = id);
+        return res;
+    }
+
+    /** Copia independiente de esta lista. */
+    public ListaPostings copia() {
+        ListaPostings l = new ListaPostings();
+        l.tamano = tamano;
+        if (bits != null) { l.bits = bits.clone(); l.datos = null; }
+        else l.datos = Arrays.copyOf(datos, Math.max(tamano, CAPACIDAD_INICIAL));
+        return l;
+    }
+
+    /** Intersección (AND) de dos listas: mezcla lineal o AND de palabras. */
+    public static ListaPostings interseccion(ListaPostings a, ListaPostings b) {
+        if (a.bits != null && b.bits != null) {
+            long[] w = new long[Math.min(a.bits.length, b.bits.length)];
+            for (int i = 0; i < w.length; i++) w[i] = a.bits[i] & b.bits[i];
+            return desdeBits(w);
+        }
+        // Si sólo una es bitmap: recorrer el arreglo y consultar el bitmap
+        if (a.bits != null || b.bits != null) {
+            ListaPostings menor = a.bits == null ? a : b;
+            ListaPostings otra  = menor == a ? b : a;
+            int[] res = new int[menor.tamano];
+            int n = 0;
+            for (int i = 0; i < menor.tamano; i++) {
+                if (otra.contiene(menor.datos[i])) res[n++] = menor.datos[i];
+            }
+            return desdeOrdenado(res, n);
+        }
+        int[] res = new int[Math.min(a.tamano, b.tamano)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.tamano && j < b.tamano) {
+            int x = a.datos[i], y = b.datos[j];
+            if (x == y) { res[n++] = x; i++; j++; }
+            else if (x < y) i++;
+            else j++;
+        }
+        return desdeOrdenado(res, n);
+    }
+
+    /** Unión (OR) de dos listas: mezcla lineal u OR de palabras. */
+    public static ListaPostings union(ListaPostings a, ListaPostings b) {
+        if (a.bits != null && b.bits != null) {
+            long[] w = Arrays.copyOf(a.bits, Math.max(a.bits.length, b.bits.length));
+            for (int i = 0; i < b.bits.length; i++) w[i] |= b.bits[i];
+            return desdeBits(w);
+        }
+        int[] x = a.toArray(), y = b.toArray();
+        int[] res = new int[x.length + y.length];
+        int i = 0, j = 0, n = 0;
+        while (i < x.length && j < y.length) {
+            if (x[i] == y[j]) { res[n++] = x[i++]; j++; }
+            else if (x[i] < y[j]) res[n++] = x[i++];
+            else res[n++] = y[j++];
+        }
+        while (i < x.length) res[n++] = x[i++];
+        while (j < y.length) res[n++] = y[j++];
+        return desdeOrdenado(res, n);
+    }
+
+    /** Bytes aproximados ocupados por los datos (sin cabeceras de objeto). */
+    public long bytesEstimados() {
+        return bits != null ? 8L * bits.length : 4L * datos.length;
+    }
+
+    // --- Persistencia: diferencias codificadas en varint ---
+
+    /** Codifica la lista como [cantidad, id0, id1-id0, ...] en varint. */
+    public byte[] codificar() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(tamano + 5);
+        escribirVarint(out, tamano);
+        int[] previo = {0};
+        forEach(id -> {
+            escribirVarint(out, id - previo[0]);
+            previo[0] = id;
+        });
+        return out.toByteArray();
+    }
+
+    /** Reconstruye una lista a partir de {@link #codificar()}. */
+    public static ListaPostings decodificar(byte[] bytes) {
+        int[] pos = {0};
+        int n = leerVarint(bytes, pos);
+        int[] ids = new int[Math.max(n, CAPACIDAD_INICIAL)];
+        int actual = 0;
+        for (int i = 0; i < n; i++) {
+            actual += leerVarint(bytes, pos);
+            ids[i] = actual;
+        }
+        return desdeOrdenado(ids, n);
+    }
+
+    /** Escribe la lista codificada precedida de su longitud en bytes. */
+    public void escribir(DataOutput out) throws IOException {
+        byte[] cod = codificar();
+        out.writeInt(cod.length);
+        out.write(cod);
+    }
+
+    /** Lee una lista escrita con {@link #escribir(DataOutput)}. */
+    public static ListaPostings leer(DataInput in) throws IOException {
+        byte[] cod = new byte[in.readInt()];
+        in.readFully(cod);
+        return decodificar(cod);
+    }
+
+    // --- Auxiliares internos ---
+
+    // Lista a partir de IDs ya ordenados y sin repetidos
+    private static ListaPostings desdeOrdenado(int[] ids, int n) {
+        ListaPostings l = new ListaPostings();
+        l.datos  = ids.length == 0 ? new int[CAPACIDAD_INICIAL] : ids;
+        l.tamano = n;
+        l.ajustarRepresentacion();
+        return l;
+    }
+
+    // Lista a partir de palabras de bitmap
+    private static ListaPostings desdeBits(long[] w) {
+        ListaPostings l = new ListaPostings();
+        l.bits  = w;
+        l.datos = null;
+        for (long x : w) l.tamano += Long.bitCount(x);
+        l.ajustarRepresentacion();
+        return l;
+    }
+
+    /**
+     * Cambia a bitmap cuando el conjunto es denso (el bitmap ocupa menos
+     * que el arreglo) y vuelve a arreglo cuando se vuelve disperso.
+     * El margen entre ambos umbrales evita cambios continuos; en modo
+     * bitmap se usa su longitud como cota del mayor ID para no recorrerlo.
+     */
+    private void ajustarRepresentacion() {
+        if (tamano == 0) {
+            if (bits != null) { bits = null; datos = new int[CAPACIDAD_INICIAL]; }
+            return;
+        }
+        if (bits == null && tamano >= MIN_BITMAP && datos[tamano - 1] < 32L * tamano) {
+            long[] w = new long[(datos[tamano - 1] >>> 6) + 1];
+            for (int i = 0; i < tamano; i++) w[datos[i] >>> 6] |= 1L << datos[i];
+            bits  = w;
+            datos = null;
+        } else if (bits != null && (tamano < MIN_BITMAP / 2 || 64L * bits.length > 128L * tamano)) {
+            int[] arr = toArray();
+            bits  = null;
+            datos = arr.length < CAPACIDAD_INICIAL ? Arrays.copyOf(arr, CAPACIDAD_INICIAL) : arr;
+        }
+    }
+
+    private static void escribirVarint(ByteArrayOutputStream out, int v) {
+        while ((v & ~0x7F) != 0) {
+            out.write((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.write(v);
+    }
+
+    private static int leerVarint(byte[] b, int[] pos) {
+        int v = 0, desplazamiento = 0;
+        while (true) {
+            byte x = b[pos[0]++];
+            v |= (x & 0x7F) << desplazamiento;
+            if ((x & 0x80) == 0) return v;
+            desplazamiento += 7;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
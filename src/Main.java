@@ -1,17 +1,43 @@
 import java.util.*;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 public class Main {
+    // Resultados de búsqueda que se muestran antes de preguntar si seguir,
+    // y contactos por página en los listados paginados
+    private static final int RESULTADOS_POR_PAGINA = 20;
+
     public static void main(String[] args) {
         // Mostrar ruta de trabajo actual
         System.out.println("Directorio actual: " + new File(".").getAbsolutePath());
-        GestorContactos gestor = new GestorContactos();
+        // Con -Dcontactos.fueraDelHeap=true los contactos se guardan en memoria directa (AlmacenOffHeap)
+        GestorContactos gestor = new GestorContactos(Boolean.getBoolean("contactos.fueraDelHeap"));
+        if (gestor.isFueraDelHeap()) System.out.println("Contactos fuera del heap (memoria directa).");
+        // Con -Dcontactos.diario=ruta se emiten los cambios para réplicas (SeguidorReplica)
+        String rutaDiario = System.getProperty("contactos.diario");
+        if (rutaDiario != null) {
+            try {
+                gestor.activarDiario(new DiarioCambios(rutaDiario));
+                System.out.println("Diario de cambios: " + rutaDiario);
+            } catch (IOException e) {
+                System.out.println("No se pudo abrir el diario de cambios: " + e.getMessage());
+            }
+        }
         // Permitir al usuario cargar un CSV existente o iniciar vacío
         gestor.inicializar();
 
         Scanner scanner = new Scanner(System.in);
+        // Ingesta automática del directorio actual (opción 11); null si está desactivada
+        IngestaDirectorio ingesta = null;
         while (true) {
+            // Incorporar los CSV que la ingesta haya leído desde la última vuelta
+            if (ingesta != null) {
+                int importados = ingesta.aplicarPendientes();
+                if (importados > 0) System.out.println(importados + " contactos importados automáticamente.");
+            }
             // Menú principal
             System.out.println("\nSeleccione una opción:");
             System.out.println("1. Agregar contacto");
@@ -23,7 +49,12 @@ public class Main {
             System.out.println("7. Exportar archivo CSV actualizado");
             System.out.println("8. Importar archivo CSV desde una ruta");
             System.out.println("9. Cambiar el directorio actual");
-            System.out.println("10. Salir");
+            System.out.println("10. Ver métricas de rendimiento");
+            System.out.println("11. " + (ingesta == null ? "Activar" : "Desactivar")
+                    + " la importación automática de CSV del directorio actual");
+            System.out.println("12. Estadísticas de índices");
+            System.out.println("13. Buscar posibles contactos duplicados");
+            System.out.println("14. Salir");
             System.out.print("Opción: ");
             int opcion = scanner.nextInt();
             scanner.nextLine();  // Consumir salto de línea
@@ -38,8 +69,30 @@ public class Main {
                 case 6 -> verTodosLosContactos(gestor, scanner);
                 case 7 -> exportarCSV(scanner, gestor);
                 case 8 -> importarCSVDesdeRuta(scanner, gestor);
-                case 9 -> cambiarDirectorioActual(scanner, gestor);
-                case 10 -> {
+                case 9 -> {
+                    cambiarDirectorioActual(scanner, gestor);
+                    // La ingesta sigue al directorio actual
+                    if (ingesta != null && !ingesta.getDirectorio().equals(Path.of(gestor.getDirectorioActual()).toAbsolutePath())) {
+                        ingesta.detener();
+                        ingesta = iniciarIngesta(gestor);
+                    }
+                }
+                case 10 -> verMetricas(scanner, gestor);
+                case 11 -> {
+                    if (ingesta == null) {
+                        ingesta = iniciarIngesta(gestor);
+                    } else {
+                        ingesta.detener();
+                        ingesta.aplicarPendientes();
+                        ingesta = null;
+                        System.out.println("Importación automática desactivada.");
+                    }
+                }
+                case 12 -> verEstadisticasIndices(scanner, gestor);
+                case 13 -> buscarDuplicados(scanner, gestor);
+                case 14 -> {
+                    if (ingesta != null) ingesta.detener();
+                    gestor.cerrar();  // Asegura que los índices pendientes queden en disco
                     System.out.println("Saliendo del programa.");
                     return;  // Terminar ejecución
                 }
@@ -56,25 +109,25 @@ public class Main {
         System.out.println("Ingrese los datos del contacto:");
 
         System.out.print("Nombre: ");
-        String nombre = solicitarEntrada(scanner, "^.+$", "Nombre inválido.");
+        String nombre = solicitarEntrada(scanner, ValidadorContactos::noVacio, "Nombre inválido.");
 
         System.out.print("Apellido: ");
-        String apellido = solicitarEntrada(scanner, "^.+$", "Apellido inválido.");
+        String apellido = solicitarEntrada(scanner, ValidadorContactos::noVacio, "Apellido inválido.");
 
         System.out.print("Apodo: ");
-        String apodo = solicitarEntrada(scanner, "^.+$", "Apodo inválido.");
+        String apodo = solicitarEntrada(scanner, ValidadorContactos::noVacio, "Apodo inválido.");
 
         System.out.print("Teléfono: ");
-        String telefono = solicitarEntrada(scanner, "^\\d{8}$", "Teléfono inválido.");
+        String telefono = solicitarEntrada(scanner, ValidadorContactos::esTelefonoValido, "Teléfono inválido.");
 
         System.out.print("Email: ");
-        String email = solicitarEntrada(scanner, "^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+\\.[A-Za-z]{2,}$", "Email inválido.");
+        String email = solicitarEntrada(scanner, ValidadorContactos::esEmailValido, "Email inválido.");
 
         System.out.print("Dirección: ");
-        String direccion = solicitarEntrada(scanner, "^.+$", "Dirección inválida.");
+        String direccion = solicitarEntrada(scanner, ValidadorContactos::noVacio, "Dirección inválida.");
 
         System.out.print("Fecha de Nacimiento: ");
-        String fechaNacimiento = solicitarEntrada(scanner, "^\\d{2}/\\d{2}/\\d{4}$", "Fecha inválida.");
+        String fechaNacimiento = solicitarEntrada(scanner, ValidadorContactos::esFechaValida, "Fecha inválida.");
 
         // Crear y guardar el contacto
         Contacto contacto = new Contacto(nombre, apellido, apodo, telefono, email, direccion, fechaNacimiento);
@@ -90,15 +143,27 @@ public class Main {
             return;
         }
         gestor.listarContactosOrdenados("id");
-        System.out.print("Ingrese el ID del contacto a eliminar: ");
-        int id = scanner.nextInt();
-        scanner.nextLine();
+        System.out.print("Ingrese el ID del contacto a eliminar (varios separados por comas): ");
+        Set<Integer> ids = new LinkedHashSet<>();
+        for (String parte : scanner.nextLine().split(",")) {
+            if (ValidadorContactos.esNumero(parte.trim())) ids.add(Integer.parseInt(parte.trim()));
+        }
+        if (ids.isEmpty()) {
+            System.out.println("ID inválido.");
+            return;
+        }
 
         System.out.print("¿Seguro? (s/n): ");
-        if (scanner.nextLine().equalsIgnoreCase("s")) {
-            gestor.eliminarContacto(id);
-        } else {
+        if (!scanner.nextLine().equalsIgnoreCase("s")) {
             System.out.println("Operación cancelada.");
+        } else if (ids.size() == 1) {
+            gestor.eliminarContacto(ids.iterator().next());
+        } else {
+            ResultadoLote res = gestor.eliminarContactos(ids, false);
+            System.out.println("Contactos eliminados (en memoria): " + res.getAplicados());
+            for (ResultadoLote.Item item : res.getRechazos()) {
+                System.out.println("  ID " + item.id() + ": " + item.motivo());
+            }
         }
     }
 
@@ -133,32 +198,32 @@ public class Main {
             switch (campo) {
                 case 1 -> {
                     System.out.print("Nuevo nombre: ");
-                    contacto.setNombre(solicitarEntrada(scanner, "^.+$", "Nombre inválido."));
+                    contacto.setNombre(solicitarEntrada(scanner, ValidadorContactos::noVacio, "Nombre inválido."));
                 }
                 case 2 -> {
                     System.out.print("Nuevo apellido: ");
-                    contacto.setApellido(solicitarEntrada(scanner, "^.+$", "Apellido inválido."));
+                    contacto.setApellido(solicitarEntrada(scanner, ValidadorContactos::noVacio, "Apellido inválido."));
                 }
                 case 3 -> {
                     System.out.print("Nuevo apodo: ");
-                    contacto.setApodo(solicitarEntrada(scanner, "^.+$", "Apodo inválido."));
+                    contacto.setApodo(solicitarEntrada(scanner, ValidadorContactos::noVacio, "Apodo inválido."));
                 }
                 case 4 -> {
                     System.out.print("Nuevo teléfono: ");
-                    contacto.setTelefono(solicitarEntrada(scanner, "^\\d{8}$", "Teléfono inválido."));
+                    contacto.setTelefono(solicitarEntrada(scanner, ValidadorContactos::esTelefonoValido, "Teléfono inválido."));
                 }
                 case 5 -> {
                     System.out.print("Nuevo email: ");
-                    contacto.setEmail(solicitarEntrada(scanner, "^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+\\.[A-Za-z]{2,}$",
+                    contacto.setEmail(solicitarEntrada(scanner, ValidadorContactos::esEmailValido,
                             "Email inválido."));
                 }
                 case 6 -> {
                     System.out.print("Nueva dirección: ");
-                    contacto.setDireccion(solicitarEntrada(scanner, "^.+$", "Dirección inválida."));
+                    contacto.setDireccion(solicitarEntrada(scanner, ValidadorContactos::noVacio, "Dirección inválida."));
                 }
                 case 7 -> {
                     System.out.print("Nueva fecha: ");
-                    contacto.setFechaNacimiento(solicitarEntrada(scanner, "^\\d{2}/\\d{2}/\\d{4}$", "Fecha inválida."));
+                    contacto.setFechaNacimiento(solicitarEntrada(scanner, ValidadorContactos::esFechaValida, "Fecha inválida."));
                 }
             }
         }
@@ -174,26 +239,79 @@ public class Main {
             System.out.println("No hay contactos.");
             return;
         }
-        System.out.print("Campo (nombre, apellido, email, telefono): ");
+        System.out.println("Campos: nombre, apellido, email, telefono, " + ClaveDerivada.nombresDisponibles());
+        System.out.print("Campo (o varios separados por comas): ");
         String campo = scanner.nextLine();
-        System.out.print("Valor: ");
-        String valor = scanner.nextLine();
-        List<Contacto> lista = gestor.buscarContactos(campo, valor);
-        if (lista.isEmpty()) {
+        Iterator<Contacto> resultados;
+        if (campo.contains(",")) {
+            // Varios campos separados por comas: pedir un valor por campo
+            Map<String, String> criterios = new LinkedHashMap<>();
+            for (String c : campo.split(",")) {
+                System.out.print("Valor para " + c.trim() + ": ");
+                criterios.put(c.trim(), scanner.nextLine());
+            }
+            System.out.print("¿Deben cumplirse todos (y) o cualquiera (o)?: ");
+            boolean todos = !scanner.nextLine().trim().equalsIgnoreCase("o");
+            resultados = gestor.buscarContactosCombinados(criterios, todos).iterator();
+        } else {
+            System.out.print("Valor: ");
+            String valor = scanner.nextLine();
+            // Perezoso: sólo se buscan los resultados que se llegan a mostrar
+            resultados = gestor.buscarContactosStream(campo, valor).iterator();
+        }
+        if (!resultados.hasNext()) {
             System.out.println("No se encontraron resultados.");
         } else {
-            lista.forEach(System.out::println);
+            mostrarPorPaginas(resultados, scanner);
+        }
+    }
+
+    // Muestra los resultados de RESULTADOS_POR_PAGINA en RESULTADOS_POR_PAGINA
+    private static void mostrarPorPaginas(Iterator<Contacto> resultados, Scanner scanner) {
+        while (true) {
+            for (int i = 0; i < RESULTADOS_POR_PAGINA && resultados.hasNext(); i++) {
+                System.out.println(resultados.next());
+            }
+            if (!resultados.hasNext()) return;
+            System.out.print("¿Ver más resultados? (s/n): ");
+            if (!scanner.nextLine().trim().equalsIgnoreCase("s")) return;
+        }
+    }
+
+    /**
+     * Empieza a vigilar el directorio actual: los CSV nuevos o con filas
+     * añadidas se importan al volver al menú. Devuelve null si no se pudo.
+     */
+    private static IngestaDirectorio iniciarIngesta(GestorContactos gestor) {
+        try {
+            IngestaDirectorio ingesta = new IngestaDirectorio(gestor, gestor.getDirectorioActual());
+            ingesta.iniciar();
+            System.out.println("Importando automáticamente los CSV de: " + ingesta.getDirectorio());
+            return ingesta;
+        } catch (IOException e) {
+            System.out.println("No se pudo vigilar el directorio: " + e.getMessage());
+            return null;
         }
     }
 
     /** Pide campo y tipo para crear un índice, y delega en el gestor. */
     private static void crearIndice(Scanner scanner, GestorContactos gestor) {
         System.out.println("Campos para índice: id, nombre, apellido, apodo, telefono, email, direccion, fecha_nacimiento");
+        System.out.println("Claves derivadas: " + ClaveDerivada.nombresDisponibles());
         System.out.print("Campo: ");
         String campo = scanner.nextLine();
-        System.out.println("Tipos: bst, avl");
+        System.out.println("Tipos: bst, avl, avlp (AVL persistente, admite instantáneas), hash (sólo búsquedas por igualdad),");
+        System.out.println("       bplus (árbol B+ en disco, para datos que no caben en memoria),");
+        System.out.println("       auto (elige según una muestra de los datos)");
         System.out.print("Tipo: ");
         String tipo = scanner.nextLine();
+        if (tipo.trim().equalsIgnoreCase("bplus") && gestor.hayIndiceEnDisco(campo)) {
+            System.out.print("Ya hay un índice en disco para ese campo. ¿Reabrirlo sin reconstruir? (s/n): ");
+            if (scanner.nextLine().trim().equalsIgnoreCase("s")) {
+                gestor.abrirIndice(campo);
+                return;
+            }
+        }
         gestor.crearIndice(campo, tipo);
     }
 
@@ -216,7 +334,20 @@ public class Main {
             case 8 -> "fecha_nacimiento";
             default -> "id";
         };
-        gestor.listarContactosOrdenados(campo);
+        System.out.print("Página de " + RESULTADOS_POR_PAGINA + " (desde 1, Enter = todas): ");
+        String pagina = scanner.nextLine().trim();
+        if (pagina.isEmpty()) {
+            gestor.listarContactosOrdenados(campo);
+            return;
+        }
+        try {
+            int numero = Integer.parseInt(pagina);
+            int paginas = (gestor.getCantidadContactos() + RESULTADOS_POR_PAGINA - 1) / RESULTADOS_POR_PAGINA;
+            gestor.paginaOrdenada(campo, numero - 1, RESULTADOS_POR_PAGINA).forEach(System.out::println);
+            System.out.println("Página " + numero + " de " + paginas);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Página inválida.");
+        }
     }
 
     /** Gestiona opciones de exportación de CSV. */
@@ -226,15 +357,115 @@ public class Main {
         scanner.nextLine();
         String ruta = opc == 1
                 ? gestor.getDirectorioActual() + File.separator + "contacts.csv"
-                : solicitarEntrada(scanner, "^.+$", "Ruta inválida.") + File.separator + "contacts.csv";
-        gestor.exportarContactos(ruta);
+                : solicitarEntrada(scanner, ValidadorContactos::noVacio, "Ruta inválida.") + File.separator + "contacts.csv";
+        System.out.println("1.Un archivo (orden de ID)  2.Varios archivos en paralelo  3.En orden de un índice");
+        int modo = scanner.nextInt();
+        scanner.nextLine();
+        switch (modo) {
+            case 2 -> {
+                System.out.print("Número de archivos: ");
+                int n = scanner.nextInt();
+                scanner.nextLine();
+                System.out.print("Repartir por 1.rango de ID  2.hash de ID: ");
+                boolean porRango = !scanner.nextLine().trim().equals("2");
+                gestor.exportarParticionado(ruta, n, porRango);
+            }
+            case 3 -> {
+                System.out.print("Campo del índice: ");
+                gestor.exportarPorIndice(ruta, scanner.nextLine().trim());
+            }
+            default -> gestor.exportarContactos(ruta);
+        }
     }
 
     /** Lee ruta de un CSV externo e importa contactos. */
     private static void importarCSVDesdeRuta(Scanner scanner, GestorContactos gestor) {
         System.out.print("Ruta completa del CSV: ");
         String ruta = scanner.nextLine();
-        gestor.importarCSVDesdeRuta(ruta);
+        System.out.println("1. Añadir las filas como contactos nuevos");
+        System.out.println("2. Sincronizar: insertar, actualizar y opcionalmente eliminar según una clave");
+        System.out.print("Modo: ");
+        if (!scanner.nextLine().trim().equals("2")) {
+            gestor.importarCSVDesdeRuta(ruta);
+            return;
+        }
+        System.out.print("Clave para casar filas y contactos (id, email, telefono): ");
+        String clave = scanner.nextLine().trim();
+        System.out.print("¿Eliminar los contactos que no estén en el archivo? (s/n): ");
+        boolean eliminar = scanner.nextLine().trim().equalsIgnoreCase("s");
+        try {
+            ResumenSincronizacion res = gestor.sincronizarCSV(ruta, clave, eliminar);
+            System.out.println("Sincronización completada en memoria: " + res);
+        } catch (IOException e) {
+            System.out.println("Error al importar CSV: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /** Muestra el informe de métricas y permite activarlas o desactivarlas. */
+    private static void verMetricas(Scanner scanner, GestorContactos gestor) {
+        System.out.print(gestor.volcarMetricas());
+        System.out.print((Metricas.estanActivas() ? "¿Desactivar" : "¿Activar") + " métricas? (s/n): ");
+        if (scanner.nextLine().trim().equalsIgnoreCase("s")) {
+            Metricas.setActivas(!Metricas.estanActivas());
+        }
+    }
+
+    /**
+     * Muestra las estadísticas de cada índice con su recomendación y
+     * ofrece reconstruir los que se han degradado.
+     */
+    private static void verEstadisticasIndices(Scanner scanner, GestorContactos gestor) {
+        List<EstadisticasIndice> estadisticas = gestor.estadisticasIndices();
+        if (estadisticas.isEmpty()) {
+            System.out.println("No hay índices.");
+            return;
+        }
+        List<String> degradados = new ArrayList<>();
+        for (EstadisticasIndice e : estadisticas) {
+            System.out.println(e);
+            if (e.degradado()) degradados.add(e.campo());
+        }
+        if (degradados.isEmpty()) return;
+        System.out.print("¿Reconstruir " + String.join(", ", degradados) + "? (s/n): ");
+        if (scanner.nextLine().trim().equalsIgnoreCase("s")) {
+            for (String campo : degradados) gestor.reconstruirIndice(campo);
+            System.out.println("índices reconstruidos");
+        }
+    }
+
+    /**
+     * Busca contactos casi duplicados, muestra las mejores propuestas de
+     * fusión y ofrece guardarlas todas en duplicados.csv.
+     */
+    private static void buscarDuplicados(Scanner scanner, GestorContactos gestor) {
+        System.out.print("Puntuación mínima (0-1, Enter = " + DetectorDuplicados.UMBRAL_DEFECTO + "): ");
+        String entrada = scanner.nextLine().trim();
+        List<SugerenciaFusion> sugerencias;
+        try {
+            double umbral = entrada.isEmpty() ? DetectorDuplicados.UMBRAL_DEFECTO : Double.parseDouble(entrada);
+            sugerencias = gestor.buscarDuplicados(umbral);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Umbral inválido.");
+            return;
+        }
+        if (sugerencias.isEmpty()) {
+            System.out.println("No se encontraron posibles duplicados.");
+            return;
+        }
+        System.out.println(sugerencias.size() + " posibles duplicados (conservar <- fusionar):");
+        sugerencias.stream().limit(20).forEach(System.out::println);
+        System.out.print("¿Guardar todas las propuestas en duplicados.csv? (s/n): ");
+        if (scanner.nextLine().trim().equalsIgnoreCase("s")) {
+            Path destino = Path.of(gestor.getDirectorioActual(), "duplicados.csv");
+            try {
+                DetectorDuplicados.escribirInforme(destino, sugerencias);
+                System.out.println("Propuestas guardadas en " + destino);
+            } catch (IOException e) {
+                System.out.println("No se pudo guardar: " + e.getMessage());
+            }
+        }
     }
 
     /** Cambia el directorio de trabajo y ofrece cargar CSV nuevo. */
@@ -245,13 +476,13 @@ public class Main {
     }
 
     /**
-     * Valida la entrada del usuario contra una expresión regular;
-     * repite la solicitud hasta que coincida.
+     * Valida la entrada del usuario con el validador indicado;
+     * repite la solicitud hasta que sea válida.
      */
-    private static String solicitarEntrada(Scanner scanner, String regex, String mensajeError) {
+    private static String solicitarEntrada(Scanner scanner, Predicate<String> validador, String mensajeError) {
         while (true) {
             String entrada = scanner.nextLine().trim();
-            if (entrada.matches(regex)) {
+            if (validador.test(entrada)) {
                 return entrada;
             }
             System.out.println(mensajeError);
@@ -0,0 +1,164 @@
+// Metricas.java
+import jdk.jfr.*;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Instrumentación de operaciones del gestor, los índices y los árboles.
+ * Lleva contadores y un histograma de latencias por operación, filas
+ * procesadas (para calcular filas/seg en cargas, importaciones y
+ * exportaciones) y contadores libres (p. ej. aciertos de índice frente a
+ * recorridos completos). Cada medición también se emite como evento JFR
+ * "contactos.Operacion" cuando hay una grabación activa.
+ *
+ * Desactivada por defecto: se activa con -Dcontactos.metricas=true o con
+ * {@link #setActivas(boolean)}. Desactivada, cada punto de medida cuesta
+ * una lectura de un campo volatile.
+ *
+ * Uso:
+ *   long t = Metricas.inicio();
+ *   ... operación ...
+ *   Metricas.registrar("buscar", t);
+ */
+public final class Metricas {
+
+    // Evento JFR con la duración y las filas de una operación medida
+    @Name("contactos.Operacion")
+    @Label("Operación de contactos")
+    @Category("Contactos")
+    static class EventoOperacion extends Event {
+        @Label("Operación")
+        String operacion;
+        @Label("Duración")
+        @Timespan(Timespan.NANOSECONDS)
+        long duracion;
+        @Label("Filas")
+        long filas;
+    }
+
+    // Estadísticas acumuladas de una operación
+    private static class Operacion {
+        final LongAdder llamadas   = new LongAdder();
+        final LongAdder nanosTotal = new LongAdder();
+        final LongAdder filas      = new LongAdder();
+        // Cubeta i: duraciones en [2^i, 2^(i+1)) nanosegundos
+        final AtomicLongArray histograma = new AtomicLongArray(64);
+        volatile long maximo;
+
+        void registrar(long nanos, long nFilas) {
+            llamadas.increment();
+            nanosTotal.add(nanos);
+            if (nFilas > 0) filas.add(nFilas);
+            histograma.incrementAndGet(63 - Long.numberOfLeadingZeros(Math.max(1, nanos)));
+            if (nanos > maximo) maximo = nanos;  // aproximado bajo concurrencia
+        }
+
+        // Límite superior de la cubeta que contiene el percentil p (0..1)
+        long percentil(double p) {
+            long total = llamadas.sum();
+            if (total == 0) return 0;
+            long objetivo = (long) Math.ceil(total * p);
+            long acumulado = 0;
+            for (int i = 0; i < 64; i++) {
+                acumulado += histograma.get(i);
+                if (acumulado >= objetivo) return i >= 62 ? Long.MAX_VALUE : (1L << (i + 1));
+            }
+            return maximo;
+        }
+    }
+
+    private static volatile boolean activas = Boolean.getBoolean("contactos.metricas");
+    private static final Map<String, Operacion> operaciones = new ConcurrentHashMap<>();
+    private static final Map<String, LongAdder> contadores  = new ConcurrentHashMap<>();
+
+    private Metricas() {
+    }
+
+    public static boolean estanActivas() {
+        return activas;
+    }
+
+    public static void setActivas(boolean valor) {
+        activas = valor;
+    }
+
+    /** Marca de tiempo de inicio, o 0 si las métricas están desactivadas. */
+    public static long inicio() {
+        return activas ? System.nanoTime() : 0L;
+    }
+
+    /** Registra la duración de una operación iniciada con {@link #inicio()}. */
+    public static void registrar(String operacion, long inicio) {
+        registrar(operacion, inicio, 0);
+    }
+
+    /** Registra duración y número de filas procesadas (para filas/seg). */
+    public static void registrar(String operacion, long inicio, long filas) {
+        if (inicio == 0L) return;
+        long nanos = System.nanoTime() - inicio;
+        operaciones.computeIfAbsent(operacion, k -> new Operacion()).registrar(nanos, filas);
+        EventoOperacion ev = new EventoOperacion();
+        if (ev.isEnabled()) {
+            ev.operacion = operacion;
+            ev.duracion  = nanos;
+            ev.filas     = filas;
+            ev.commit();
+        }
+    }
+
+    /** Incrementa un contador con nombre (sin medir tiempo). */
+    public static void contar(String contador) {
+        if (!activas) return;
+        contadores.computeIfAbsent(contador, k -> new LongAdder()).increment();
+    }
+
+    /** Valor actual de un contador, 0 si no existe. */
+    public static long getContador(String contador) {
+        LongAdder a = contadores.get(contador);
+        return a == null ? 0 : a.sum();
+    }
+
+    /** Descarta todas las mediciones acumuladas. */
+    public static void reiniciar() {
+        operaciones.clear();
+        contadores.clear();
+    }
+
+    /**
+     * Texto con una línea por operación (llamadas, media, p50, p99, máximo
+     * y filas/seg si corresponde) y una por contador.
+     */
+    public static String volcar() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Métricas ").append(activas ? "activas" : "desactivadas").append('\n');
+        for (Map.Entry<String, Operacion> e : new TreeMap<>(operaciones).entrySet()) {
+            Operacion op = e.getValue();
+            long n = op.llamadas.sum();
+            long total = op.nanosTotal.sum();
+            sb.append(String.format("  %-24s llamadas=%d media=%s p50<=%s p99<=%s max=%s",
+                    e.getKey(), n, formatear(n == 0 ? 0 : total / n),
+                    formatear(op.percentil(0.50)), formatear(op.percentil(0.99)), formatear(op.maximo)));
+            long filas = op.filas.sum();
+            if (filas > 0 && total > 0) {
+                sb.append(String.format(" filas=%d filas/seg=%.0f", filas, filas * 1e9 / total));
+            }
+            sb.append('\n');
+        }
+        for (Map.Entry<String, LongAdder> e : new TreeMap<>(contadores).entrySet()) {
+            sb.append(String.format("  %-24s %d%n", e.getKey(), e.getValue().sum()));
+        }
+        return sb.toString();
+    }
+
+    // Duración legible en ns, µs o ms
+    private static String formatear(long nanos) {
+        if (nanos == Long.MAX_VALUE) return "inf";
+        if (nanos < 10_000)     return nanos + "ns";
+        if (nanos < 10_000_000) return (nanos / 1_000) + "us";
+        return (nanos / 1_000_000) + "ms";
+    }
+}
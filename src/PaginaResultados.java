@@ -0,0 +1,38 @@
+// PaginaResultados.java
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Una página de resultados de búsqueda, en orden de ID, y el cursor para
+ * pedir la siguiente. El cursor es opaco para quien llama: basta con
+ * devolverlo tal cual; es null cuando no hay más resultados.
+ */
+public record PaginaResultados(List<Contacto> contactos, String cursor) {
+
+    public boolean hayMas() {
+        return cursor != null;
+    }
+
+    /**
+     * Toma como máximo 'limite' contactos de un stream perezoso ordenado
+     * por ID; sólo se consume un elemento más para saber si hay otra página.
+     */
+    static PaginaResultados de(Stream<Contacto> resultados, int limite) {
+        if (limite < 1) throw new IllegalArgumentException("El límite debe ser positivo");
+        List<Contacto> lista = resultados.limit(limite + 1L).collect(Collectors.toList());
+        if (lista.size() <= limite) return new PaginaResultados(List.copyOf(lista), null);
+        List<Contacto> pagina = List.copyOf(lista.subList(0, limite));
+        return new PaginaResultados(pagina, Integer.toString(pagina.get(limite - 1).getId(), 36));
+    }
+
+    /** ID tras el que continúa la búsqueda (Integer.MIN_VALUE sin cursor). */
+    static int despuesDe(String cursor) {
+        if (cursor == null || cursor.isEmpty()) return Integer.MIN_VALUE;
+        try {
+            return Integer.parseInt(cursor, 36);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Cursor inválido: " + cursor, e);
+        }
+    }
+}
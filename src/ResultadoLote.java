@@ -0,0 +1,74 @@
+// ResultadoLote.java
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resultado de una operación por lotes de GestorContactos: estado de cada
+ * elemento (en el orden recibido) y si el lote llegó a aplicarse.
+ */
+public class ResultadoLote {
+
+    /** Estado final de un elemento del lote. */
+    public enum Estado {
+        APLICADO,     // el cambio se aplicó
+        RECHAZADO,    // el elemento no pasó la validación
+        NO_APLICADO   // era válido, pero el lote todo-o-nada se canceló
+    }
+
+    /**
+     * Resultado de un elemento.
+     * @param posicion  posición en la colección recibida
+     * @param id        ID del contacto (0 si no llegó a asignarse)
+     * @param estado    estado final
+     * @param motivo    causa del rechazo, o null
+     */
+    public record Item(int posicion, int id, Estado estado, String motivo) {}
+
+    private final List<Item> items;
+    private final boolean aplicado;
+
+    ResultadoLote(List<Item> items, boolean aplicado) {
+        this.items    = Collections.unmodifiableList(new ArrayList<>(items));
+        this.aplicado = aplicado;
+    }
+
+    public List<Item> getItems() {
+        return items;
+    }
+
+    /** true si se aplicó al menos una parte del lote. */
+    public boolean isAplicado() {
+        return aplicado;
+    }
+
+    public int getAplicados() {
+        return contar(Estado.APLICADO);
+    }
+
+    public int getRechazados() {
+        return contar(Estado.RECHAZADO);
+    }
+
+    /** Elementos rechazados con su motivo. */
+    public List<Item> getRechazos() {
+        return items.stream().filter(i -> i.estado() == Estado.RECHAZADO).toList();
+    }
+
+    private int contar(Estado estado) {
+        int n = 0;
+        for (Item i : items) {
+            if (i.estado() == estado) n++;
+        }
+        return n;
+    }
+
+    @Override
+    public String toString() {
+        return "ResultadoLote{" +
+                "aplicados=" + getAplicados() +
+                ", rechazados=" + getRechazados() +
+                ", noAplicados=" + contar(Estado.NO_APLICADO) +
+                '}';
+    }
+}
@@ -0,0 +1,22 @@
+// ResumenSincronizacion.java
+
+/**
+ * Resultado de GestorContactos.sincronizarCSV: cuántos contactos del
+ * archivo eran nuevos, cuáles cambiaron, cuántos se eliminaron por no
+ * aparecer en él y cuántos estaban ya igual. Las filas rechazadas se
+ * detallan en el informe "<archivo>.rechazos.txt".
+ */
+public record ResumenSincronizacion(int insertados, int modificados, int eliminados,
+                                    int sinCambios, int rechazados) {
+
+    /** Contactos afectados por la sincronización. */
+    public int cambios() {
+        return insertados + modificados + eliminados;
+    }
+
+    @Override
+    public String toString() {
+        return "insertados=" + insertados + ", modificados=" + modificados + ", eliminados=" + eliminados
+                + ", sin cambios=" + sinCambios + ", rechazados=" + rechazados;
+    }
+}
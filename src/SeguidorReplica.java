@@ -0,0 +1,227 @@
+// SeguidorReplica.java
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Réplica de sólo lectura que sigue el DiarioCambios de un gestor
+ * principal: lee periódicamente las líneas nuevas del final del archivo
+ * y aplica los eventos, agrupados, a su propio GestorContactos (con sus
+ * propios índices, cuyos archivos llevan el prefijo "replica-").
+ * Puede arrancar desde un punto de control (CSV + secuencia) y aplicar
+ * sólo los eventos posteriores. El retraso se mide como el tiempo entre
+ * la confirmación de un evento en el principal y su aplicación aquí.
+ * Las consultas deben hacerse sobre {@code getGestor().instantanea()},
+ * que no se ve afectada mientras se aplican eventos.
+ *
+ * Uso: java SeguidorReplica diario [puntoControl.csv]
+ */
+public class SeguidorReplica {
+
+    private static final Logger logger = Logger.getLogger(SeguidorReplica.class.getName());
+    // Bytes leídos del diario en cada lectura (el búfer crece si una línea no cabe)
+    private static final int TAMANO_LECTURA = 1 << 20;
+
+    private final Path diario;
+    private final GestorContactos gestor;
+    // Posición del diario tras la última línea completa leída
+    private long posicion;
+    // Secuencia del último evento aplicado
+    private volatile long aplicada;
+    // Retraso del último evento aplicado y máximo observado (ms)
+    private volatile long retrasoMs;
+    private volatile long retrasoMaximoMs;
+    private long eventosAplicados;
+    private ScheduledExecutorService hilo;
+
+    public SeguidorReplica(String rutaDiario) {
+        this.diario = Path.of(rutaDiario);
+        this.gestor = new GestorContactos("replica-", new EscritorIndices());
+    }
+
+    /**
+     * Carga un punto de control escrito por GestorContactos.escribirPuntoControl:
+     * los contactos del CSV y la secuencia de "<ruta>.seq". Los eventos con
+     * secuencia menor o igual se ignorarán al leer el diario.
+     */
+    public synchronized void cargarPuntoControl(String rutaCsv) throws IOException {
+        long secuencia = Long.parseLong(Files.readString(Path.of(rutaCsv + ".seq")).trim());
+        List<Contacto> leidos = new ArrayList<>();
+        List<ValidadorContactos.Rechazo> rechazos = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new FileReader(rutaCsv))) {
+            GestorContactos.leerCSVValidado(br, true, fila -> leidos.add(GestorContactos.contactoDesdeFila(fila)), rechazos);
+        }
+        gestor.reemplazarContactos(leidos, rutaCsv);
+        aplicada = secuencia;
+        posicion = 0;
+        if (!rechazos.isEmpty()) {
+            logger.warning(rechazos.size() + " filas rechazadas en el punto de control " + rutaCsv);
+        }
+    }
+
+    /**
+     * Lee las líneas completas añadidas al diario desde la última pasada y
+     * aplica sus eventos.
+     * @return número de eventos aplicados
+     */
+    public synchronized int sincronizar() throws IOException {
+        if (!Files.exists(diario)) return 0;
+        List<EventoCambio> eventos = new ArrayList<>();
+        try (RandomAccessFile raf = new RandomAccessFile(diario.toFile(), "r")) {
+            if (raf.length() < posicion) posicion = 0;  // el diario se recreó
+            byte[] buffer = new byte[TAMANO_LECTURA];
+            while (posicion < raf.length()) {
+                raf.seek(posicion);
+                int leidos = raf.read(buffer);
+                if (leidos <= 0) break;
+                int fin = leidos - 1;
+                while (fin >= 0 && buffer[fin] != '\n') fin--;
+                if (fin < 0) {
+                    if (leidos < buffer.length) break;  // sólo hay una línea a medio escribir
+                    // Una línea más larga que el búfer: ampliarlo hasta que quepa entera
+                    if (buffer.length > Integer.MAX_VALUE / 2) {
+                        throw new IOException("Línea del diario demasiado larga en la posición " + posicion);
+                    }
+                    buffer = new byte[buffer.length * 2];
+                    continue;
+                }
+                String bloque = new String(buffer, 0, fin + 1, StandardCharsets.UTF_8);
+                for (String linea : bloque.split("\n")) {
+                    linea = linea.trim();
+                    if (linea.isEmpty()) continue;
+                    EventoCambio e = EventoCambio.desdeLinea(linea);
+                    if (e.secuencia() > aplicada) eventos.add(e);
+                }
+                posicion += fin + 1;
+            }
+        }
+        aplicar(eventos);
+        return eventos.size();
+    }
+
+    /**
+     * Aplica los eventos en orden, agrupando los consecutivos del mismo tipo
+     * para que los índices se actualicen una vez por grupo.
+     */
+    private void aplicar(List<EventoCambio> eventos) {
+        if (eventos.isEmpty()) return;
+        Map<Integer, Contacto> grupo = new LinkedHashMap<>();
+        EventoCambio.Tipo tipoGrupo = null;
+        for (EventoCambio e : eventos) {
+            if (e.tipo() != tipoGrupo) {
+                aplicarGrupo(tipoGrupo, grupo);
+                tipoGrupo = e.tipo();
+            }
+            // Dentro de un grupo, el último cambio de cada ID es el que cuenta
+            grupo.put(e.id(), e.contacto());
+        }
+        aplicarGrupo(tipoGrupo, grupo);
+        EventoCambio ultimo = eventos.get(eventos.size() - 1);
+        aplicada = ultimo.secuencia();
+        eventosAplicados += eventos.size();
+        retrasoMs = System.currentTimeMillis() - ultimo.marcaMs();
+        retrasoMaximoMs = Math.max(retrasoMaximoMs, retrasoMs);
+        Metricas.contar("replica.lotes");
+    }
+
+    /**
+     * Aplica un grupo sin volver a validar: el principal ya aceptó esos
+     * cambios, y rechazarlos aquí haría divergir la réplica. Un cambio
+     * sobre un ID que la réplica no tiene indica que ya divergió y se
+     * registra como error grave.
+     */
+    private void aplicarGrupo(EventoCambio.Tipo tipo, Map<Integer, Contacto> grupo) {
+        if (tipo == null) return;
+        switch (tipo) {
+            case REINICIO     -> gestor.reemplazarContactos(Collections.emptyList(), null);
+            case ALTA         -> gestor.incorporar(new ArrayList<>(grupo.values()));
+            case MODIFICACION -> {
+                List<Integer> ausentes = gestor.sustituir(grupo.values());
+                if (!ausentes.isEmpty()) {
+                    logger.severe("Réplica divergente: modificación de IDs inexistentes " + ausentes);
+                }
+            }
+            case BAJA -> {
+                ResultadoLote r = gestor.eliminarContactos(grupo.keySet(), false);
+                if (r.getRechazados() > 0) {
+                    logger.severe("Réplica divergente: baja rechazada " + r.getRechazos());
+                }
+            }
+        }
+        grupo.clear();
+    }
+
+    /** Sincroniza cada intervaloMs en un hilo propio (daemon). */
+    public synchronized void iniciar(long intervaloMs) {
+        if (hilo != null) return;
+        hilo = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "seguidor-replica");
+            t.setDaemon(true);
+            return t;
+        });
+        hilo.scheduleWithFixedDelay(() -> {
+            try {
+                sincronizar();
+            } catch (IOException | IllegalArgumentException e) {
+                logger.log(Level.SEVERE, "Error leyendo el diario " + diario, e);
+            }
+        }, 0, intervaloMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Detiene la sincronización periódica y cierra el gestor de la réplica. */
+    public synchronized void detener() {
+        if (hilo != null) hilo.shutdownNow();
+        hilo = null;
+        gestor.cerrar();
+    }
+
+    public GestorContactos getGestor() {
+        return gestor;
+    }
+
+    public long getSecuenciaAplicada() {
+        return aplicada;
+    }
+
+    /** Eventos escritos en el diario que aún no se han aplicado. */
+    public long getRetrasoSecuencias() throws IOException {
+        return Math.max(0, DiarioCambios.leerUltimaSecuencia(diario) - aplicada);
+    }
+
+    /** Tiempo entre la confirmación del último evento aplicado y su aplicación. */
+    public long getRetrasoMs() {
+        return retrasoMs;
+    }
+
+    public long getRetrasoMaximoMs() {
+        return retrasoMaximoMs;
+    }
+
+    public synchronized long getEventosAplicados() {
+        return eventosAplicados;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Uso: java SeguidorReplica diario [puntoControl.csv]");
+            return;
+        }
+        SeguidorReplica replica = new SeguidorReplica(args[0]);
+        if (args.length > 1) replica.cargarPuntoControl(args[1]);
+        replica.iniciar(200);
+        while (true) {
+            Thread.sleep(5_000);
+            System.out.println("secuencia=" + replica.getSecuenciaAplicada()
+                    + ", contactos=" + replica.getGestor().instantanea().getCantidadContactos()
+                    + ", pendientes=" + replica.getRetrasoSecuencias()
+                    + ", retraso=" + replica.getRetrasoMs() + " ms (máx " + replica.getRetrasoMaximoMs() + " ms)");
+        }
+    }
+}
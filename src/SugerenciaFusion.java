@@ -0,0 +1,18 @@
+// SugerenciaFusion.java
+import java.util.Locale;
+
+/**
+ * Posible duplicado encontrado por DetectorDuplicados: se propone conservar
+ * el contacto más antiguo (menor ID) y fusionar en él el otro.
+ * @param idConservar  ID del contacto que se mantiene
+ * @param idDuplicado  ID del contacto que se fusionaría en el anterior
+ * @param puntuacion   similitud combinada entre 0 y 1
+ * @param detalle      similitud de cada campo comparado
+ */
+public record SugerenciaFusion(int idConservar, int idDuplicado, double puntuacion, String detalle) {
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%d <- %d (%.2f: %s)", idConservar, idDuplicado, puntuacion, detalle);
+    }
+}
@@ -0,0 +1,241 @@
+// TablaContactos.java
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Tabla inmutable ID → Contacto, implementada como AVL persistente por
+ * ID: {@link #con} y {@link #sin} devuelven una tabla nueva que comparte
+ * con la anterior todo salvo el camino modificado (O(log n) nodos).
+ * Guarda copias de los contactos, así que los cambios posteriores de los
+ * objetos del gestor no alteran una versión ya publicada. Los contactos
+ * devueltos no deben modificarse.
+ * En el modo fuera del heap del gestor la tabla es, en cambio, una copia
+ * congelada de su AlmacenOffHeap (ver {@link #fueraDelHeap}): se publica
+ * entera en cada versión y no admite con() ni sin().
+ */
+public final class TablaContactos {
+
+    /** Tabla sin contactos. */
+    public static final TablaContactos VACIA = new TablaContactos(null, 0, null);
+
+    private static final class Node {
+        final Contacto contacto;
+        final Node left, right;
+        final int height;
+
+        Node(Contacto contacto, Node left, Node right) {
+            this.contacto = contacto;
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max(height(left), height(right));
+        }
+
+        int id() {
+            return contacto.getId();
+        }
+    }
+
+    private final Node root;
+    private final int tamano;
+    // Almacén congelado con los contactos, o null si están en los nodos
+    private final AlmacenOffHeap almacen;
+
+    private TablaContactos(Node root, int tamano, AlmacenOffHeap almacen) {
+        this.root = root;
+        this.tamano = tamano;
+        this.almacen = almacen;
+    }
+
+    /**
+     * Construye en O(n) una tabla equilibrada con copias de los contactos.
+     * @param contactos  contactos en cualquier orden, IDs sin repetir
+     */
+    public static TablaContactos desde(Collection<Contacto> contactos) {
+        Contacto[] orden = new Contacto[contactos.size()];
+        int n = 0;
+        for (Contacto c : contactos) orden[n++] = copiar(c);
+        Arrays.parallelSort(orden, Comparator.comparingInt(Contacto::getId));
+        return new TablaContactos(construir(orden, 0, n - 1), n, null);
+    }
+
+    /**
+     * Tabla sobre una copia congelada del almacén (AlmacenOffHeap.congelar):
+     * get() y los recorridos devuelven vistas que leen del almacén.
+     */
+    public static TablaContactos fueraDelHeap(AlmacenOffHeap congelado) {
+        return new TablaContactos(null, congelado.tamano(), congelado);
+    }
+
+    private static Node construir(Contacto[] orden, int lo, int hi) {
+        if (lo > hi) return null;
+        int mid = (lo + hi) >>> 1;
+        return new Node(orden[mid], construir(orden, lo, mid - 1), construir(orden, mid + 1, hi));
+    }
+
+    /** Tabla con el contacto añadido o sustituido (se guarda una copia). */
+    public TablaContactos con(Contacto c) {
+        if (almacen != null) throw new UnsupportedOperationException("Una tabla fuera del heap se publica entera");
+        boolean[] nuevo = {false};
+        Node r = con(root, copiar(c), nuevo);
+        return new TablaContactos(r, nuevo[0] ? tamano + 1 : tamano, null);
+    }
+
+    private static Node con(Node node, Contacto c, boolean[] nuevo) {
+        if (node == null) {
+            nuevo[0] = true;
+            return new Node(c, null, null);
+        }
+        int cmp = Integer.compare(c.getId(), node.id());
+        if (cmp == 0) return new Node(c, node.left, node.right);
+        return rebalancear(cmp < 0
+                ? new Node(node.contacto, con(node.left, c, nuevo), node.right)
+                : new Node(node.contacto, node.left, con(node.right, c, nuevo)));
+    }
+
+    /** Tabla sin el contacto del ID dado (la misma si no estaba). */
+    public TablaContactos sin(int id) {
+        if (almacen != null) throw new UnsupportedOperationException("Una tabla fuera del heap se publica entera");
+        Node r = sin(root, id);
+        return r == root ? this : new TablaContactos(r, tamano - 1, null);
+    }
+
+    private static Node sin(Node node, int id) {
+        if (node == null) return null;
+        int cmp = Integer.compare(id, node.id());
+        if (cmp < 0) {
+            Node izq = sin(node.left, id);
+            return izq == node.left ? node : rebalancear(new Node(node.contacto, izq, node.right));
+        }
+        if (cmp > 0) {
+            Node der = sin(node.right, id);
+            return der == node.right ? node : rebalancear(new Node(node.contacto, node.left, der));
+        }
+        if (node.left == null)  return node.right;
+        if (node.right == null) return node.left;
+        Node suc = node.right;
+        while (suc.left != null) suc = suc.left;
+        return rebalancear(new Node(suc.contacto, node.left, sinMinimo(node.right)));
+    }
+
+    private static Node sinMinimo(Node node) {
+        if (node.left == null) return node.right;
+        return rebalancear(new Node(node.contacto, sinMinimo(node.left), node.right));
+    }
+
+    private static Node rebalancear(Node node) {
+        int bf = height(node.left) - height(node.right);
+        if (bf > 1) {
+            Node izq = balance(node.left) < 0 ? rotarIzquierda(node.left) : node.left;
+            return rotarDerecha(new Node(node.contacto, izq, node.right));
+        }
+        if (bf < -1) {
+            Node der = balance(node.right) > 0 ? rotarDerecha(node.right) : node.right;
+            return rotarIzquierda(new Node(node.contacto, node.left, der));
+        }
+        return node;
+    }
+
+    private static Node rotarDerecha(Node y) {
+        Node x = y.left;
+        return new Node(x.contacto, x.left, new Node(y.contacto, x.right, y.right));
+    }
+
+    private static Node rotarIzquierda(Node x) {
+        Node y = x.right;
+        return new Node(y.contacto, new Node(x.contacto, x.left, y.left), y.right);
+    }
+
+    private static int height(Node n) {
+        return n == null ? 0 : n.height;
+    }
+
+    private static int balance(Node n) {
+        return n == null ? 0 : height(n.left) - height(n.right);
+    }
+
+    /** Contacto con el ID dado, o null. */
+    public Contacto get(int id) {
+        if (almacen != null) return almacen.vista(id);
+        Node node = root;
+        while (node != null) {
+            int cmp = Integer.compare(id, node.id());
+            if (cmp == 0) return node.contacto;
+            node = cmp < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    public int tamano() {
+        return tamano;
+    }
+
+    /** Recorre los contactos en orden de ID. */
+    public void forEach(Consumer<Contacto> accion) {
+        iteradorDesde(Integer.MIN_VALUE).forEachRemaining(accion);
+    }
+
+    /**
+     * Iterador perezoso en orden de ID de los contactos con ID mayor que
+     * despuesDe; empieza en O(log n) y usa memoria O(altura).
+     */
+    public Iterator<Contacto> iteradorDesde(int despuesDe) {
+        if (almacen != null) {
+            PrimitiveIterator.OfInt ids = almacen.iteradorIds(despuesDe);
+            return new Iterator<>() {
+                public boolean hasNext() {
+                    return ids.hasNext();
+                }
+
+                public Contacto next() {
+                    return almacen.vista(ids.nextInt());
+                }
+            };
+        }
+        Deque<Node> pila = new ArrayDeque<>();
+        // Camino hasta el primer ID mayor que despuesDe
+        Node cur = root;
+        while (cur != null) {
+            if (cur.id() > despuesDe) {
+                pila.push(cur);
+                cur = cur.left;
+            } else {
+                cur = cur.right;
+            }
+        }
+        return new Iterator<>() {
+            public boolean hasNext() {
+                return !pila.isEmpty();
+            }
+
+            public Contacto next() {
+                if (pila.isEmpty()) throw new NoSuchElementException();
+                Node n = pila.pop();
+                for (Node h = n.right; h != null; h = h.left) pila.push(h);
+                return n.contacto;
+            }
+        };
+    }
+
+    /** Stream perezoso y ordenado por ID de los contactos con ID mayor que despuesDe. */
+    public Stream<Contacto> stream(int despuesDe) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iteradorDesde(despuesDe),
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+    }
+
+    /** Contactos en orden de ID, en una lista nueva. */
+    public List<Contacto> aLista() {
+        List<Contacto> res = new ArrayList<>(tamano);
+        forEach(res::add);
+        return res;
+    }
+
+    // Copia independiente del objeto del gestor
+    private static Contacto copiar(Contacto c) {
+        Contacto copia = new Contacto(c.getNombre(), c.getApellido(), c.getApodo(),
+                c.getTelefono(), c.getEmail(), c.getDireccion(), c.getFechaNacimiento());
+        copia.setId(c.getId());
+        return copia;
+    }
+}
@@ -0,0 +1,188 @@
+// ValidadorContactos.java
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+/**
+ * Validación de datos de contactos reutilizable por el menú y por la
+ * importación/carga de CSV. Los validadores están escritos a mano (sin
+ * compilar expresiones regulares en cada llamada) y los lotes de filas
+ * se validan en paralelo, devolviendo las filas aceptadas en su orden
+ * original y un registro de filas rechazadas con número de línea y motivo.
+ */
+public final class ValidadorContactos {
+
+    // Separador de columnas del CSV: coma seguida de espacios opcionales
+    private static final Pattern SEPARADOR = Pattern.compile(",\\s*");
+    // Por debajo de este tamaño de lote no compensa validar en paralelo
+    private static final int MIN_LOTE_PARALELO = 1024;
+
+    /** Fila del CSV que pasó la validación. */
+    public record FilaValida(int linea, String[] campos) {}
+
+    /** Fila del CSV rechazada, con su número de línea y el motivo. */
+    public record Rechazo(int linea, String contenido, String motivo) {}
+
+    /** Resultado de validar un lote: filas aceptadas y rechazadas. */
+    public record ValidacionLote(List<FilaValida> validas, List<Rechazo> rechazos) {}
+
+    private ValidadorContactos() {
+    }
+
+    /** Texto no vacío (equivalente a "^.+$" sobre una entrada recortada). */
+    public static boolean noVacio(String texto) {
+        return texto != null && !texto.isEmpty();
+    }
+
+    /**
+     * Email con el formato local@dominio.tld, equivalente a
+     * ^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+\.[A-Za-z]{2,}$
+     */
+    public static boolean esEmailValido(String email) {
+        if (email == null) return false;
+        int arroba = email.indexOf('@');
+        int n = email.length();
+        if (arroba <= 0) return false;
+        for (int i = 0; i < arroba; i++) {
+            char ch = email.charAt(i);
+            if (!esAlfanumerico(ch) && ch != '+' && ch != '_' && ch != '.' && ch != '-') return false;
+        }
+        int ultimoPunto = email.lastIndexOf('.');
+        // Debe haber al menos un carácter de dominio antes del último punto
+        // y dos o más letras después
+        if (ultimoPunto <= arroba + 1 || n - ultimoPunto - 1 < 2) return false;
+        for (int i = arroba + 1; i < ultimoPunto; i++) {
+            char ch = email.charAt(i);
+            if (!esAlfanumerico(ch) && ch != '.' && ch != '-') return false;
+        }
+        for (int i = ultimoPunto + 1; i < n; i++) {
+            if (!esLetra(email.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    /** Teléfono de exactamente 8 dígitos. */
+    public static boolean esTelefonoValido(String telefono) {
+        return telefono != null && telefono.length() == 8 && sonDigitos(telefono, 0, 8);
+    }
+
+    /** Fecha con formato DD/MM/AAAA, día 1-31 y mes 1-12. */
+    public static boolean esFechaValida(String fecha) {
+        if (fecha == null || fecha.length() != 10
+                || fecha.charAt(2) != '/' || fecha.charAt(5) != '/') return false;
+        if (!sonDigitos(fecha, 0, 2) || !sonDigitos(fecha, 3, 5) || !sonDigitos(fecha, 6, 10)) return false;
+        int dia = (fecha.charAt(0) - '0') * 10 + (fecha.charAt(1) - '0');
+        int mes = (fecha.charAt(3) - '0') * 10 + (fecha.charAt(4) - '0');
+        return dia >= 1 && dia <= 31 && mes >= 1 && mes <= 12;
+    }
+
+    /** Cadena no vacía compuesta sólo por dígitos ASCII. */
+    public static boolean esNumero(String texto) {
+        return texto != null && !texto.isEmpty() && sonDigitos(texto, 0, texto.length());
+    }
+
+    /**
+     * ID escrito en el texto ("007" es el 7), o -1 si no es un número o no
+     * cabe en un int.
+     */
+    public static int parsearId(String texto) {
+        if (!esNumero(texto)) return -1;
+        long id = 0;
+        for (int i = 0; i < texto.length(); i++) {
+            id = id * 10 + (texto.charAt(i) - '0');
+            if (id > Integer.MAX_VALUE) return -1;
+        }
+        return (int) id;
+    }
+
+    /** Divide una línea del CSV en columnas usando el separador precompilado. */
+    public static String[] dividirLinea(String linea) {
+        return SEPARADOR.split(linea);
+    }
+
+    /**
+     * Valida una línea del CSV.
+     * @param campos  columnas ya separadas
+     * @param exigirId  si la primera columna debe ser un ID numérico
+     * @return null si es válida, o el motivo del rechazo
+     */
+    public static String motivoRechazo(String[] campos, boolean exigirId) {
+        if (campos.length != 8) return "se esperaban 8 columnas y hay " + campos.length;
+        if (exigirId && !esNumero(campos[0].trim())) return "ID no numérico";
+        if (exigirId && parsearId(campos[0].trim()) < 0) return "ID fuera de rango";
+        for (int i = 1; i < 8; i++) {
+            if (campos[i].trim().isEmpty()) return "columna " + (i + 1) + " vacía";
+        }
+        if (!esTelefonoValido(campos[4].trim())) return "teléfono inválido";
+        if (!esEmailValido(campos[5].trim()))    return "email inválido";
+        if (!esFechaValida(campos[7].trim()))    return "fecha inválida";
+        return null;
+    }
+
+    /**
+     * Valida en paralelo un lote de líneas consecutivas del CSV.
+     * @param lineas        líneas en el orden del archivo
+     * @param primeraLinea  número de línea (1-based) de la primera del lote
+     * @param exigirId      si la primera columna debe ser un ID numérico
+     */
+    public static ValidacionLote validarLote(List<String> lineas, int primeraLinea, boolean exigirId) {
+        int n = lineas.size();
+        String[][] campos = new String[n][];
+        String[] motivos  = new String[n];
+        IntStream rango = IntStream.range(0, n);
+        if (n >= MIN_LOTE_PARALELO) rango = rango.parallel();
+        // Cada posición se escribe desde un único hilo: no hace falta sincronizar
+        rango.forEach(i -> {
+            if (lineas.get(i).isBlank()) return;  // las líneas en blanco se ignoran
+            String[] v = dividirLinea(lineas.get(i));
+            campos[i]  = v;
+            motivos[i] = motivoRechazo(v, exigirId);
+        });
+        List<FilaValida> validas = new ArrayList<>(n);
+        List<Rechazo> rechazos   = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            if (campos[i] == null) continue;
+            if (motivos[i] == null) validas.add(new FilaValida(primeraLinea + i, campos[i]));
+            else rechazos.add(new Rechazo(primeraLinea + i, lineas.get(i), motivos[i]));
+        }
+        return new ValidacionLote(validas, rechazos);
+    }
+
+    /**
+     * Escribe el informe de filas rechazadas ("linea;motivo;contenido").
+     * @return true si se pudo escribir
+     */
+    public static boolean escribirReporteRechazos(String rutaReporte, List<Rechazo> rechazos) {
+        try (PrintWriter pw = new PrintWriter(new FileWriter(rutaReporte))) {
+            pw.println("linea;motivo;contenido");
+            for (Rechazo r : rechazos) {
+                pw.println(r.linea() + ";" + r.motivo() + ";" + r.contenido());
+            }
+            return true;
+        } catch (IOException e) {
+            System.out.println("Error al escribir informe de rechazos: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // --- Comprobaciones de caracteres ASCII ---
+
+    private static boolean sonDigitos(String s, int desde, int hasta) {
+        for (int i = desde; i < hasta; i++) {
+            char ch = s.charAt(i);
+            if (ch < '0' || ch > '9') return false;
+        }
+        return true;
+    }
+
+    private static boolean esLetra(char ch) {
+        return (ch >= 'A' && ch <= 'Z') || (ch >= 'a' && ch <= 'z');
+    }
+
+    private static boolean esAlfanumerico(char ch) {
+        return esLetra(ch) || (ch >= '0' && ch <= '9');
+    }
+}